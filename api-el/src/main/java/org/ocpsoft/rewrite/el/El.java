@@ -19,8 +19,6 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.List;
 
-import org.ocpsoft.common.services.ServiceLoader;
-import org.ocpsoft.common.util.Iterators;
 import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.bind.BindingBuilder;
 import org.ocpsoft.rewrite.bind.Converter;
@@ -31,6 +29,7 @@ import org.ocpsoft.rewrite.el.spi.ExpressionLanguageProvider;
 import org.ocpsoft.rewrite.event.Rewrite;
 import org.ocpsoft.rewrite.exception.RewriteException;
 import org.ocpsoft.rewrite.exception.UnsupportedEvaluationException;
+import org.ocpsoft.rewrite.util.Services;
 
 /**
  * Responsible for binding to EL expressions.
@@ -40,7 +39,6 @@ import org.ocpsoft.rewrite.exception.UnsupportedEvaluationException;
 public abstract class El extends BindingBuilder<El, Object> implements Retrieval
 {
    private static final Logger log = Logger.getLogger(El.class);
-   private static List<ExpressionLanguageProvider> providers;
 
    /**
     * Create a new EL Method binding using distinct expressions to submit and retrieve values. The method intended for
@@ -162,14 +160,7 @@ public abstract class El extends BindingBuilder<El, Object> implements Retrieval
 
    private static List<ExpressionLanguageProvider> getProviders()
    {
-      if (providers == null)
-      {
-         @SuppressWarnings("unchecked")
-         ServiceLoader<ExpressionLanguageProvider> serviceProviders = ServiceLoader
-                  .load(ExpressionLanguageProvider.class);
-         providers = Iterators.asList(serviceProviders);
-      }
-      return providers;
+      return Services.load(ExpressionLanguageProvider.class);
    }
 
    /**
@@ -187,17 +178,14 @@ public abstract class El extends BindingBuilder<El, Object> implements Retrieval
       }
 
       @Override
-      @SuppressWarnings("unchecked")
       public Object retrieve(final Rewrite event, final EvaluationContext context)
       {
-         ServiceLoader<ExpressionLanguageProvider> providers = ServiceLoader.load(ExpressionLanguageProvider.class);
-
          if (!supportsRetrieval())
             throw new RewriteException("Method binding expression supports submission only [" + setExpression
                      + "], no value retrieval expression was defined");
 
          Object value = null;
-         for (ExpressionLanguageProvider provider : providers) {
+         for (ExpressionLanguageProvider provider : getProviders()) {
 
             try
             {
@@ -281,13 +269,10 @@ public abstract class El extends BindingBuilder<El, Object> implements Retrieval
       }
 
       @Override
-      @SuppressWarnings("unchecked")
       public Object retrieve(final Rewrite event, final EvaluationContext context)
       {
-         ServiceLoader<ExpressionLanguageProvider> providers = ServiceLoader.load(ExpressionLanguageProvider.class);
-
          Object value = null;
-         for (ExpressionLanguageProvider provider : providers) {
+         for (ExpressionLanguageProvider provider : getProviders()) {
 
             try
             {
@@ -329,11 +314,8 @@ public abstract class El extends BindingBuilder<El, Object> implements Retrieval
       @Override
       public Object submit(final Rewrite event, final EvaluationContext context, final Object value)
       {
-         @SuppressWarnings("unchecked")
-         ServiceLoader<ExpressionLanguageProvider> providers = ServiceLoader
-         .load(ExpressionLanguageProvider.class);
-
-         if (!providers.iterator().hasNext())
+         List<ExpressionLanguageProvider> providers = getProviders();
+         if (providers.isEmpty())
          {
             log.warn("No instances of [{}] were configured. EL support is disabled.",
                      ExpressionLanguageProvider.class.getName());
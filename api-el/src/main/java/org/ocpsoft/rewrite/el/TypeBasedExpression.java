@@ -15,11 +15,9 @@
  */
 package org.ocpsoft.rewrite.el;
 
-import java.util.Iterator;
-
-import org.ocpsoft.common.services.ServiceLoader;
 import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.el.spi.BeanNameResolver;
+import org.ocpsoft.rewrite.util.Services;
 
 /**
  * This implementation of {@link Expression} is able to automatically build the EL expression from the type of the bean.
@@ -59,14 +57,11 @@ class TypeBasedExpression implements Expression
 
    }
 
-   @SuppressWarnings("unchecked")
    private String lookupBeanName()
    {
 
-      // load the available SPI implementations
-      Iterator<BeanNameResolver> iterator = ServiceLoader.load(BeanNameResolver.class).iterator();
-      while (iterator.hasNext()) {
-         BeanNameResolver resolver = iterator.next();
+      // use the shared SPI implementations
+      for (BeanNameResolver resolver : Services.load(BeanNameResolver.class)) {
 
          // check if this implementation is able to tell the name
          String beanName = resolver.getBeanName(clazz);
@@ -27,10 +27,14 @@ import org.ocpsoft.rewrite.event.Rewrite;
 public class Evaluation extends BindingBuilder<Evaluation, Object>
 {
    private final CharSequence property;
+   private final String unconvertedName;
+   private final String convertedName;
 
    private Evaluation(final CharSequence property)
    {
       this.property = property;
+      this.unconvertedName = getParameterUnconvertedName(property);
+      this.convertedName = getParameterConvertedName(property);
    }
 
    public static Evaluation property(final CharSequence property)
@@ -61,7 +65,7 @@ public class Evaluation extends BindingBuilder<Evaluation, Object>
       }
       else
       {
-         Object[] values = (Object[]) context.get(getParameterUnconvertedName(property));
+         Object[] values = (Object[]) context.get(unconvertedName);
          List<Object> list = Arrays.asList(values);
 
          if (value.getClass().isArray())
@@ -77,8 +81,8 @@ public class Evaluation extends BindingBuilder<Evaluation, Object>
 
    private void storeValue(final Rewrite event, final EvaluationContext context, final Object value)
    {
-      context.put(getParameterUnconvertedName(property), value);
-      context.put(getParameterConvertedName(property), convert(event, context, value));
+      context.put(unconvertedName, value);
+      context.put(convertedName, convert(event, context, value));
    }
 
    private String getParameterUnconvertedName(final CharSequence parameter)
@@ -94,12 +98,12 @@ public class Evaluation extends BindingBuilder<Evaluation, Object>
    @Override
    public Object retrieve(final Rewrite event, final EvaluationContext context)
    {
-      return retrieveFromProperty(context, getParameterUnconvertedName(property));
+      return retrieveFromProperty(context, unconvertedName);
    }
 
    public Object retrieveConverted(Rewrite inbound, EvaluationContext context)
    {
-      return retrieveFromProperty(context, getParameterConvertedName(property));
+      return retrieveFromProperty(context, convertedName);
    }
 
    private Object retrieveFromProperty(final EvaluationContext context, String propertyName)
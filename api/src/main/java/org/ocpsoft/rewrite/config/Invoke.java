@@ -15,14 +15,15 @@
  */
 package org.ocpsoft.rewrite.config;
 
-import org.ocpsoft.common.services.ServiceLoader;
-import org.ocpsoft.logging.Logger;
+import java.util.List;
 
+import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.bind.Retrieval;
 import org.ocpsoft.rewrite.bind.Submission;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.event.Rewrite;
 import org.ocpsoft.rewrite.spi.InvocationResultHandler;
+import org.ocpsoft.rewrite.util.Services;
 
 /**
  * Builds {@link Operation} instances used to directly invoke {@link org.ocpsoft.rewrite.bind.Binding} submission or retrieval on {@link org.ocpsoft.rewrite.event.Rewrite}
@@ -43,7 +44,6 @@ public class Invoke extends DefaultOperationBuilder
    }
 
    @Override
-   @SuppressWarnings("unchecked")
    public void perform(final Rewrite event, final EvaluationContext context)
    {
       Object result = null;
@@ -65,8 +65,8 @@ public class Invoke extends DefaultOperationBuilder
 
       if (result != null)
       {
-         ServiceLoader<InvocationResultHandler> providers = ServiceLoader.load(InvocationResultHandler.class);
-         if (!providers.iterator().hasNext())
+         List<InvocationResultHandler> providers = Services.load(InvocationResultHandler.class);
+         if (providers.isEmpty())
          {
             log.debug("No instances of [" + InvocationResultHandler.class.getName()
                      + "] were registered to handing binding invocation result [" + result + "]");
@@ -15,11 +15,14 @@
  */
 package org.ocpsoft.rewrite.param;
 
+import java.util.regex.Pattern;
+
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.event.Rewrite;
 
 /**
- * Defines a {@link Constraint} using a regular expression.
+ * Defines a {@link Constraint} using a regular expression. The expression is compiled once, when the constraint is
+ * created.
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  * 
@@ -28,6 +31,7 @@ public class RegexConstraint implements Constraint<String>
 {
 
    private final String pattern;
+   private final Pattern compiled;
 
    /**
     * Create a new {@link RegexConstraint} using the given pattern.
@@ -35,12 +39,13 @@ public class RegexConstraint implements Constraint<String>
    public RegexConstraint(String pattern)
    {
       this.pattern = pattern;
+      this.compiled = Pattern.compile(pattern);
    }
 
    @Override
    public boolean isSatisfiedBy(Rewrite event, EvaluationContext context, String value)
    {
-      return value != null && value.matches(pattern);
+      return value != null && compiled.matcher(value).matches();
    }
 
    @Override
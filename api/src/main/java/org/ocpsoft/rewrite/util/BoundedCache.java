@@ -0,0 +1,231 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.util;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe, size-bounded cache that evicts entries which have not been used recently once {@link #getMaxSize()}
+ * is exceeded. Hits and misses are counted so that callers may expose cache effectiveness.
+ * <p>
+ * Entries are held in a {@link ConcurrentHashMap}, so lookups never block each other. Eviction approximates least
+ * recently used order with the CLOCK algorithm: a lookup only marks its entry as referenced, and when the cache is full
+ * entries are visited in insertion order, evicting the first one that has not been referenced since the last visit.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class BoundedCache<K, V>
+{
+   private final int maxSize;
+   private final ConcurrentMap<K, Node<K, V>> entries = new ConcurrentHashMap<K, Node<K, V>>();
+
+   /*
+    * The clock; may still contain nodes removed from the entries, which are discarded when visited
+    */
+   private final Queue<Node<K, V>> clock = new ConcurrentLinkedQueue<Node<K, V>>();
+   private final AtomicInteger removedNodes = new AtomicInteger();
+   private final Object evictionLock = new Object();
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+
+   /**
+    * Create a new {@link BoundedCache} holding at most the given number of entries.
+    */
+   public BoundedCache(final int maxSize)
+   {
+      if (maxSize < 1)
+         throw new IllegalArgumentException("Cache size must be greater than zero, but was [" + maxSize + "]");
+
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * Return the value cached for the given key, or <code>null</code> if no such value is cached.
+    */
+   public V get(final K key)
+   {
+      Node<K, V> node = entries.get(key);
+      if (node == null)
+      {
+         misses.incrementAndGet();
+         return null;
+      }
+
+      hits.incrementAndGet();
+      if (!node.referenced)
+         node.referenced = true;
+      return node.value;
+   }
+
+   /**
+    * Cache the given value for the given key, possibly evicting an entry that has not been used recently. Return the
+    * given value.
+    */
+   public V put(final K key, final V value)
+   {
+      Node<K, V> node = new Node<K, V>(key, value);
+      Node<K, V> existing = entries.putIfAbsent(key, node);
+      if (existing != null)
+      {
+         existing.value = value;
+         existing.referenced = true;
+         return value;
+      }
+
+      clock.offer(node);
+      if (entries.size() > maxSize)
+         evict();
+      else if (removedNodes.get() > maxSize)
+         purge();
+
+      return value;
+   }
+
+   /**
+    * Remove the value cached for the given key, if any.
+    */
+   public void remove(final K key)
+   {
+      Node<K, V> node = entries.remove(key);
+      if (node != null)
+         removedNodes.incrementAndGet();
+   }
+
+   /**
+    * Remove all entries from this cache. Does not reset statistics.
+    */
+   public void clear()
+   {
+      for (K key : entries.keySet()) {
+         remove(key);
+      }
+   }
+
+   /**
+    * Return the number of entries currently held in this cache.
+    */
+   public int size()
+   {
+      return entries.size();
+   }
+
+   /**
+    * Return the maximum number of entries held by this cache.
+    */
+   public int getMaxSize()
+   {
+      return maxSize;
+   }
+
+   /**
+    * Advance the clock until the cache is no longer over capacity. Referenced entries get a second chance and are
+    * moved to the end of the clock.
+    */
+   private void evict()
+   {
+      synchronized (evictionLock)
+      {
+         while (entries.size() > maxSize)
+         {
+            Node<K, V> node = clock.poll();
+            if (node == null)
+               break;
+
+            if (node.referenced && (entries.get(node.key) == node))
+            {
+               node.referenced = false;
+               clock.offer(node);
+            }
+            else if (!entries.remove(node.key, node))
+            {
+               // already removed
+               removedNodes.decrementAndGet();
+            }
+         }
+      }
+   }
+
+   /**
+    * Discard the removed nodes from the clock, so that it does not grow while the cache is not full.
+    */
+   private void purge()
+   {
+      synchronized (evictionLock)
+      {
+         for (Iterator<Node<K, V>> iterator = clock.iterator(); iterator.hasNext();) {
+            Node<K, V> node = iterator.next();
+            if (entries.get(node.key) != node)
+            {
+               iterator.remove();
+               removedNodes.decrementAndGet();
+            }
+         }
+      }
+   }
+
+   /**
+    * Return the number of calls to {@link #get(Object)} that returned a cached value.
+    */
+   public long getHits()
+   {
+      return hits.get();
+   }
+
+   /**
+    * Return the number of calls to {@link #get(Object)} that did not return a cached value.
+    */
+   public long getMisses()
+   {
+      return misses.get();
+   }
+
+   /**
+    * Return the ratio of {@link #getHits()} to total lookups, or <code>0</code> if no lookups have been performed.
+    */
+   public double getHitRate()
+   {
+      long hits = getHits();
+      long total = hits + getMisses();
+      return total == 0 ? 0 : (double) hits / total;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "BoundedCache [size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHits() + ", misses="
+               + getMisses() + "]";
+   }
+
+   private static final class Node<K, V>
+   {
+      private final K key;
+      private volatile V value;
+      private volatile boolean referenced;
+
+      private Node(final K key, final V value)
+      {
+         this.key = key;
+         this.value = value;
+      }
+   }
+}
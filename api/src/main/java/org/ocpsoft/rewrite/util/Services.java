@@ -0,0 +1,173 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ocpsoft.common.pattern.Weighted;
+import org.ocpsoft.common.pattern.WeightedComparator;
+import org.ocpsoft.common.services.ServiceLoader;
+import org.ocpsoft.common.util.Iterators;
+import org.ocpsoft.logging.Logger;
+
+/**
+ * Registry of service instances located via {@link ServiceLoader}. Each service type is loaded at most once per
+ * {@link ClassLoader}, the first time it is requested, so that call sites on the request path do not re-scan the
+ * classpath for <code>META-INF/services</code> files.
+ * <p>
+ * Loaded services are de-duplicated, sorted by {@link WeightedComparator} if the service type is {@link Weighted}, and
+ * logged in the same manner as services loaded at startup. Looking up services that have already been loaded does not
+ * acquire any lock.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public final class Services
+{
+   private static final Logger log = Logger.getLogger(Services.class);
+
+   private static final ConcurrentMap<LoaderKey, ConcurrentMap<Class<?>, List<?>>> registry = new ConcurrentHashMap<LoaderKey, ConcurrentMap<Class<?>, List<?>>>();
+   private static final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue<ClassLoader>();
+
+   private Services()
+   {}
+
+   /**
+    * Return the shared, unmodifiable {@link List} of all services of the given type visible to the current thread's
+    * context {@link ClassLoader}. The list is loaded on first access and cached for all subsequent calls.
+    */
+   public static <T> List<T> load(final Class<T> type)
+   {
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      if (loader == null)
+      {
+         loader = type.getClassLoader();
+      }
+      return load(type, loader);
+   }
+
+   /**
+    * Return the shared, unmodifiable {@link List} of all services of the given type visible to the given
+    * {@link ClassLoader}. The list is loaded on first access and cached for all subsequent calls.
+    */
+   @SuppressWarnings("unchecked")
+   public static <T> List<T> load(final Class<T> type, final ClassLoader loader)
+   {
+      ConcurrentMap<Class<?>, List<?>> services = getServices(loader);
+      List<T> result = (List<T>) services.get(type);
+      if (result == null)
+      {
+         synchronized (services)
+         {
+            result = (List<T>) services.get(type);
+            if (result == null)
+            {
+               result = loadServices(type, loader);
+               services.put(type, result);
+            }
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Discard all cached services for the given {@link ClassLoader}. Subsequent calls to {@link #load(Class)} will
+    * re-scan the classpath.
+    * <p>
+    * Cached services usually reference the {@link ClassLoader} they were loaded by, so it is never released by the
+    * registry on its own. This must be called when the application using the {@link ClassLoader} is shut down.
+    */
+   public static void reset(final ClassLoader loader)
+   {
+      registry.remove(new LoaderKey(loader, null));
+   }
+
+   private static ConcurrentMap<Class<?>, List<?>> getServices(final ClassLoader loader)
+   {
+      ConcurrentMap<Class<?>, List<?>> services = registry.get(new LoaderKey(loader, null));
+      if (services == null)
+      {
+         removeCollectedLoaders();
+         ConcurrentMap<Class<?>, List<?>> created = new ConcurrentHashMap<Class<?>, List<?>>();
+         services = registry.putIfAbsent(new LoaderKey(loader, collectedLoaders), created);
+         if (services == null)
+         {
+            services = created;
+         }
+      }
+      return services;
+   }
+
+   private static void removeCollectedLoaders()
+   {
+      for (Reference<? extends ClassLoader> key; (key = collectedLoaders.poll()) != null;)
+      {
+         registry.remove(key);
+      }
+   }
+
+   @SuppressWarnings({ "unchecked", "rawtypes" })
+   private static <T> List<T> loadServices(final Class<T> type, final ClassLoader loader)
+   {
+      List<T> result = Iterators.asUniqueList(ServiceLoader.load(type, loader));
+      if (Weighted.class.isAssignableFrom(type))
+      {
+         Collections.sort((List) result, new WeightedComparator());
+      }
+      ServiceLogger.logLoadedServices(log, type, result);
+      return Collections.unmodifiableList(result);
+   }
+
+   /**
+    * Weakly references a {@link ClassLoader}, comparing it by identity
+    */
+   private static final class LoaderKey extends WeakReference<ClassLoader>
+   {
+      private final int hash;
+
+      private LoaderKey(final ClassLoader loader, final ReferenceQueue<ClassLoader> queue)
+      {
+         super(loader, queue);
+         this.hash = System.identityHashCode(loader);
+      }
+
+      @Override
+      public boolean equals(final Object obj)
+      {
+         if (this == obj)
+         {
+            return true;
+         }
+         if (!(obj instanceof LoaderKey))
+         {
+            return false;
+         }
+         ClassLoader loader = get();
+         return (loader != null) && (loader == ((LoaderKey) obj).get());
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return hash;
+      }
+   }
+}
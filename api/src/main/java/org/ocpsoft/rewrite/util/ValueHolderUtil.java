@@ -2,10 +2,15 @@ package org.ocpsoft.rewrite.util;
 
 import java.lang.reflect.Array;
 import java.util.Collection;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.ocpsoft.common.services.ServiceLoader;
 import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.bind.Converter;
+import org.ocpsoft.rewrite.bind.Stateful;
 import org.ocpsoft.rewrite.bind.Validator;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.event.Rewrite;
@@ -15,7 +20,92 @@ public final class ValueHolderUtil
 {
    private static final Logger log = Logger.getLogger(ValueHolderUtil.class);
 
+   /*
+    * Resolved instances of all types not marked as Stateful, per class-loader like the services of Services
+    */
+   private static final Map<ClassLoader, ResolvedInstances> resolved = new WeakHashMap<ClassLoader, ResolvedInstances>();
+
+   /**
+    * Resolve an enriched instance of the given {@link Validator} type. Unless the type implements {@link Stateful}, the
+    * instance is cached and shared by all subsequent calls for the same type and context {@link ClassLoader}.
+    */
    public static Validator<?> resolveValidator(final Class<? extends Validator<?>> type)
+   {
+      if (Stateful.class.isAssignableFrom(type))
+         return loadValidator(type);
+
+      ConcurrentMap<Class<?>, Validator<?>> validators = getResolvedInstances().validators;
+      Validator<?> result = validators.get(type);
+      if (result == null)
+      {
+         result = loadValidator(type);
+         if (result != null)
+         {
+            Validator<?> existing = validators.putIfAbsent(type, result);
+            if (existing != null)
+               result = existing;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Resolve an enriched instance of the given {@link Converter} type. Unless the type implements {@link Stateful}, the
+    * instance is cached and shared by all subsequent calls for the same type and context {@link ClassLoader}.
+    */
+   public static Converter<?> resolveConverter(final Class<? extends Converter<?>> type)
+   {
+      if (Stateful.class.isAssignableFrom(type))
+         return loadConverter(type);
+
+      ConcurrentMap<Class<?>, Converter<?>> converters = getResolvedInstances().converters;
+      Converter<?> result = converters.get(type);
+      if (result == null)
+      {
+         result = loadConverter(type);
+         if (result != null)
+         {
+            Converter<?> existing = converters.putIfAbsent(type, result);
+            if (existing != null)
+               result = existing;
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Discard all instances resolved for the given {@link ClassLoader}. Like {@link Services#reset(ClassLoader)}, this
+    * must be called when the application using the {@link ClassLoader} is shut down.
+    */
+   public static void reset(final ClassLoader loader)
+   {
+      synchronized (resolved)
+      {
+         resolved.remove(loader);
+      }
+   }
+
+   private static ResolvedInstances getResolvedInstances()
+   {
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      if (loader == null)
+      {
+         loader = ValueHolderUtil.class.getClassLoader();
+      }
+
+      synchronized (resolved)
+      {
+         ResolvedInstances result = resolved.get(loader);
+         if (result == null)
+         {
+            result = new ResolvedInstances();
+            resolved.put(loader, result);
+         }
+         return result;
+      }
+   }
+
+   private static Validator<?> loadValidator(final Class<? extends Validator<?>> type)
    {
       try {
          Collection<? extends Validator<?>> enriched = ServiceLoader.loadEnriched(type);
@@ -40,7 +130,7 @@ public final class ValueHolderUtil
       }
    }
 
-   public static final Converter<?> resolveConverter(final Class<? extends Converter<?>> type)
+   private static Converter<?> loadConverter(final Class<? extends Converter<?>> type)
    {
       try {
          Collection<? extends Converter<?>> enriched = ServiceLoader.loadEnriched(type);
@@ -118,4 +208,10 @@ public final class ValueHolderUtil
       }
       return value;
    }
+
+   private static final class ResolvedInstances
+   {
+      private final ConcurrentMap<Class<?>, Validator<?>> validators = new ConcurrentHashMap<Class<?>, Validator<?>>();
+      private final ConcurrentMap<Class<?>, Converter<?>> converters = new ConcurrentHashMap<Class<?>, Converter<?>>();
+   }
 }
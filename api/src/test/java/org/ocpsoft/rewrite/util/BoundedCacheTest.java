@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class BoundedCacheTest
+{
+   @Test
+   public void testEvictsLeastRecentlyUsed()
+   {
+      BoundedCache<String, String> cache = new BoundedCache<String, String>(2);
+      cache.put("a", "1");
+      cache.put("b", "2");
+      cache.get("a");
+      cache.put("c", "3");
+
+      Assert.assertEquals(2, cache.size());
+      Assert.assertEquals("1", cache.get("a"));
+      Assert.assertNull(cache.get("b"));
+      Assert.assertEquals("3", cache.get("c"));
+   }
+
+   @Test
+   public void testCountsHitsAndMisses()
+   {
+      BoundedCache<String, String> cache = new BoundedCache<String, String>(10);
+      Assert.assertEquals(0, cache.getHitRate(), 0);
+
+      cache.get("a");
+      cache.put("a", "1");
+      cache.get("a");
+      cache.get("a");
+      cache.get("a");
+
+      Assert.assertEquals(3, cache.getHits());
+      Assert.assertEquals(1, cache.getMisses());
+      Assert.assertEquals(0.75, cache.getHitRate(), 0);
+   }
+
+   @Test
+   public void testReplacesAndRemovesValues()
+   {
+      BoundedCache<String, String> cache = new BoundedCache<String, String>(2);
+      cache.put("a", "1");
+      cache.put("a", "2");
+      Assert.assertEquals(1, cache.size());
+      Assert.assertEquals("2", cache.get("a"));
+
+      for (int i = 0; i < 100; i++) {
+         cache.remove("a");
+         cache.put("a", String.valueOf(i));
+      }
+      cache.put("b", "2");
+      cache.put("c", "3");
+      Assert.assertEquals(2, cache.size());
+
+      cache.clear();
+      Assert.assertEquals(0, cache.size());
+      Assert.assertNull(cache.get("c"));
+   }
+
+   @Test
+   public void testConcurrentAccessStaysBounded() throws Exception
+   {
+      final BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(100);
+      final AtomicInteger wrongValues = new AtomicInteger();
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int t = 0; t < 4; t++) {
+         final int offset = t;
+         threads.add(new Thread() {
+            @Override
+            public void run()
+            {
+               for (int i = 0; i < 10000; i++) {
+                  Integer key = (i * 7 + offset) % 500;
+                  Integer value = cache.get(key);
+                  if (value == null)
+                     cache.put(key, key);
+                  else if (!key.equals(value))
+                     wrongValues.incrementAndGet();
+               }
+            }
+         });
+      }
+      for (Thread thread : threads) {
+         thread.start();
+      }
+      for (Thread thread : threads) {
+         thread.join();
+      }
+
+      Assert.assertEquals(0, wrongValues.get());
+      Assert.assertTrue(cache.size() <= cache.getMaxSize());
+      Assert.assertEquals(40000, cache.getHits() + cache.getMisses());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsInvalidSize()
+   {
+      new BoundedCache<String, String>(0);
+   }
+}
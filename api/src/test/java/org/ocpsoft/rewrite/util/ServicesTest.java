@@ -0,0 +1,139 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.util;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ocpsoft.common.pattern.Weighted;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ServicesTest
+{
+   @Test
+   public void testServicesAreLoadedOnce()
+   {
+      List<MockService> first = Services.load(MockService.class);
+      List<MockService> second = Services.load(MockService.class);
+      Assert.assertEquals(2, first.size());
+      Assert.assertSame(first, second);
+   }
+
+   @Test
+   public void testWeightedServicesAreSorted()
+   {
+      List<MockService> services = Services.load(MockService.class);
+      Assert.assertTrue(services.get(0) instanceof HighPriorityService);
+      Assert.assertTrue(services.get(1) instanceof LowPriorityService);
+   }
+
+   @Test
+   public void testResetReloadsServices()
+   {
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      List<MockService> first = Services.load(MockService.class);
+      Services.reset(loader);
+      List<MockService> second = Services.load(MockService.class);
+      Assert.assertNotSame(first, second);
+      Assert.assertEquals(first.size(), second.size());
+   }
+
+   @Test
+   public void testResetReleasesClassLoader() throws Exception
+   {
+      // initialize logging first, it keeps the context class-loader it was initialized with
+      Services.load(MockService.class);
+
+      Thread thread = Thread.currentThread();
+      ClassLoader original = thread.getContextClassLoader();
+      ClassLoader loader = new URLClassLoader(new URL[0], original);
+      WeakReference<ClassLoader> reference = new WeakReference<ClassLoader>(loader);
+
+      thread.setContextClassLoader(loader);
+      try {
+         Assert.assertSame(loader, Services.load(ClassLoaderAwareService.class).get(0).getClassLoader());
+      }
+      finally {
+         thread.setContextClassLoader(original);
+      }
+      loader = null;
+
+      // the cached service references its class loader, so the weak key alone never releases it
+      collectGarbage(reference);
+      Assert.assertNotNull(reference.get());
+
+      Services.reset(reference.get());
+      collectGarbage(reference);
+      Assert.assertNull(reference.get());
+   }
+
+   private static void collectGarbage(WeakReference<?> reference) throws InterruptedException
+   {
+      for (int i = 0; (i < 10) && (reference.get() != null); i++) {
+         System.gc();
+         Thread.sleep(10);
+      }
+   }
+
+   @Test(expected = UnsupportedOperationException.class)
+   public void testServicesAreUnmodifiable()
+   {
+      Services.load(MockService.class).clear();
+   }
+
+   public static interface MockService extends Weighted
+   {}
+
+   public static class HighPriorityService implements MockService
+   {
+      @Override
+      public int priority()
+      {
+         return 0;
+      }
+   }
+
+   public static class LowPriorityService implements MockService
+   {
+      @Override
+      public int priority()
+      {
+         return 10;
+      }
+   }
+
+   public static interface ClassLoaderAwareService
+   {
+      ClassLoader getClassLoader();
+   }
+
+   public static class ClassLoaderService implements ClassLoaderAwareService
+   {
+      private final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+      @Override
+      public ClassLoader getClassLoader()
+      {
+         return loader;
+      }
+   }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ocpsoft.rewrite.bind.Converter;
+import org.ocpsoft.rewrite.bind.Stateful;
+import org.ocpsoft.rewrite.bind.Validator;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.event.Rewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ValueHolderUtilTest
+{
+   @Test
+   public void testConvertersAreShared()
+   {
+      Converter<?> first = ValueHolderUtil.resolveConverter(SharedConverter.class);
+      Assert.assertTrue(first instanceof SharedConverter);
+      Assert.assertSame(first, ValueHolderUtil.resolveConverter(SharedConverter.class));
+   }
+
+   @Test
+   public void testResetDiscardsSharedInstances()
+   {
+      Converter<?> converter = ValueHolderUtil.resolveConverter(SharedConverter.class);
+      Validator<?> validator = ValueHolderUtil.resolveValidator(SharedValidator.class);
+
+      ValueHolderUtil.reset(Thread.currentThread().getContextClassLoader());
+
+      Assert.assertNotSame(converter, ValueHolderUtil.resolveConverter(SharedConverter.class));
+      Assert.assertNotSame(validator, ValueHolderUtil.resolveValidator(SharedValidator.class));
+   }
+
+   @Test
+   public void testStatefulConvertersAreNotShared()
+   {
+      Converter<?> first = ValueHolderUtil.resolveConverter(StatefulConverter.class);
+      Assert.assertTrue(first instanceof StatefulConverter);
+      Assert.assertNotSame(first, ValueHolderUtil.resolveConverter(StatefulConverter.class));
+   }
+
+   @Test
+   public void testValidatorsAreShared()
+   {
+      Validator<?> first = ValueHolderUtil.resolveValidator(SharedValidator.class);
+      Assert.assertTrue(first instanceof SharedValidator);
+      Assert.assertSame(first, ValueHolderUtil.resolveValidator(SharedValidator.class));
+   }
+
+   @Test
+   public void testStatefulValidatorsAreNotShared()
+   {
+      Validator<?> first = ValueHolderUtil.resolveValidator(StatefulValidator.class);
+      Assert.assertTrue(first instanceof StatefulValidator);
+      Assert.assertNotSame(first, ValueHolderUtil.resolveValidator(StatefulValidator.class));
+   }
+
+   public static class SharedConverter implements Converter<Object>
+   {
+      @Override
+      public Object convert(Rewrite event, EvaluationContext context, Object value)
+      {
+         return value;
+      }
+   }
+
+   public static class StatefulConverter extends SharedConverter implements Stateful
+   {}
+
+   public static class SharedValidator implements Validator<Object>
+   {
+      @Override
+      public boolean validate(Rewrite event, EvaluationContext context, Object value)
+      {
+         return true;
+      }
+   }
+
+   public static class StatefulValidator extends SharedValidator implements Stateful
+   {}
+}
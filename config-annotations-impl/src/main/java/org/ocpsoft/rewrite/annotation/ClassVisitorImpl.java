@@ -37,6 +37,11 @@ import org.ocpsoft.rewrite.config.ConfigurationBuilder;
 import org.ocpsoft.rewrite.config.Rule;
 import org.ocpsoft.rewrite.config.RuleBuilder;
 
+/**
+ * {@link ClassVisitor} that collects the rules created by {@link AnnotationHandler} instances into a
+ * {@link Configuration}. Visiting is synchronized, so that class finders may visit classes from more than one thread;
+ * rules are added in the order in which classes are visited.
+ */
 public class ClassVisitorImpl implements ClassVisitor, Configuration
 {
 
@@ -81,7 +86,7 @@ public class ClassVisitorImpl implements ClassVisitor, Configuration
     * Processes the annotation on the supplied class.
     */
    @Override
-   public void visit(Class<?> clazz)
+   public synchronized void visit(Class<?> clazz)
    {
 
       RuleBuilder ruleBuilder = RuleBuilder.define();
@@ -144,7 +149,7 @@ public class ClassVisitorImpl implements ClassVisitor, Configuration
    }
 
    @Override
-   public List<Rule> getRules()
+   public synchronized List<Rule> getRules()
    {
       return builder.getRules();
    }
@@ -21,6 +21,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletContext;
 
@@ -29,6 +34,7 @@ import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.annotation.ClassVisitorImpl;
 import org.ocpsoft.rewrite.annotation.scan.ByteCodeFilter;
 import org.ocpsoft.rewrite.annotation.scan.PackageFilter;
+import org.ocpsoft.rewrite.annotation.scan.ScanCache;
 import org.ocpsoft.rewrite.annotation.scan.WebClassesFinder;
 import org.ocpsoft.rewrite.annotation.scan.WebLibFinder;
 import org.ocpsoft.rewrite.annotation.spi.AnnotationHandler;
@@ -42,6 +48,14 @@ public class AnnotationConfigProvider extends HttpConfigurationProvider
 
    public static final String CONFIG_SCAN_LIB_DIR = "com.ocpsoft.pretty.SCAN_LIB_DIRECTORY";
    public static final String CONFIG_BASE_PACKAGES = "com.ocpsoft.pretty.BASE_PACKAGES";
+   public static final String CONFIG_SCAN_THREADS = "org.ocpsoft.rewrite.annotation.SCAN_THREADS";
+   public static final String CONFIG_SCAN_CACHE = "org.ocpsoft.rewrite.annotation.SCAN_CACHE";
+   public static final String CONFIG_SCAN_INDEX = "org.ocpsoft.rewrite.annotation.SCAN_INDEX";
+
+   /**
+    * Upper bound for the default number of scanning threads
+    */
+   private static final int MAX_DEFAULT_SCAN_THREADS = 8;
 
    @Override
    public int priority()
@@ -69,6 +83,33 @@ public class AnnotationConfigProvider extends HttpConfigurationProvider
          scanLibDir = true;
       }
 
+      // the number of threads used to read class files; 1 scans on the calling thread
+      int scanThreads = Math.min(Runtime.getRuntime().availableProcessors(), MAX_DEFAULT_SCAN_THREADS);
+      String threadsConfig = servletContext.getInitParameter(CONFIG_SCAN_THREADS);
+      if ((threadsConfig != null) && (threadsConfig.trim().length() > 0)) {
+         try {
+            scanThreads = Integer.parseInt(threadsConfig.trim());
+         }
+         catch (NumberFormatException e) {
+            log.warn("Invalid value [{}] for {}, using {} threads", new Object[] { threadsConfig, CONFIG_SCAN_THREADS,
+                     scanThreads });
+         }
+      }
+
+      // the results of scanning the WEB-INF/lib directory are cached in the temporary directory unless disabled
+      boolean scanCacheEnabled = true;
+      String cacheConfig = servletContext.getInitParameter(CONFIG_SCAN_CACHE);
+      if ((cacheConfig != null) && cacheConfig.trim().equalsIgnoreCase("false")) {
+         scanCacheEnabled = false;
+      }
+
+      // annotation indexes written at build time replace the scan only if enabled, as they may be stale
+      boolean scanIndexEnabled = false;
+      String indexConfig = servletContext.getInitParameter(CONFIG_SCAN_INDEX);
+      if ((indexConfig != null) && indexConfig.trim().equalsIgnoreCase("true")) {
+         scanIndexEnabled = true;
+      }
+
       // users can disable annotation scanning
       if ((packageFilters != null) && packageFilters.trim().equalsIgnoreCase("none")) {
          log.debug("Annotation scanning is disabled!");
@@ -111,27 +152,78 @@ public class AnnotationConfigProvider extends HttpConfigurationProvider
          classloader = this.getClass().getClassLoader();
       }
 
+      // cached scan results are only valid for the same packages, annotations and index setting
+      ScanCache scanCache = null;
+      if (scanLibDir && scanCacheEnabled) {
+         scanCache = ScanCache.load(servletContext, getScanCacheSignature(packageFilters, annotationType,
+                  scanIndexEnabled));
+      }
+
       /*
        * ======================================================
        * =============[ Scanning process starts ]==============
        * ======================================================
        */
 
-      // TODO this should be pulled out into a utility allowing it to run in Java SE
-      // compile a list of class finders to run
-      List<ClassFinder> classFinders = new ArrayList<ClassFinder>();
-      classFinders.add(new WebClassesFinder(servletContext, classloader, packageFilter, byteCodeFilter));
-      if (scanLibDir) {
-         classFinders.add(new WebLibFinder(servletContext, classloader, packageFilter, byteCodeFilter));
+      // class files are read and filtered on a bounded pool; classes are loaded and visited on this thread
+      ExecutorService executor = scanThreads > 1 ? createExecutor(scanThreads, classloader) : null;
+
+      try {
+         // TODO this should be pulled out into a utility allowing it to run in Java SE
+         // compile a list of class finders to run
+         List<ClassFinder> classFinders = new ArrayList<ClassFinder>();
+         classFinders.add(new WebClassesFinder(servletContext, classloader, packageFilter, byteCodeFilter, executor,
+                  scanIndexEnabled));
+         if (scanLibDir) {
+            classFinders.add(new WebLibFinder(servletContext, classloader, packageFilter, byteCodeFilter, executor,
+                     scanCache, scanIndexEnabled));
+         }
+
+         // start the scanning process
+         for (ClassFinder finder : classFinders) {
+            finder.findClasses(classVisitor);
+         }
+
+         // remember the results for the next start
+         if (scanCache != null) {
+            scanCache.store();
+         }
       }
-
-      // start the scanning process
-      for (ClassFinder finder : classFinders) {
-         finder.findClasses(classVisitor);
+      finally {
+         if (executor != null) {
+            executor.shutdownNow();
+         }
       }
 
       // return the rules collected by the class visitor
       return classVisitor;
    }
 
+   private static String getScanCacheSignature(final String packageFilters,
+            final Set<Class<? extends Annotation>> annotationTypes, final boolean scanIndexEnabled)
+   {
+      Set<String> names = new TreeSet<String>();
+      for (Class<? extends Annotation> type : annotationTypes) {
+         names.add(type.getName());
+      }
+      return "packages=" + (packageFilters == null ? "" : packageFilters.trim()) + ";annotations=" + names
+               + ";index=" + scanIndexEnabled;
+   }
+
+   private static ExecutorService createExecutor(final int threads, final ClassLoader classloader)
+   {
+      return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+         private final AtomicInteger count = new AtomicInteger();
+
+         @Override
+         public Thread newThread(Runnable runnable)
+         {
+            Thread thread = new Thread(runnable, "rewrite-annotation-scan-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(classloader);
+            return thread;
+         }
+      });
+   }
+
 }
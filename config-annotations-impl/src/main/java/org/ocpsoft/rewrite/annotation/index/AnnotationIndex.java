@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010 Lincoln Baxter, III
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * Reads and writes the annotation index created by the {@link AnnotationIndexProcessor}. The index is a UTF-8 text
+ * resource located at {@link #RESOURCE} with one line per class. Each line contains the binary name of a class,
+ * followed by the binary names of the runtime annotations found on the class, its fields, its methods and their
+ * parameters, separated by whitespace. Empty lines and lines starting with <code>#</code> are ignored.
+ * </p>
+ *
+ * @author Christian Kaltepoth
+ */
+public final class AnnotationIndex
+{
+
+   /**
+    * The location of the index relative to the root of a class path entry
+    */
+   public static final String RESOURCE = "META-INF/rewrite-annotation-index";
+
+   private static final String ENCODING = "UTF-8";
+
+   private AnnotationIndex()
+   {}
+
+   /**
+    * Read an index. The caller is responsible to close the supplied {@link InputStream}.
+    *
+    * @param stream The stream to read the index from
+    * @return the annotations of each class, keyed by class name and sorted by name
+    * @throws IOException for any kind of IO problem
+    */
+   public static Map<String, Set<String>> read(InputStream stream) throws IOException
+   {
+      Map<String, Set<String>> result = new TreeMap<String, Set<String>>();
+
+      BufferedReader reader = new BufferedReader(new InputStreamReader(stream, ENCODING));
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+         line = line.trim();
+
+         // ignore blank lines and comments
+         if ((line.length() == 0) || line.startsWith("#"))
+         {
+            continue;
+         }
+
+         // the first token is the class, all others are annotations
+         String[] tokens = line.split("\\s+");
+         Set<String> annotations = result.get(tokens[0]);
+         if (annotations == null)
+         {
+            annotations = new TreeSet<String>();
+            result.put(tokens[0], annotations);
+         }
+         for (int i = 1; i < tokens.length; i++)
+         {
+            annotations.add(tokens[i]);
+         }
+      }
+
+      return result;
+   }
+
+   /**
+    * Write an index. The caller is responsible to close the supplied {@link OutputStream}.
+    *
+    * @param index The annotations of each class, keyed by class name
+    * @param stream The stream to write the index to
+    * @throws IOException for any kind of IO problem
+    */
+   public static void write(Map<String, Set<String>> index, OutputStream stream) throws IOException
+   {
+      Writer writer = new OutputStreamWriter(stream, ENCODING);
+      writer.write("# Generated by " + AnnotationIndexProcessor.class.getName() + "\n");
+      for (Entry<String, Set<String>> entry : new TreeMap<String, Set<String>>(index).entrySet())
+      {
+         writer.write(entry.getKey());
+         for (String annotation : new TreeSet<String>(entry.getValue()))
+         {
+            writer.write(' ');
+            writer.write(annotation);
+         }
+         writer.write('\n');
+      }
+      writer.flush();
+   }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2010 Lincoln Baxter, III
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.ocpsoft.rewrite.annotation.config.AnnotationConfigProvider;
+import org.ocpsoft.rewrite.annotation.scan.WebClassesFinder;
+import org.ocpsoft.rewrite.annotation.scan.WebLibFinder;
+
+/**
+ * <p>
+ * Annotation processor that writes an {@link AnnotationIndex} of all compiled classes carrying runtime annotations,
+ * so that {@link WebClassesFinder} and {@link WebLibFinder} can read the index instead of scanning the byte code of
+ * every class at startup. The handlers are only known at runtime, so all runtime annotations are recorded and the
+ * finders select the classes with handled annotations when reading the index.
+ * </p>
+ * <p>
+ * The processor is registered as a service and runs automatically when this module is on the compile class path. For
+ * incremental compilation, entries of an existing index are kept for classes that were not compiled again, as long as
+ * the class still exists. Anonymous and local classes are not indexed.
+ * </p>
+ * <p>
+ * An index is only read if the context parameter {@link AnnotationConfigProvider#CONFIG_SCAN_INDEX} is set to
+ * <code>true</code>, because an index that is older than the classes it was written for hides the classes added since.
+ * </p>
+ *
+ * @author Christian Kaltepoth
+ */
+@SupportedAnnotationTypes("*")
+public class AnnotationIndexProcessor extends AbstractProcessor
+{
+
+   /**
+    * The annotations of the indexed classes compiled in this run
+    */
+   private final Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+
+   /**
+    * All classes compiled in this run, including those without annotations
+    */
+   private final Set<String> compiledClasses = new HashSet<String>();
+
+   @Override
+   public SourceVersion getSupportedSourceVersion()
+   {
+      return SourceVersion.latestSupported();
+   }
+
+   @Override
+   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+   {
+      if (roundEnv.processingOver())
+      {
+         writeIndex();
+      }
+      else
+      {
+         for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements()))
+         {
+            indexType(type);
+         }
+      }
+
+      // never claim any annotations, other processors may need them
+      return false;
+   }
+
+   /**
+    * Record the annotations of a type and of all its member types
+    */
+   private void indexType(TypeElement type)
+   {
+      Elements elements = processingEnv.getElementUtils();
+      String className = elements.getBinaryName(type).toString();
+      compiledClasses.add(className);
+
+      Set<String> annotations = new TreeSet<String>();
+
+      // the class including inherited annotations, just like Class.getAnnotations()
+      addAnnotations(annotations, elements.getAllAnnotationMirrors(type));
+
+      // the fields
+      for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+      {
+         addAnnotations(annotations, field.getAnnotationMirrors());
+      }
+
+      // the methods and their parameters
+      for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements()))
+      {
+         addAnnotations(annotations, method.getAnnotationMirrors());
+         for (VariableElement parameter : method.getParameters())
+         {
+            addAnnotations(annotations, parameter.getAnnotationMirrors());
+         }
+      }
+
+      if (!annotations.isEmpty())
+      {
+         index.put(className, annotations);
+      }
+
+      // member types are separate classes
+      for (TypeElement memberType : ElementFilter.typesIn(type.getEnclosedElements()))
+      {
+         indexType(memberType);
+      }
+   }
+
+   /**
+    * Add the names of all annotations that are visible at runtime
+    */
+   private void addAnnotations(Set<String> result, Iterable<? extends AnnotationMirror> mirrors)
+   {
+      for (AnnotationMirror mirror : mirrors)
+      {
+         Element annotationType = mirror.getAnnotationType().asElement();
+         Retention retention = annotationType.getAnnotation(Retention.class);
+         if ((retention != null) && (retention.value() == RetentionPolicy.RUNTIME))
+         {
+            result.add(processingEnv.getElementUtils().getBinaryName((TypeElement) annotationType).toString());
+         }
+      }
+   }
+
+   /**
+    * Merge the index of this run with an existing index and write it to the class output
+    */
+   private void writeIndex()
+   {
+      Map<String, Set<String>> result = new TreeMap<String, Set<String>>();
+
+      // keep the entries of classes that have not been compiled in this run
+      Map<String, Set<String>> existing = readExistingIndex();
+      if (existing != null)
+      {
+         for (Entry<String, Set<String>> entry : existing.entrySet())
+         {
+            if (!compiledClasses.contains(entry.getKey()) && classExists(entry.getKey()))
+            {
+               result.put(entry.getKey(), entry.getValue());
+            }
+         }
+      }
+      result.putAll(index);
+
+      // don't create an empty index for a module without annotated classes
+      if ((existing == null) && result.isEmpty())
+      {
+         return;
+      }
+
+      try
+      {
+         FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                  AnnotationIndex.RESOURCE);
+         OutputStream stream = resource.openOutputStream();
+         try
+         {
+            AnnotationIndex.write(result, stream);
+         }
+         finally
+         {
+            stream.close();
+         }
+      }
+      catch (IOException e)
+      {
+         processingEnv.getMessager().printMessage(Kind.WARNING,
+                  "Unable to write " + AnnotationIndex.RESOURCE + ": " + e.getMessage());
+      }
+   }
+
+   /**
+    * Read the index of a previous run, or return <code>null</code> if there is none
+    */
+   private Map<String, Set<String>> readExistingIndex()
+   {
+      try
+      {
+         FileObject resource = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                  AnnotationIndex.RESOURCE);
+         InputStream stream = resource.openInputStream();
+         try
+         {
+            return AnnotationIndex.read(stream);
+         }
+         finally
+         {
+            stream.close();
+         }
+      }
+      catch (IOException e)
+      {
+         // no previous index
+         return null;
+      }
+      catch (IllegalArgumentException e)
+      {
+         // some compilers reject resources that don't exist
+         return null;
+      }
+   }
+
+   /**
+    * Checks whether a class of a previous run still exists in the class output or on the class path
+    */
+   private boolean classExists(String className)
+   {
+      if (processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) != null)
+      {
+         return true;
+      }
+
+      try
+      {
+         FileObject classFile = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+                  className.replace('.', '/') + ".class");
+         InputStream stream = classFile.openInputStream();
+         stream.close();
+         return true;
+      }
+      catch (IOException e)
+      {
+         return false;
+      }
+      catch (IllegalArgumentException e)
+      {
+         return false;
+      }
+   }
+
+}
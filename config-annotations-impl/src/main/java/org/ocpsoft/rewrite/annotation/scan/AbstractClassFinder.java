@@ -18,11 +18,22 @@ package org.ocpsoft.rewrite.annotation.scan;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.servlet.ServletContext;
 
 import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.annotation.api.ClassVisitor;
+import org.ocpsoft.rewrite.annotation.index.AnnotationIndex;
 import org.ocpsoft.rewrite.annotation.spi.ClassFinder;
 
 /**
@@ -58,6 +69,16 @@ public abstract class AbstractClassFinder implements ClassFinder
     */
    private final ByteCodeFilter byteCodeFilter;
 
+   /**
+    * The pool used to read and filter class files concurrently, or <code>null</code> to do so on the calling thread
+    */
+   private final ExecutorService executor;
+
+   /**
+    * Whether an {@link AnnotationIndex} written at build time replaces the scan of the classes it was written for
+    */
+   protected final boolean useAnnotationIndex;
+
    /**
     * Initialization procedure
     * 
@@ -67,11 +88,43 @@ public abstract class AbstractClassFinder implements ClassFinder
     */
    public AbstractClassFinder(ServletContext servletContext, ClassLoader classLoader, PackageFilter packageFilter,
             ByteCodeFilter byteCodeFilter)
+   {
+      this(servletContext, classLoader, packageFilter, byteCodeFilter, null);
+   }
+
+   /**
+    * Initialization procedure
+    * 
+    * @param servletContext The {@link ServletContext} of the web application.
+    * @param classLoader The {@link ClassLoader} to use for loading classes
+    * @param packageFilter The {@link PackageFilter} used to check if a package has to be scanned.
+    * @param executor The pool used to read and filter class files concurrently (may be <code>null</code>)
+    */
+   public AbstractClassFinder(ServletContext servletContext, ClassLoader classLoader, PackageFilter packageFilter,
+            ByteCodeFilter byteCodeFilter, ExecutorService executor)
+   {
+      this(servletContext, classLoader, packageFilter, byteCodeFilter, executor, false);
+   }
+
+   /**
+    * Initialization procedure
+    * 
+    * @param servletContext The {@link ServletContext} of the web application.
+    * @param classLoader The {@link ClassLoader} to use for loading classes
+    * @param packageFilter The {@link PackageFilter} used to check if a package has to be scanned.
+    * @param executor The pool used to read and filter class files concurrently (may be <code>null</code>)
+    * @param useAnnotationIndex Whether to visit the classes listed in an {@link AnnotationIndex} instead of scanning
+    *           the class files it was written for
+    */
+   public AbstractClassFinder(ServletContext servletContext, ClassLoader classLoader, PackageFilter packageFilter,
+            ByteCodeFilter byteCodeFilter, ExecutorService executor, boolean useAnnotationIndex)
    {
       this.servletContext = servletContext;
       this.classLoader = classLoader;
       this.packageFilter = packageFilter;
       this.byteCodeFilter = byteCodeFilter;
+      this.executor = executor;
+      this.useAnnotationIndex = useAnnotationIndex;
    }
 
    /**
@@ -122,20 +175,7 @@ public abstract class AbstractClassFinder implements ClassFinder
     */
    protected boolean mustProcessClass(String className)
    {
-
-      // the default package
-      String packageName = "";
-
-      // find last dot in class name to determine the package name
-      int packageEndIndex = className.lastIndexOf(".");
-      if (packageEndIndex != -1)
-      {
-         packageName = className.substring(0, packageEndIndex);
-      }
-
-      // check filter
-      return packageFilter.isAllowedPackage(packageName);
-
+      return packageFilter.isAllowedClass(className);
    }
 
    /**
@@ -158,6 +198,28 @@ public abstract class AbstractClassFinder implements ClassFinder
     * @param visitor the visitor
     */
    protected void processClass(String className, InputStream classFileStream, ClassVisitor visitor)
+   {
+      if (mayContainAnnotations(className, classFileStream))
+      {
+         loadAndVisit(className, visitor);
+      }
+   }
+
+   /**
+    * <p>
+    * Checks whether a class has to be loaded by scanning its class file with the {@link ByteCodeFilter}. Classes
+    * without a class file stream, or whose class file cannot be parsed, are always accepted. This method does not load
+    * any classes, and may be called concurrently.
+    * </p>
+    * <p>
+    * Please not the the called of this method is responsible to close the supplied {@link InputStream}!
+    * </p>
+    * 
+    * @param className The FQCN of the class
+    * @param classFileStream The Java class file of the class (may be <code>null</code>)
+    * @return <code>true</code> if the class has to be loaded and visited
+    */
+   protected boolean mayContainAnnotations(String className, InputStream classFileStream)
    {
 
       // bytecode check is only performed if the InputStream is available
@@ -174,7 +236,7 @@ public abstract class AbstractClassFinder implements ClassFinder
             // No annotations -> abort
             if (!shouldScanClass)
             {
-               return;
+               return false;
             }
 
             // filter says we should scan the class
@@ -193,6 +255,71 @@ public abstract class AbstractClassFinder implements ClassFinder
          }
       }
 
+      return true;
+   }
+
+   /**
+    * <p>
+    * Reads an {@link AnnotationIndex} and returns the names of the classes that must be loaded and visited. These are
+    * the classes accepted by the {@link PackageFilter} that carry at least one of the annotations the
+    * {@link ByteCodeFilter} is looking for. This method does not load any classes, and may be called concurrently.
+    * </p>
+    * <p>
+    * Please note that the caller of this method is responsible to close the supplied {@link InputStream}!
+    * </p>
+    * 
+    * @param indexStream The stream to read the index from
+    * @return the names of the classes to visit
+    * @throws IOException for any kind of IO problem
+    */
+   protected List<String> readAnnotationIndex(InputStream indexStream) throws IOException
+   {
+      List<String> result = new ArrayList<String>();
+      Set<String> annotationTypes = byteCodeFilter.getTypeNames();
+
+      for (Entry<String, Set<String>> entry : AnnotationIndex.read(indexStream).entrySet())
+      {
+         // check name against PackageFilter
+         if (mustProcessClass(entry.getKey()))
+         {
+            // the class must carry at least one of the interesting annotations
+            for (String annotation : entry.getValue())
+            {
+               if (annotationTypes.contains(annotation))
+               {
+                  result.add(entry.getKey());
+                  break;
+               }
+            }
+         }
+      }
+
+      return result;
+   }
+
+   /**
+    * Load the given classes and call {@link ClassVisitor#visit(Class)} for each, on the calling thread and in order of
+    * their names, so that the resulting rules do not depend on the order in which classes were found.
+    * 
+    * @param classNames The FQCNs of the classes to visit
+    * @param visitor the visitor
+    */
+   protected void visitClasses(Collection<String> classNames, ClassVisitor visitor)
+   {
+      for (String className : new TreeSet<String>(classNames))
+      {
+         loadAndVisit(className, visitor);
+      }
+   }
+
+   /**
+    * Load a single class and call {@link ClassVisitor#visit(Class)}.
+    * 
+    * @param className The FQCN of the class
+    * @param visitor the visitor
+    */
+   protected void loadAndVisit(String className, ClassVisitor visitor)
+   {
       try
       {
          // request this class from the ClassLoader
@@ -215,4 +342,55 @@ public abstract class AbstractClassFinder implements ClassFinder
 
    }
 
+   /**
+    * Run the given tasks using the configured pool, or one after another on the calling thread if there is none, and
+    * return their results in the order of the tasks.
+    * 
+    * @param tasks The tasks to run
+    * @return the results of the tasks
+    */
+   protected <T> List<T> invokeAll(List<Callable<T>> tasks)
+   {
+      List<T> results = new ArrayList<T>(tasks.size());
+      try
+      {
+         if ((executor == null) || (tasks.size() < 2))
+         {
+            for (Callable<T> task : tasks)
+            {
+               results.add(task.call());
+            }
+         }
+         else
+         {
+            for (Future<T> future : executor.invokeAll(tasks))
+            {
+               results.add(future.get());
+            }
+         }
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted while scanning for classes", e);
+      }
+      catch (ExecutionException e)
+      {
+         if (e.getCause() instanceof RuntimeException)
+            throw (RuntimeException) e.getCause();
+         if (e.getCause() instanceof Error)
+            throw (Error) e.getCause();
+         throw new IllegalStateException("Failed to scan for classes", e.getCause());
+      }
+      catch (RuntimeException e)
+      {
+         throw e;
+      }
+      catch (Exception e)
+      {
+         throw new IllegalStateException("Failed to scan for classes", e);
+      }
+      return results;
+   }
+
 }
@@ -15,12 +15,19 @@
  */
 package org.ocpsoft.rewrite.annotation.scan;
 
-import java.io.DataInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.ocpsoft.logging.Logger;
 
@@ -52,7 +59,7 @@ public class ByteCodeFilter
 
    /*
     * Tag values for the Constant Pool:
-    * http://java.sun.com/docs/books/jvms/second_edition/html/ClassFile.doc.html#20080
+    * http://docs.oracle.com/javase/specs/jvms/se11/html/jvms-4.html#jvms-4.4
     */
    private final static int CONSTANT_Class = 7;
    private final static int CONSTANT_Fieldref = 9;
@@ -65,12 +72,43 @@ public class ByteCodeFilter
    private final static int CONSTANT_Double = 6;
    private final static int CONSTANT_NameAndType = 12;
    private final static int CONSTANT_Utf8 = 1;
+   private final static int CONSTANT_MethodHandle = 15;
+   private final static int CONSTANT_MethodType = 16;
+   private final static int CONSTANT_Dynamic = 17;
+   private final static int CONSTANT_InvokeDynamic = 18;
+   private final static int CONSTANT_Module = 19;
+   private final static int CONSTANT_Package = 20;
+
+   /**
+    * The initial size of the buffers used to read class files
+    */
+   private final static int INITIAL_BUFFER_SIZE = 8192;
+
+   /**
+    * Buffers larger than this are not reused
+    */
+   private final static int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
 
    /**
     * The strings to look for in the constants table
     */
    private final Set<String> fieldDescriptors = new HashSet<String>();
 
+   /**
+    * The field descriptors encoded as modified UTF-8
+    */
+   private final List<byte[]> descriptorBytes = new ArrayList<byte[]>();
+
+   /**
+    * Buffers for reading class files, shared by all threads using the filter
+    */
+   private final Queue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+
+   /**
+    * The names of the types to look for
+    */
+   private final Set<String> typeNames = new HashSet<String>();
+
    /**
     * The filter must be initialized with a list of types to look for when scanning the class files. If a class files
     * contains a reference to one of these types, the filter will accept the class.
@@ -81,15 +119,34 @@ public class ByteCodeFilter
    {
       for (Class<? extends Annotation> type : types) {
          fieldDescriptors.add("L" + type.getName().replace('.', '/'));
+         typeNames.add(type.getName());
+      }
+      for (String descriptor : fieldDescriptors) {
+         descriptorBytes.add(toModifiedUtf8(descriptor));
       }
    }
 
+   /**
+    * Returns the names of the types this filter is looking for.
+    *
+    * @return An unmodifiable Set of class names
+    */
+   public Set<String> getTypeNames()
+   {
+      return Collections.unmodifiableSet(typeNames);
+   }
+
    /**
     * <p>
     * Checks whether that supplied {@link InputStream} contains a Java class file that might contain references to
     * specific annotation types.
     * </p>
     * <p>
+    * The class file is read into a buffer that is reused by later calls, and the constant pool is scanned in place.
+    * Strings are matched as raw modified UTF-8 bytes, so no objects are created for the entries of the constant pool.
+    * This method may be called concurrently.
+    * </p>
+    * <p>
     * The caller of this method is responsible to close the supplied {@link InputStream}. This method won't do it!
     * </p>
     *
@@ -97,15 +154,53 @@ public class ByteCodeFilter
     * @return <code>true</code> for files that contain at least one reference to one of the "interesting" annotations
     * @throws IOException for any kind of IO problem
     */
-   @SuppressWarnings("unused")
    public boolean accept(InputStream classFileStream) throws IOException
    {
+      byte[] buffer = buffers.poll();
+      if (buffer == null)
+      {
+         buffer = new byte[INITIAL_BUFFER_SIZE];
+      }
+
+      try
+      {
+         // read the complete class file, growing the buffer if required
+         int length = 0;
+         for (int read; (read = classFileStream.read(buffer, length, buffer.length - length)) != -1;)
+         {
+            length += read;
+            if (length == buffer.length)
+            {
+               buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+         }
+
+         return accept(buffer, length);
+      }
+      finally
+      {
+         // very large buffers are not kept
+         if (buffer.length <= MAX_RETAINED_BUFFER_SIZE)
+         {
+            buffers.offer(buffer);
+         }
+      }
+   }
 
-      // open a DataInputStream
-      DataInputStream in = new DataInputStream(classFileStream);
+   /**
+    * Scans a class file held in the given buffer.
+    *
+    * @param b The buffer containing the class file
+    * @param length The length of the class file
+    * @return <code>true</code> for files that contain at least one reference to one of the "interesting" annotations
+    * @throws IOException if the class file is truncated
+    */
+   private boolean accept(byte[] b, int length) throws IOException
+   {
 
       // read magic and abort if it doesn't match
-      int magic = in.readInt();
+      requireBytes(0, 4, length);
+      int magic = ((b[0] & 0xff) << 24) | ((b[1] & 0xff) << 16) | ((b[2] & 0xff) << 8) | (b[3] & 0xff);
       if (magic != CLASS_FILE_MAGIC)
       {
          if (log.isDebugEnabled())
@@ -115,9 +210,9 @@ public class ByteCodeFilter
          return false;
       }
 
-      // check for at least JDK 1.5
-      int minor = in.readUnsignedShort();
-      int major = in.readUnsignedShort();
+      // check for at least JDK 1.5 (the minor version is ignored)
+      requireBytes(4, 4, length);
+      int major = readUnsignedShort(b, 6);
       if (major < 49)
       {
          // JDK 1.4 or less
@@ -129,75 +224,95 @@ public class ByteCodeFilter
       }
 
       // this values is equal to the number entries in the constants pool + 1
-      int constantPoolEntries = in.readUnsignedShort() - 1;
+      requireBytes(8, 2, length);
+      int constantPoolEntries = readUnsignedShort(b, 8) - 1;
 
       // loop over all entries in the constants pool
+      int pos = 10;
       for (int i = 0; i < constantPoolEntries; i++)
       {
 
          // the tag to identify the record type
-         int tag = in.readUnsignedByte();
+         requireBytes(pos, 1, length);
+         int tag = b[pos] & 0xff;
 
          // process record according to its type
          switch (tag)
          {
 
-         case CONSTANT_Class:
+         case CONSTANT_Utf8:
             /*
-             * CONSTANT_Class_info {
+             * CONSTANT_Utf8_info {
              *   u1 tag;
-             *   u2 name_index;
+             *   u2 length;
+             *   u1 bytes[length];
              * }
              */
-            in.readUnsignedShort();
+            requireBytes(pos + 1, 2, length);
+            int utf8Length = readUnsignedShort(b, pos + 1);
+            requireBytes(pos + 3, utf8Length, length);
+
+            // check if this string sounds interesting
+            if (containsFieldDescriptor(b, pos + 3, utf8Length))
+            {
+               if (log.isTraceEnabled())
+               {
+                  log.trace("Found interesting annotation reference in constant pool: "
+                           + new String(b, pos + 3, utf8Length, "UTF-8"));
+               }
+               return true;
+            }
+            pos += 3 + utf8Length;
             break;
 
-         case CONSTANT_Fieldref:
-         case CONSTANT_Methodref:
-         case CONSTANT_InterfaceMethodref:
+         case CONSTANT_Class:
+         case CONSTANT_String:
+         case CONSTANT_MethodType:
+         case CONSTANT_Module:
+         case CONSTANT_Package:
             /*
-             * CONSTANT_[Fieldref|Methodref|InterfaceMethodref]_info {
-             *   u1 tag;
-             *   u2 class_index;
-             *   u2 name_and_type_index;
-             * }
+             * u1 tag;
+             * u2 index;
              */
-            in.readUnsignedShort();
-            in.readUnsignedShort();
+            pos += 3;
             break;
 
-         case CONSTANT_String:
+         case CONSTANT_MethodHandle:
             /*
-             * CONSTANT_String_info {
+             * CONSTANT_MethodHandle_info {
              *   u1 tag;
-             *   u2 string_index;
+             *   u1 reference_kind;
+             *   u2 reference_index;
              * }
              */
-            in.readUnsignedShort();
+            pos += 4;
             break;
 
          case CONSTANT_Integer:
          case CONSTANT_Float:
+         case CONSTANT_Fieldref:
+         case CONSTANT_Methodref:
+         case CONSTANT_InterfaceMethodref:
+         case CONSTANT_NameAndType:
+         case CONSTANT_Dynamic:
+         case CONSTANT_InvokeDynamic:
             /*
-             * CONSTANT_[Integer|Float]_info {
-             *   u1 tag;
-             *   u4 bytes;
-             * }
+             * u1 tag;
+             * u4 bytes, or two u2 indexes
              */
-            in.readInt();
+            pos += 5;
             break;
 
          case CONSTANT_Long:
          case CONSTANT_Double:
-
             /*
-             * CONSTANT_Long_info {
+             * CONSTANT_[Long|Double]_info {
              *   u1 tag;
              *   u4 high_bytes;
              *   u4 low_bytes;
              * }
              */
-            in.readLong();
+            pos += 9;
 
             /*
              * We must increase the constant pool index because this tag
@@ -207,39 +322,6 @@ public class ByteCodeFilter
 
             break;
 
-         case CONSTANT_NameAndType:
-            /*
-             * CONSTANT_NameAndType_info {
-             *   u1 tag;
-             *   u2 name_index;
-             *   u2 descriptor_index;
-             * }
-             */
-            in.readUnsignedShort();
-            in.readUnsignedShort();
-            break;
-
-         case CONSTANT_Utf8:
-            /*
-             * CONSTANT_Utf8_info {
-             *   u1 tag;
-             *   u2 length;
-             *   u1 bytes[length];
-             * }
-             */
-            String str = in.readUTF();
-
-            // check if this string sounds interesting
-            if (containsFieldDescriptor(str))
-            {
-               if (log.isTraceEnabled())
-               {
-                  log.trace("Found interesting annotation reference in constant pool: " + str);
-               }
-               return true;
-            }
-            break;
-
          default:
             /*
              * Unknown tag! Should not happen! We will scan the class in this case.
@@ -252,23 +334,90 @@ public class ByteCodeFilter
          }
       }
 
+      // the last entry must be complete
+      requireBytes(pos, 0, length);
       return false;
 
    }
 
    /**
-    * Returns true if the given string contains a field descriptor of one of the annotations we are looking for.
+    * Throws an {@link EOFException} if the class file doesn't contain the given number of bytes at the given position.
     */
-   private boolean containsFieldDescriptor(String str)
+   private static void requireBytes(int pos, int count, int length) throws EOFException
    {
-      for (String descriptor : fieldDescriptors) {
-         if (str.contains(descriptor)) {
-            return true;
+      if (pos + count > length)
+      {
+         throw new EOFException("Unexpected end of class file");
+      }
+   }
+
+   private static int readUnsignedShort(byte[] b, int pos)
+   {
+      return ((b[pos] & 0xff) << 8) | (b[pos + 1] & 0xff);
+   }
+
+   /**
+    * Returns true if the given modified UTF-8 bytes contain a field descriptor of one of the annotations we are looking
+    * for.
+    */
+   private boolean containsFieldDescriptor(byte[] b, int offset, int length)
+   {
+      int end = offset + length;
+      for (byte[] descriptor : descriptorBytes)
+      {
+         byte first = descriptor[0];
+         int last = end - descriptor.length;
+         for (int start = offset; start <= last; start++)
+         {
+            if (b[start] == first && regionMatches(b, start, descriptor))
+            {
+               return true;
+            }
          }
       }
       return false;
    }
 
+   private static boolean regionMatches(byte[] b, int start, byte[] descriptor)
+   {
+      for (int i = 1; i < descriptor.length; i++)
+      {
+         if (b[start + i] != descriptor[i])
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Encodes a string using the modified UTF-8 encoding of class files.
+    */
+   private static byte[] toModifiedUtf8(String str)
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(str.length());
+      for (int i = 0; i < str.length(); i++)
+      {
+         char c = str.charAt(i);
+         if ((c >= 0x0001) && (c <= 0x007f))
+         {
+            out.write(c);
+         }
+         else if (c <= 0x07ff)
+         {
+            out.write(0xc0 | (c >> 6));
+            out.write(0x80 | (c & 0x3f));
+         }
+         else
+         {
+            out.write(0xe0 | (c >> 12));
+            out.write(0x80 | ((c >> 6) & 0x3f));
+            out.write(0x80 | (c & 0x3f));
+         }
+      }
+      return out.toByteArray();
+   }
+
    @Override
    public String toString()
    {
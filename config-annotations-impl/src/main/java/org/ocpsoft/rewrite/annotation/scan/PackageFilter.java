@@ -15,6 +15,7 @@
  */
 package org.ocpsoft.rewrite.annotation.scan;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -25,6 +26,11 @@ import org.ocpsoft.logging.Logger;
  * This class represents a package filter specified by the <code>com.ocpsoft.pretty.SCAN_PACKAGES</code> initialization
  * parameter.
  * </p>
+ * <p>
+ * The configured packages are compiled into a trie of package name segments, so that each check walks the name being
+ * checked only once, regardless of the number of configured packages. Besides package and class names, the filter
+ * accepts the paths of class files and directories, which allows finders to skip whole directory trees.
+ * </p>
  *
  * @author Christian Kaltepoth
  */
@@ -33,8 +39,20 @@ public class PackageFilter
 
    private final static Logger log = Logger.getLogger(PackageFilter.class);
 
+   /*
+    * Results of matching a name against the trie
+    */
+   private final static int REJECTED = 0;
+   private final static int PARTIAL = 1;
+   private final static int ALLOWED = 2;
+
    private final Set<String> packageSet = new HashSet<String>();
 
+   /**
+    * The root of the trie, representing the default package
+    */
+   private final Node root = new Node();
+
    /**
     * Creates a new {@link PackageFilter}
     *
@@ -49,6 +67,7 @@ public class PackageFilter
          {
             log.debug("No package filter specified!");
          }
+         root.allowed = true;
          return;
       }
 
@@ -62,6 +81,18 @@ public class PackageFilter
          }
       }
 
+      // no packages in set? Accept all packages.
+      if (packageSet.isEmpty())
+      {
+         root.allowed = true;
+      }
+
+      // build the trie
+      for (String packageName : packageSet)
+      {
+         addPackage(packageName);
+      }
+
       if (log.isDebugEnabled())
       {
          log.debug("Number of packages in filter: " + packageSet.size());
@@ -69,6 +100,30 @@ public class PackageFilter
 
    }
 
+   /**
+    * Adds a package and its sub-packages to the trie
+    */
+   private void addPackage(String packageName)
+   {
+      Node node = root;
+      for (String segment : packageName.split("\\."))
+      {
+         // ignore empty segments caused by leading or trailing dots
+         if (segment.length() == 0)
+         {
+            continue;
+         }
+
+         // a parent package has already been added
+         if (node.allowed)
+         {
+            return;
+         }
+         node = node.addChild(segment);
+      }
+      node.allowed = true;
+   }
+
    /**
     * <p>
     * Checks whether the supplied packages matches the filter.
@@ -86,26 +141,76 @@ public class PackageFilter
     */
    public boolean isAllowedPackage(String packageName)
    {
+      return match(packageName, packageName.length(), '.') == ALLOWED;
+   }
 
-      // No packages in set? Accept all packages.
-      if (packageSet.isEmpty())
-      {
-         return true;
-      }
+   /**
+    * Checks whether the package of the supplied class matches the filter.
+    *
+    * @param className A fully qualified class name
+    * @return <code>true</code> if the filter matches
+    */
+   public boolean isAllowedClass(String className)
+   {
+      return match(className, Math.max(className.lastIndexOf('.'), 0), '.') == ALLOWED;
+   }
 
-      // check all valid packages
-      for (String validPackage : packageSet)
+   /**
+    * Checks whether the package of the supplied class file matches the filter.
+    *
+    * @param path The path of a class file relative to the root of the class path entry, like
+    *           <code>org/ocpsoft/Foo.class</code>
+    * @return <code>true</code> if the filter matches
+    */
+   public boolean isAllowedClassFile(String path)
+   {
+      return match(path, Math.max(path.lastIndexOf('/'), 0), '/') == ALLOWED;
+   }
+
+   /**
+    * Checks whether the supplied directory, or any of its sub-directories, may contain classes that match the filter.
+    * Directories for which this method returns <code>false</code> don't have to be scanned.
+    *
+    * @param path The path of a directory relative to the root of the class path entry, like <code>org/ocpsoft/</code>
+    * @return <code>true</code> if the directory has to be scanned
+    */
+   public boolean isAllowedDirectory(String path)
+   {
+      int end = path.endsWith("/") ? path.length() - 1 : path.length();
+      return match(path, end, '/') != REJECTED;
+   }
+
+   /**
+    * Walks the segments of <code>name</code> up to <code>end</code> through the trie. Returns {@link #ALLOWED} if the
+    * name is a configured package or one of its sub-packages, {@link #PARTIAL} if it is a parent of a configured
+    * package, and {@link #REJECTED} otherwise.
+    */
+   private int match(String name, int end, char separator)
+   {
+      Node node = root;
+      int start = 0;
+      while (!node.allowed)
       {
-         // accept if package is a sub-package of a valid package
-         if (packageName.startsWith(validPackage))
+         // the name is a parent of at least one configured package
+         if (start >= end)
          {
-            return true;
+            return PARTIAL;
          }
-      }
 
-      // package noch accepted
-      return false;
+         int next = name.indexOf(separator, start);
+         if ((next == -1) || (next > end))
+         {
+            next = end;
+         }
 
+         node = node.getChild(name, start, next - start);
+         if (node == null)
+         {
+            return REJECTED;
+         }
+         start = next + 1;
+      }
+      return ALLOWED;
    }
 
    /**
@@ -124,4 +229,42 @@ public class PackageFilter
       return "PackageFilter [packageSet=" + packageSet + "]";
    }
 
+   /**
+    * A package in the trie. Packages typically have few children, so they are searched linearly without creating
+    * substrings of the name being matched.
+    */
+   private static final class Node
+   {
+      private boolean allowed;
+      private String[] segments = new String[0];
+      private Node[] children = new Node[0];
+
+      private Node getChild(String name, int offset, int length)
+      {
+         for (int i = 0; i < segments.length; i++)
+         {
+            String segment = segments[i];
+            if ((segment.length() == length) && name.regionMatches(offset, segment, 0, length))
+            {
+               return children[i];
+            }
+         }
+         return null;
+      }
+
+      private Node addChild(String segment)
+      {
+         Node child = getChild(segment, 0, segment.length());
+         if (child == null)
+         {
+            child = new Node();
+            segments = Arrays.copyOf(segments, segments.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            segments[segments.length - 1] = segment;
+            children[children.length - 1] = child;
+         }
+         return child;
+      }
+   }
+
 }
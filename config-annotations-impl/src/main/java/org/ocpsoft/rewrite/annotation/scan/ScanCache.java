@@ -0,0 +1,398 @@
+/*
+ * Copyright 2010 Lincoln Baxter, III
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.scan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.logging.Logger;
+
+/**
+ * <p>
+ * Persistent cache of the classes found in the JAR archives of the <code>/WEB-INF/lib/</code> directory, stored in the
+ * temporary directory of the web application. Each archive is identified by its size, modification time and checksum,
+ * so that only archives that have changed since the last start are scanned again.
+ * </p>
+ * <p>
+ * The cache is only valid for the configuration it was created with. If the signature passed to
+ * {@link #load(ServletContext, String)} differs from the stored one, all entries are discarded. Instances may be used
+ * concurrently.
+ * </p>
+ *
+ * @author Christian Kaltepoth
+ */
+public class ScanCache
+{
+
+   private final static Logger log = Logger.getLogger(ScanCache.class);
+
+   /**
+    * The {@link ServletContext} attribute containing the temporary directory of the web application
+    */
+   public final static String TEMP_DIR_ATTRIBUTE = "javax.servlet.context.tempdir";
+
+   /**
+    * The name of the cache file in the temporary directory
+    */
+   public final static String FILE_NAME = "rewrite-annotation-scan.cache";
+
+   /**
+    * Identifies the file format, must be changed whenever the format changes
+    */
+   private final static int FILE_MAGIC = 0x52575343;
+   private final static int FILE_VERSION = 1;
+
+   private final File file;
+   private final String signature;
+
+   /**
+    * Entries read from the cache file
+    */
+   private final Map<String, CachedJar> stored;
+
+   /**
+    * Entries found or created in this run, written by {@link #store()}
+    */
+   private final Map<String, CachedJar> current = new HashMap<String, CachedJar>();
+
+   private boolean modified;
+
+   private ScanCache(File file, String signature, Map<String, CachedJar> stored)
+   {
+      this.file = file;
+      this.signature = signature;
+      this.stored = stored;
+   }
+
+   /**
+    * Load the cache of the web application. Returns <code>null</code> if the container does not provide a temporary
+    * directory.
+    *
+    * @param servletContext The {@link ServletContext} of the web application
+    * @param signature Describes the configuration the cached results depend on
+    */
+   public static ScanCache load(ServletContext servletContext, String signature)
+   {
+      Object tempDir = servletContext.getAttribute(TEMP_DIR_ATTRIBUTE);
+      if (!(tempDir instanceof File) || !((File) tempDir).isDirectory())
+      {
+         if (log.isDebugEnabled())
+         {
+            log.debug("No temporary directory available, annotation scan results will not be cached");
+         }
+         return null;
+      }
+      return load(new File((File) tempDir, FILE_NAME), signature);
+   }
+
+   /**
+    * Load the given cache file. A missing, unreadable or outdated file results in an empty cache.
+    *
+    * @param file The cache file
+    * @param signature Describes the configuration the cached results depend on
+    */
+   public static ScanCache load(File file, String signature)
+   {
+      Map<String, CachedJar> stored = new HashMap<String, CachedJar>();
+      if (file.isFile())
+      {
+         try
+         {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try
+            {
+               if ((in.readInt() == FILE_MAGIC) && (in.readInt() == FILE_VERSION) && signature.equals(in.readUTF()))
+               {
+                  int jars = in.readInt();
+                  for (int i = 0; i < jars; i++)
+                  {
+                     String path = in.readUTF();
+                     Fingerprint fingerprint = new Fingerprint(in.readLong(), in.readLong(), in.readLong());
+                     int classCount = in.readInt();
+                     List<String> classNames = new ArrayList<String>(classCount);
+                     for (int j = 0; j < classCount; j++)
+                     {
+                        classNames.add(in.readUTF());
+                     }
+                     stored.put(path, new CachedJar(fingerprint, classNames));
+                  }
+               }
+               else if (log.isDebugEnabled())
+               {
+                  log.debug("Discarding annotation scan cache created for a different configuration: " + file);
+               }
+            }
+            finally
+            {
+               in.close();
+            }
+         }
+         catch (IOException e)
+         {
+            if (log.isDebugEnabled())
+            {
+               log.debug("Failed to read annotation scan cache: " + file, e);
+            }
+            stored.clear();
+         }
+      }
+      return new ScanCache(file, signature, stored);
+   }
+
+   /**
+    * Returns the cached class names of an archive, or <code>null</code> if the archive is not cached or has changed.
+    *
+    * @param path The path of the archive in the web application
+    * @param fingerprint The current {@link Fingerprint} of the archive
+    */
+   public synchronized List<String> get(String path, Fingerprint fingerprint)
+   {
+      CachedJar cached = stored.get(path);
+      if ((cached != null) && cached.fingerprint.equals(fingerprint))
+      {
+         current.put(path, cached);
+         return cached.classNames;
+      }
+      return null;
+   }
+
+   /**
+    * Store the class names found in an archive.
+    *
+    * @param path The path of the archive in the web application
+    * @param fingerprint The {@link Fingerprint} of the scanned archive
+    * @param classNames The names of the classes that must be loaded and visited
+    */
+   public synchronized void put(String path, Fingerprint fingerprint, List<String> classNames)
+   {
+      current.put(path, new CachedJar(fingerprint, Collections.unmodifiableList(new ArrayList<String>(classNames))));
+      modified = true;
+   }
+
+   /**
+    * Write the entries used or created since the cache was loaded to the cache file, dropping the entries of archives
+    * that no longer exist. Nothing is written if the file is up to date.
+    */
+   public synchronized void store()
+   {
+      if (!modified && (current.size() == stored.size()))
+      {
+         return;
+      }
+
+      // write to a temporary file first, so that a partially written cache is never read
+      File temp = new File(file.getPath() + ".tmp");
+      try
+      {
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+         try
+         {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(signature);
+            out.writeInt(current.size());
+            for (Entry<String, CachedJar> entry : current.entrySet())
+            {
+               Fingerprint fingerprint = entry.getValue().fingerprint;
+               out.writeUTF(entry.getKey());
+               out.writeLong(fingerprint.size);
+               out.writeLong(fingerprint.lastModified);
+               out.writeLong(fingerprint.checksum);
+               out.writeInt(entry.getValue().classNames.size());
+               for (String className : entry.getValue().classNames)
+               {
+                  out.writeUTF(className);
+               }
+            }
+         }
+         finally
+         {
+            out.close();
+         }
+
+         if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+         {
+            throw new IOException("Cannot rename " + temp + " to " + file);
+         }
+
+         stored.clear();
+         stored.putAll(current);
+         modified = false;
+      }
+      catch (IOException e)
+      {
+         log.warn("Failed to write annotation scan cache: " + file, e);
+         temp.delete();
+      }
+   }
+
+   /**
+    * Compute the {@link Fingerprint} of an archive. Archives that are local files are identified by their size,
+    * modification time and checksum. For other archives the size and checksum are computed while reading the archive,
+    * and the modification time is taken from the {@link URLConnection}.
+    *
+    * @param url The URL of the archive
+    * @throws IOException if the archive cannot be read
+    */
+   public static Fingerprint fingerprint(URL url) throws IOException
+   {
+      File localFile = toLocalFile(url);
+      if (localFile != null)
+      {
+         return fingerprint(localFile);
+      }
+
+      URLConnection connection = url.openConnection();
+      Fingerprint content = checksum(connection.getInputStream());
+      return new Fingerprint(content.size, connection.getLastModified(), content.checksum);
+   }
+
+   /**
+    * Compute the {@link Fingerprint} of an archive that is a local file.
+    *
+    * @param file The archive
+    * @throws IOException if the archive cannot be read
+    */
+   public static Fingerprint fingerprint(File file) throws IOException
+   {
+      long size = file.length();
+      long lastModified = file.lastModified();
+      return new Fingerprint(size, lastModified, checksum(new FileInputStream(file)).checksum);
+   }
+
+   /**
+    * Returns the local file of a <code>file:</code> URL, or <code>null</code> if the URL doesn't denote an existing
+    * file.
+    */
+   static File toLocalFile(URL url)
+   {
+      if (!"file".equals(url.getProtocol()))
+      {
+         return null;
+      }
+      try
+      {
+         File file = new File(url.toURI());
+         return file.isFile() ? file : null;
+      }
+      catch (URISyntaxException e)
+      {
+         return null;
+      }
+      catch (IllegalArgumentException e)
+      {
+         return null;
+      }
+   }
+
+   /**
+    * Read and close the stream, returning its size and CRC-32 checksum
+    */
+   private static Fingerprint checksum(InputStream stream) throws IOException
+   {
+      try
+      {
+         CRC32 crc = new CRC32();
+         byte[] buffer = new byte[8192];
+         long size = 0;
+         for (int len; (len = stream.read(buffer)) != -1;)
+         {
+            crc.update(buffer, 0, len);
+            size += len;
+         }
+         return new Fingerprint(size, 0, crc.getValue());
+      }
+      finally
+      {
+         stream.close();
+      }
+   }
+
+   /**
+    * Identifies the content of an archive
+    */
+   public static final class Fingerprint
+   {
+      private final long size;
+      private final long lastModified;
+      private final long checksum;
+
+      public Fingerprint(long size, long lastModified, long checksum)
+      {
+         this.size = size;
+         this.lastModified = lastModified;
+         this.checksum = checksum;
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (!(obj instanceof Fingerprint))
+         {
+            return false;
+         }
+         Fingerprint other = (Fingerprint) obj;
+         return (size == other.size) && (lastModified == other.lastModified) && (checksum == other.checksum);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return (int) (size ^ lastModified ^ checksum);
+      }
+
+      @Override
+      public String toString()
+      {
+         return "Fingerprint [size=" + size + ", lastModified=" + lastModified + ", checksum=" + checksum + "]";
+      }
+   }
+
+   /**
+    * The cached result of scanning an archive
+    */
+   private static final class CachedJar
+   {
+      private final Fingerprint fingerprint;
+      private final List<String> classNames;
+
+      private CachedJar(Fingerprint fingerprint, List<String> classNames)
+      {
+         this.fingerprint = fingerprint;
+         this.classNames = classNames;
+      }
+   }
+
+}
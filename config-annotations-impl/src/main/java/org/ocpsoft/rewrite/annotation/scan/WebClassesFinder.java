@@ -19,18 +19,27 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import javax.servlet.ServletContext;
 
 import org.ocpsoft.rewrite.annotation.ClassVisitorImpl;
 import org.ocpsoft.rewrite.annotation.api.ClassVisitor;
+import org.ocpsoft.rewrite.annotation.index.AnnotationIndex;
 import org.ocpsoft.rewrite.annotation.spi.ClassFinder;
 
 /**
  * Implementation of {@link ClassFinder} that searches for classes in the <code>/WEB-INF/classes</code> directory of a
- * web application. Please note that this class is stateful. It should be used only for one call to
+ * web application. Directories are listed and class files are filtered concurrently if an {@link ExecutorService} is
+ * supplied. If reading annotation indexes is enabled and the folder contains an {@link AnnotationIndex}, the classes
+ * listed in the index are visited instead.
+ * Please note that this class is stateful. It should be used only for one call to
  * {@link #findClasses(ClassVisitorImpl)}.
  *
  * @author Christian Kaltepoth
@@ -42,6 +51,11 @@ public class WebClassesFinder extends AbstractClassFinder
     */
    private final static String CLASSES_FOLDER = "/WEB-INF/classes/";
 
+   /**
+    * The number of class files checked by each concurrent task
+    */
+   private final static int FILTER_BATCH_SIZE = 64;
+
    /**
     * Manage a set of classes already processed
     */
@@ -56,6 +70,24 @@ public class WebClassesFinder extends AbstractClassFinder
       super(servletContext, classLoader, packageFilter, byteCodeFilter);
    }
 
+   /**
+    * Initialization
+    */
+   public WebClassesFinder(ServletContext servletContext, ClassLoader classLoader, PackageFilter packageFilter,
+            ByteCodeFilter byteCodeFilter, ExecutorService executor)
+   {
+      super(servletContext, classLoader, packageFilter, byteCodeFilter, executor);
+   }
+
+   /**
+    * Initialization
+    */
+   public WebClassesFinder(ServletContext servletContext, ClassLoader classLoader, PackageFilter packageFilter,
+            ByteCodeFilter byteCodeFilter, ExecutorService executor, boolean useAnnotationIndex)
+   {
+      super(servletContext, classLoader, packageFilter, byteCodeFilter, executor, useAnnotationIndex);
+   }
+
    @Override
    public void findClasses(ClassVisitor visitor)
    {
@@ -71,8 +103,69 @@ public class WebClassesFinder extends AbstractClassFinder
             return;
          }
 
-         // call recursive directory processing method
-         processDirectory(classesFolderUrl, classesFolderUrl, visitor);
+         // an index written at build time replaces the scan if enabled
+         List<String> indexedClasses = useAnnotationIndex ? readIndex() : null;
+         if (indexedClasses != null)
+         {
+            visitClasses(indexedClasses, visitor);
+            return;
+         }
+
+         // list the directory tree one level at a time, listing the directories of each level concurrently
+         List<ClassFile> classFiles = new ArrayList<ClassFile>();
+         List<URL> directories = Collections.singletonList(classesFolderUrl);
+         while (!directories.isEmpty())
+         {
+            List<Callable<DirectoryContents>> listings = new ArrayList<Callable<DirectoryContents>>();
+            for (final URL directoryUrl : directories)
+            {
+               final URL folderUrl = classesFolderUrl;
+               listings.add(new Callable<DirectoryContents>() {
+                  @Override
+                  public DirectoryContents call() throws MalformedURLException
+                  {
+                     return processDirectory(folderUrl, directoryUrl);
+                  }
+               });
+            }
+
+            List<URL> subdirectories = new ArrayList<URL>();
+            for (DirectoryContents contents : invokeAll(listings))
+            {
+               subdirectories.addAll(contents.directories);
+               for (ClassFile classFile : contents.classFiles)
+               {
+                  // mark this class as processed
+                  if (processedClasses.add(classFile.className))
+                  {
+                     classFiles.add(classFile);
+                  }
+               }
+            }
+            directories = subdirectories;
+         }
+
+         // filter the class files concurrently, in batches
+         List<Callable<List<String>>> filters = new ArrayList<Callable<List<String>>>();
+         for (int i = 0; i < classFiles.size(); i += FILTER_BATCH_SIZE)
+         {
+            final List<ClassFile> batch = classFiles.subList(i, Math.min(i + FILTER_BATCH_SIZE, classFiles.size()));
+            filters.add(new Callable<List<String>>() {
+               @Override
+               public List<String> call()
+               {
+                  return filterClassFiles(batch);
+               }
+            });
+         }
+
+         List<String> classNames = new ArrayList<String>();
+         for (List<String> accepted : invokeAll(filters))
+         {
+            classNames.addAll(accepted);
+         }
+
+         visitClasses(classNames, visitor);
 
       }
       catch (MalformedURLException e)
@@ -82,17 +175,79 @@ public class WebClassesFinder extends AbstractClassFinder
    }
 
    /**
-    * Scan for classes in a single directory. This method will call itself recursively if it finds other directories and
-    * call {@link #processClass(String, InputStream, ClassVisitorImpl) when it finds a file ending with ".class" and
-    * that is accepted by the {@link PackageFilter}
+    * Read the {@link AnnotationIndex} of the '/WEB-INF/classes/' folder.
+    *
+    * @return the names of the classes to visit, or <code>null</code> if there is no readable index
+    */
+   private List<String> readIndex()
+   {
+      InputStream indexStream = servletContext.getResourceAsStream(CLASSES_FOLDER + AnnotationIndex.RESOURCE);
+      if (indexStream == null)
+      {
+         return null;
+      }
+
+      try
+      {
+         List<String> result = readAnnotationIndex(indexStream);
+         log.info("Using annotation index " + CLASSES_FOLDER + AnnotationIndex.RESOURCE + " instead of scanning "
+                  + CLASSES_FOLDER + ", found " + result.size() + " classes to visit");
+         return result;
+      }
+      catch (IOException e)
+      {
+         log.warn("Failed to read " + CLASSES_FOLDER + AnnotationIndex.RESOURCE + ", scanning classes instead", e);
+         return null;
+      }
+      finally
+      {
+         try
+         {
+            indexStream.close();
+         }
+         catch (IOException e)
+         {
+            // ignore IO failures on close
+         }
+      }
+   }
+
+   /**
+    * The entries of a single directory
+    */
+   private static class DirectoryContents
+   {
+      private final List<URL> directories = new ArrayList<URL>();
+      private final List<ClassFile> classFiles = new ArrayList<ClassFile>();
+   }
+
+   /**
+    * A class file accepted by the {@link PackageFilter}
+    */
+   private static class ClassFile
+   {
+      private final String className;
+      private final URL url;
+
+      private ClassFile(String className, URL url)
+      {
+         this.className = className;
+         this.url = url;
+      }
+   }
+
+   /**
+    * List a single directory. Returns its subdirectories, and the class files whose names are accepted by the
+    * {@link PackageFilter}. This method may be called concurrently.
     *
+    * @param classesFolderUrl The URL of the '/WEB-INF/classes/' folder
     * @param directoryUrl The URL of the directory to scan
-    * @param visitor The vistor class to call for classes found
     * @throws MalformedURLException for invalid URLs
     */
-   protected void processDirectory(URL classesFolderUrl, URL directoryUrl, ClassVisitor visitor)
+   private DirectoryContents processDirectory(URL classesFolderUrl, URL directoryUrl)
             throws MalformedURLException
    {
+      DirectoryContents result = new DirectoryContents();
 
       // only the path of the classes folder URL is required in this method
       String classesFolderPath = classesFolderUrl.getPath();
@@ -135,70 +290,88 @@ public class WebClassesFinder extends AbstractClassFinder
                String className = getClassName(entryRelativeName);
 
                // check filter
-               if (mustProcessClass(className) && !processedClasses.contains(className))
+               if (mustProcessClass(className))
                {
+                  result.classFiles.add(new ClassFile(className, entryUrl));
+               }
 
-                  // mark this class as processed
-                  processedClasses.add(className);
+            }
 
-                  // the class file stream
-                  InputStream classFileStream = null;
+            // if this URL ends with a slash, its a directory
+            if (entryUrl.getPath().endsWith("/"))
+            {
+               // skip directories that cannot contain packages accepted by the PackageFilter
+               String directoryRelativeName = getPathRelativeToClassesFolder(entryUrl.getPath(), classesFolderPath);
+               if (packageFilter.isAllowedDirectory(directoryRelativeName))
+               {
+                  result.directories.add(entryUrl);
+               }
+            }
+         }
+      }
 
-                  // close the stream in finally block
-                  try
-                  {
+      return result;
+   }
 
-                     /*
-                      * Try to open the .class file. If an IOException is thrown,
-                      * we will scan it anyway.
-                      */
-                     try
-                     {
-                        classFileStream = entryUrl.openStream();
-                     }
-                     catch (IOException e)
-                     {
-                        if (log.isDebugEnabled())
-                        {
-                           log.debug("Cound not obtain InputStream for class file: " + entryUrl.toString(), e);
-                        }
-                     }
-
-                     // analyze the class (with or without classFileStream)
-                     processClass(className, classFileStream, visitor);
+   /**
+    * Check the given class files with the {@link ByteCodeFilter}, and return the names of those that must be loaded.
+    * This method may be called concurrently.
+    */
+   private List<String> filterClassFiles(List<ClassFile> classFiles)
+   {
+      List<String> result = new ArrayList<String>();
+      for (ClassFile classFile : classFiles)
+      {
 
-                  }
-                  finally
-                  {
-                     try
-                     {
-                        if (classFileStream != null)
-                        {
-                           classFileStream.close();
-                        }
-                     }
-                     catch (IOException e)
-                     {
-                        if (log.isDebugEnabled())
-                        {
-                           log.debug("Failed to close input stream: " + e.getMessage());
-                        }
-                     }
-                  }
-               }
+         // the class file stream
+         InputStream classFileStream = null;
 
-            }
+         // close the stream in finally block
+         try
+         {
 
-            // if this URL ends with a slash, its a directory
-            if (entryUrl.getPath().endsWith("/"))
+            /*
+             * Try to open the .class file. If an IOException is thrown,
+             * we will scan it anyway.
+             */
+            try
+            {
+               classFileStream = classFile.url.openStream();
+            }
+            catch (IOException e)
             {
+               if (log.isDebugEnabled())
+               {
+                  log.debug("Cound not obtain InputStream for class file: " + classFile.url.toString(), e);
+               }
+            }
 
-               // walk down the directory
-               processDirectory(classesFolderUrl, entryUrl, visitor);
+            // analyze the class (with or without classFileStream)
+            if (mayContainAnnotations(classFile.className, classFileStream))
+            {
+               result.add(classFile.className);
+            }
 
+         }
+         finally
+         {
+            try
+            {
+               if (classFileStream != null)
+               {
+                  classFileStream.close();
+               }
+            }
+            catch (IOException e)
+            {
+               if (log.isDebugEnabled())
+               {
+                  log.debug("Failed to close input stream: " + e.getMessage());
+               }
             }
          }
       }
+      return result;
    }
 
    /**
@@ -15,21 +15,35 @@
  */
 package org.ocpsoft.rewrite.annotation.scan;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.servlet.ServletContext;
 
 import org.ocpsoft.rewrite.annotation.api.ClassVisitor;
+import org.ocpsoft.rewrite.annotation.index.AnnotationIndex;
 import org.ocpsoft.rewrite.annotation.spi.ClassFinder;
 
 /**
  * Implementation of {@link ClassFinder} that searches for classes in the JAR archives found in the
- * <code>/WEB-INF/lib/</code> directory of a web application.
+ * <code>/WEB-INF/lib/</code> directory of a web application. JAR archives are read concurrently if an
+ * {@link ExecutorService} is supplied. If reading annotation indexes is enabled, archives containing an
+ * {@link AnnotationIndex} are not scanned, the classes listed in the index are visited instead. Archives available as local files are read using their central directory, so that
+ * only the class files accepted by the {@link PackageFilter} are inflated; other archives are read as a stream. If a
+ * {@link ScanCache} is supplied, archives that have not changed since they were cached are not read at all.
  *
  * @author Christian Kaltepoth
  */
@@ -41,6 +55,11 @@ public class WebLibFinder extends AbstractClassFinder
     */
    private final static String LIB_FOLDER = "/WEB-INF/lib/";
 
+   /**
+    * The cache of scan results, or <code>null</code> to scan all archives
+    */
+   private final ScanCache scanCache;
+
    /**
     * Initialization
     */
@@ -48,6 +67,35 @@ public class WebLibFinder extends AbstractClassFinder
             ByteCodeFilter byteCodeFilter)
    {
       super(servletContext, classLoader, packageFilter, byteCodeFilter);
+      this.scanCache = null;
+   }
+
+   /**
+    * Initialization
+    */
+   public WebLibFinder(ServletContext servletContext, ClassLoader classLoader, PackageFilter packageFilter,
+            ByteCodeFilter byteCodeFilter, ExecutorService executor)
+   {
+      this(servletContext, classLoader, packageFilter, byteCodeFilter, executor, null);
+   }
+
+   /**
+    * Initialization
+    */
+   public WebLibFinder(ServletContext servletContext, ClassLoader classLoader, PackageFilter packageFilter,
+            ByteCodeFilter byteCodeFilter, ExecutorService executor, ScanCache scanCache)
+   {
+      this(servletContext, classLoader, packageFilter, byteCodeFilter, executor, scanCache, false);
+   }
+
+   /**
+    * Initialization
+    */
+   public WebLibFinder(ServletContext servletContext, ClassLoader classLoader, PackageFilter packageFilter,
+            ByteCodeFilter byteCodeFilter, ExecutorService executor, ScanCache scanCache, boolean useAnnotationIndex)
+   {
+      super(servletContext, classLoader, packageFilter, byteCodeFilter, executor, useAnnotationIndex);
+      this.scanCache = scanCache;
    }
 
    @Override
@@ -72,20 +120,36 @@ public class WebLibFinder extends AbstractClassFinder
          Set<?> paths = servletContext.getResourcePaths(LIB_FOLDER);
 
          // loop over all entries of the directory
+         List<Callable<List<String>>> jars = new ArrayList<Callable<List<String>>>();
          for (Object relativePath : paths)
          {
 
             // get full URL of the current directory entry
-            URL entryUrl = servletContext.getResource(relativePath.toString());
+            final String jarPath = relativePath.toString();
+            final URL entryUrl = servletContext.getResource(jarPath);
 
             // we are only interested in JAR files
             if (entryUrl.getPath().endsWith(".jar"))
             {
-               processJarFile(entryUrl, visitor);
+               jars.add(new Callable<List<String>>() {
+                  @Override
+                  public List<String> call()
+                  {
+                     return processJarFile(jarPath, entryUrl);
+                  }
+               });
             }
 
          }
 
+         // read the archives, then load and visit the classes they contain
+         List<String> classNames = new ArrayList<String>();
+         for (List<String> accepted : invokeAll(jars))
+         {
+            classNames.addAll(accepted);
+         }
+         visitClasses(classNames, visitor);
+
       }
       catch (MalformedURLException e)
       {
@@ -94,14 +158,218 @@ public class WebLibFinder extends AbstractClassFinder
    }
 
    /**
-    * Process a single JAR file in the <code>/WEB-INF/lib/</code> directory.
+    * Process a single JAR file in the <code>/WEB-INF/lib/</code> directory, using the {@link ScanCache} if one has been
+    * supplied. This method may be called concurrently.
     *
+    * @param jarPath The path of the JAR file in the web application
     * @param jarUrl The URL of the JAR file
-    * @param visitor The visitor to call on classes
+    * @return The names of the classes that must be loaded and visited
     */
-   private void processJarFile(URL jarUrl, ClassVisitor visitor)
+   private List<String> processJarFile(String jarPath, URL jarUrl)
    {
+      List<String> result = new ArrayList<String>();
+
+      // archives available as local files are read with random access
+      File localFile = getLocalFile(jarPath, jarUrl);
+
+      // without a cache the archive is always scanned
+      if (scanCache == null)
+      {
+         scanJarFile(localFile, jarUrl, result);
+         return result;
+      }
 
+      // identify the archive
+      ScanCache.Fingerprint fingerprint = null;
+      try
+      {
+         fingerprint = localFile != null ? ScanCache.fingerprint(localFile) : ScanCache.fingerprint(jarUrl);
+      }
+      catch (IOException e)
+      {
+         if (log.isDebugEnabled())
+         {
+            log.debug("Failed to compute fingerprint of JAR file: " + jarUrl.toString(), e);
+         }
+      }
+
+      // unchanged archives are not scanned again
+      if (fingerprint != null)
+      {
+         List<String> cached = scanCache.get(jarPath, fingerprint);
+         if (cached != null)
+         {
+            if (log.isDebugEnabled())
+            {
+               log.debug("Using cached scan result for JAR file: " + jarUrl.toString());
+            }
+            return cached;
+         }
+      }
+
+      // only complete results are cached
+      if (scanJarFile(localFile, jarUrl, result) && (fingerprint != null))
+      {
+         scanCache.put(jarPath, fingerprint, result);
+      }
+      return result;
+   }
+
+   /**
+    * Returns the JAR file as a local file, either because its URL is a <code>file:</code> URL or because the container
+    * provides a real path for it. Returns <code>null</code> if the archive is not available as a local file.
+    *
+    * @param jarPath The path of the JAR file in the web application
+    * @param jarUrl The URL of the JAR file
+    */
+   private File getLocalFile(String jarPath, URL jarUrl)
+   {
+      File localFile = ScanCache.toLocalFile(jarUrl);
+      if (localFile == null)
+      {
+         String realPath = servletContext.getRealPath(jarPath);
+         if ((realPath != null) && new File(realPath).isFile())
+         {
+            localFile = new File(realPath);
+         }
+      }
+      return localFile;
+   }
+
+   /**
+    * Scan a single JAR file, using random access if it is available as a local file and reading it as a stream
+    * otherwise. This method may be called concurrently.
+    *
+    * @param localFile The JAR file as a local file (may be <code>null</code>)
+    * @param jarUrl The URL of the JAR file
+    * @param result The list to add the names of the classes that must be loaded and visited to
+    * @return <code>true</code> if the archive has been read completely
+    */
+   private boolean scanJarFile(File localFile, URL jarUrl, List<String> result)
+   {
+      if (localFile != null)
+      {
+         try
+         {
+            return scanZipFile(localFile, result);
+         }
+         catch (IOException e)
+         {
+            // the file may still be readable as a stream
+            if (log.isDebugEnabled())
+            {
+               log.debug("Failed to open JAR file " + localFile + ", reading it as a stream", e);
+            }
+            result.clear();
+         }
+      }
+      return scanJarStream(jarUrl, result);
+   }
+
+   /**
+    * Scan a JAR file using its central directory. Only the annotation index, if enabled, or the class files accepted
+    * by the {@link PackageFilter}, are inflated. This method may be called concurrently.
+    *
+    * @param file The JAR file
+    * @param result The list to add the names of the classes that must be loaded and visited to
+    * @return <code>true</code> if the archive has been read completely
+    * @throws IOException if the archive cannot be opened
+    */
+   private boolean scanZipFile(File file, List<String> result) throws IOException
+   {
+      // log file name on debug lvel
+      if (log.isDebugEnabled())
+      {
+         log.debug("Processing JAR file: " + file);
+      }
+
+      ZipFile zipFile = new ZipFile(file);
+      try
+      {
+
+         // an index written at build time replaces the scan of this archive if enabled
+         ZipEntry indexEntry = useAnnotationIndex ? zipFile.getEntry(AnnotationIndex.RESOURCE) : null;
+         if (indexEntry != null)
+         {
+            log.info("Using annotation index instead of scanning JAR file: " + file);
+            InputStream indexStream = zipFile.getInputStream(indexEntry);
+            try
+            {
+               result.addAll(readAnnotationIndex(indexStream));
+            }
+            finally
+            {
+               indexStream.close();
+            }
+            return true;
+         }
+
+         // Loop over all entries of the central directory
+         Enumeration<? extends ZipEntry> entries = zipFile.entries();
+         while (entries.hasMoreElements())
+         {
+            ZipEntry entry = entries.nextElement();
+
+            // We are only interested in java class files
+            if (!entry.isDirectory() && entry.getName().endsWith(".class"))
+            {
+
+               // check the path against the PackageFilter before inflating the entry
+               if (packageFilter.isAllowedClassFile(entry.getName()))
+               {
+
+                  // generate FQCN from entry
+                  String className = getClassName(entry.getName());
+
+                  InputStream classFileStream = zipFile.getInputStream(entry);
+                  try
+                  {
+                     // analyze this class
+                     if (mayContainAnnotations(className, classFileStream))
+                     {
+                        result.add(className);
+                     }
+                  }
+                  finally
+                  {
+                     classFileStream.close();
+                  }
+               }
+
+            }
+         }
+
+      }
+      catch (IOException e)
+      {
+         log.error("Failed to read JAR file: " + file, e);
+         return false;
+      }
+      finally
+      {
+         try
+         {
+            zipFile.close();
+         }
+         catch (IOException e)
+         {
+            // ignore IO failures on close
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * Scan a single JAR file as a stream. If enabled, the archive is read until its {@link AnnotationIndex} is found,
+    * which then replaces the classes found so far. This method may be called concurrently.
+    *
+    * @param jarUrl The URL of the JAR file
+    * @param result The list to add the names of the classes that must be loaded and visited to
+    * @return <code>true</code> if the archive has been read completely
+    */
+   private boolean scanJarStream(URL jarUrl, List<String> result)
+   {
       // log file name on debug lvel
       if (log.isDebugEnabled())
       {
@@ -123,19 +391,31 @@ public class WebLibFinder extends AbstractClassFinder
          while ((jarEntry = jarStream.getNextJarEntry()) != null)
          {
 
+            // an index written at build time replaces the scan of this archive if enabled
+            if (useAnnotationIndex && jarEntry.getName().equals(AnnotationIndex.RESOURCE))
+            {
+               log.info("Using annotation index instead of scanning JAR file: " + jarUrl.toString());
+               result.clear();
+               result.addAll(readAnnotationIndex(jarStream));
+               return true;
+            }
+
             // We are only interested in java class files
             if (jarEntry.getName().endsWith(".class"))
             {
 
-               // generate FQCN from entry
-               String className = getClassName(jarEntry.getName());
-
-               // check name against PackageFilter
-               if (mustProcessClass(className))
+               // check the path against the PackageFilter
+               if (packageFilter.isAllowedClassFile(jarEntry.getName()))
                {
 
+                  // generate FQCN from entry
+                  String className = getClassName(jarEntry.getName());
+
                   // analyze this class
-                  processClass(className, jarStream, visitor);
+                  if (mayContainAnnotations(className, jarStream))
+                  {
+                     result.add(className);
+                  }
 
                }
 
@@ -147,6 +427,7 @@ public class WebLibFinder extends AbstractClassFinder
       catch (IOException e)
       {
          log.error("Failed to read JAR file: " + jarUrl.toString(), e);
+         return false;
       }
       finally
       {
@@ -164,6 +445,7 @@ public class WebLibFinder extends AbstractClassFinder
          }
       }
 
+      return true;
    }
 
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnnotationIndexProcessorTest
+{
+   private File output;
+
+   @Before
+   public void before() throws Exception
+   {
+      output = File.createTempFile("annotation-index", "");
+      output.delete();
+      output.mkdirs();
+   }
+
+   @After
+   public void after()
+   {
+      delete(output);
+   }
+
+   private static void delete(File file)
+   {
+      File[] children = file.listFiles();
+      if (children != null)
+      {
+         for (File child : children)
+         {
+            delete(child);
+         }
+      }
+      file.delete();
+   }
+
+   private static JavaFileObject source(final String className, final String code)
+   {
+      return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+               JavaFileObject.Kind.SOURCE) {
+         @Override
+         public CharSequence getCharContent(boolean ignoreEncodingErrors)
+         {
+            return code;
+         }
+      };
+   }
+
+   private Map<String, Set<String>> compile(JavaFileObject... sources) throws Exception
+   {
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      Assume.assumeNotNull(compiler);
+
+      List<String> options = new ArrayList<String>(Arrays.asList("-d", output.getPath(), "-classpath",
+               output.getPath()));
+      JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, options, null, Arrays.asList(sources));
+      task.setProcessors(Collections.singletonList(new AnnotationIndexProcessor()));
+      assertTrue("Compilation failed", task.call());
+
+      File index = new File(output, AnnotationIndex.RESOURCE);
+      if (!index.exists())
+         return null;
+
+      InputStream stream = new FileInputStream(index);
+      try {
+         return AnnotationIndex.read(stream);
+      }
+      finally {
+         stream.close();
+      }
+   }
+
+   private static final JavaFileObject MARKER = source("test.Marker", "package test; "
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) "
+            + "public @interface Marker {}");
+
+   private static final JavaFileObject SOURCE_MARKER = source("test.SourceMarker", "package test; "
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.SOURCE) "
+            + "public @interface SourceMarker {}");
+
+   @Test
+   public void testIndexesRuntimeAnnotationsOnAllMembers() throws Exception
+   {
+      Map<String, Set<String>> index = compile(MARKER, SOURCE_MARKER,
+               source("test.OnType", "package test; @Marker public class OnType {}"),
+               source("test.OnField", "package test; public class OnField { @Marker String field; }"),
+               source("test.OnMethod", "package test; public class OnMethod { @Marker void method() {} }"),
+               source("test.OnParameter", "package test; public class OnParameter { void method(@Marker int p) {} }"),
+               source("test.OnNested", "package test; public class OnNested { @Marker public static class Inner {} }"),
+               source("test.Plain", "package test; @SourceMarker public class Plain { @Override public String "
+                        + "toString() { return null; } }"));
+
+      assertNotNull(index);
+      for (String className : Arrays.asList("test.OnType", "test.OnField", "test.OnMethod", "test.OnParameter",
+               "test.OnNested$Inner")) {
+         assertEquals(className, Collections.singleton("test.Marker"), index.get(className));
+      }
+
+      // source retention annotations are not visible at runtime
+      assertFalse(index.containsKey("test.Plain"));
+      assertFalse(index.containsKey("test.OnNested"));
+   }
+
+   @Test
+   public void testIncrementalCompilationKeepsExistingEntries() throws Exception
+   {
+      compile(MARKER, source("test.First", "package test; @Marker public class First {}"),
+               source("test.Second", "package test; @Marker public class Second {}"));
+
+      // recompile only the second class, which lost its annotation
+      Map<String, Set<String>> index = compile(source("test.Second", "package test; public class Second {}"));
+
+      assertNotNull(index);
+      assertEquals(Collections.singleton("test.Marker"), index.get("test.First"));
+      assertFalse(index.containsKey("test.Second"));
+   }
+
+   @Test
+   public void testNoIndexWithoutAnnotations() throws Exception
+   {
+      assertEquals(null, compile(source("test.Plain", "package test; public class Plain {}")));
+   }
+
+}
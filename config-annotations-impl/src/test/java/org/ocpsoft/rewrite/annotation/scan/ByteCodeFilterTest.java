@@ -20,9 +20,13 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -95,6 +99,76 @@ public class ByteCodeFilterTest
       assertTrue(filter.accept(getByteCodeInputStream(ClassWithUrlAction.class)));
    }
 
+   @Test
+   public void testModernConstantPoolTags() throws IOException
+   {
+      // constants of Java 7+ class files don't cause a class to be accepted
+      assertFalse(filter.accept(new ByteArrayInputStream(classFileWithModernConstants("Ljava/lang/Object;"))));
+      assertTrue(filter.accept(new ByteArrayInputStream(classFileWithModernConstants("L"
+               + TestAnnotation.class.getName().replace('.', '/') + ";"))));
+   }
+
+   @Test(expected = EOFException.class)
+   public void testTruncatedClass() throws IOException
+   {
+      byte[] classFile = classFileWithModernConstants("Ljava/lang/Object;");
+      filter.accept(new ByteArrayInputStream(Arrays.copyOf(classFile, classFile.length - 1)));
+   }
+
+   @Test
+   public void testLargeClassAndBufferReuse() throws IOException
+   {
+      // a long string forces the buffer to grow, the following calls reuse it
+      StringBuilder padding = new StringBuilder();
+      for (int i = 0; i < 20000; i++)
+      {
+         padding.append('x');
+      }
+      for (int i = 0; i < 3; i++)
+      {
+         assertFalse(filter.accept(new ByteArrayInputStream(classFileWithModernConstants(padding.toString()))));
+         assertTrue(filter.accept(getByteCodeInputStream(ClassWithUrlMapping.class)));
+         assertFalse(filter.accept(getByteCodeInputStream(ClassWithoutAnnotations.class)));
+      }
+   }
+
+   /**
+    * Creates the start of a Java 11 class file whose constant pool contains one entry of each modern tag followed by the
+    * given string
+    */
+   private static byte[] classFileWithModernConstants(String utf8) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0); // minor
+      out.writeShort(55); // major 55 = Java 11
+      out.writeShort(10); // constant pool count = entries + 1
+
+      out.writeByte(15); // MethodHandle
+      out.writeByte(6);
+      out.writeShort(1);
+      out.writeByte(16); // MethodType
+      out.writeShort(1);
+      out.writeByte(17); // Dynamic
+      out.writeShort(0);
+      out.writeShort(1);
+      out.writeByte(18); // InvokeDynamic
+      out.writeShort(0);
+      out.writeShort(1);
+      out.writeByte(19); // Module
+      out.writeShort(1);
+      out.writeByte(20); // Package
+      out.writeShort(1);
+      out.writeByte(5); // Long, takes two entries
+      out.writeLong(42);
+      out.writeByte(1); // Utf8
+      out.writeUTF(utf8);
+
+      out.close();
+      return bytes.toByteArray();
+   }
+
    private InputStream getByteCodeInputStream(Class<?> clazz)
    {
       String name = clazz.getName().replace(".", "/") + ".class";
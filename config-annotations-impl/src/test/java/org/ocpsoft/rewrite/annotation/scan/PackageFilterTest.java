@@ -69,4 +69,52 @@ public class PackageFilterTest
 
    }
 
+   @Test
+   public void testPackageSegmentBoundaries()
+   {
+      PackageFilter filter = new PackageFilter("org.ocpsoft,org.ocpsoft.rewrite,com.example.");
+      assertEquals(true, filter.isAllowedPackage("org.ocpsoft.rewrite.annotation"));
+      assertEquals(true, filter.isAllowedPackage("com.example"));
+      assertEquals(true, filter.isAllowedPackage("com.example.web"));
+      assertEquals(false, filter.isAllowedPackage("org.ocpsoftware"));
+      assertEquals(false, filter.isAllowedPackage("org"));
+      assertEquals(false, filter.isAllowedPackage(""));
+      assertEquals(3, filter.getNumberOfBasePackages());
+   }
+
+   @Test
+   public void testClassesAndClassFiles()
+   {
+      PackageFilter filter = new PackageFilter("org.ocpsoft");
+      assertEquals(true, filter.isAllowedClass("org.ocpsoft.Foo"));
+      assertEquals(true, filter.isAllowedClass("org.ocpsoft.rewrite.Foo$Bar"));
+      assertEquals(false, filter.isAllowedClass("org.Foo"));
+      assertEquals(false, filter.isAllowedClass("Foo"));
+
+      assertEquals(true, filter.isAllowedClassFile("org/ocpsoft/Foo.class"));
+      assertEquals(true, filter.isAllowedClassFile("org/ocpsoft/rewrite/Foo.class"));
+      assertEquals(false, filter.isAllowedClassFile("org/Foo.class"));
+      assertEquals(false, filter.isAllowedClassFile("Foo.class"));
+
+      assertEquals(true, new PackageFilter(null).isAllowedClass("Foo"));
+      assertEquals(true, new PackageFilter(null).isAllowedClassFile("Foo.class"));
+   }
+
+   @Test
+   public void testDirectories()
+   {
+      PackageFilter filter = new PackageFilter("org.ocpsoft,de.chkal");
+
+      // parents of configured packages must be scanned to reach them
+      assertEquals(true, filter.isAllowedDirectory(""));
+      assertEquals(true, filter.isAllowedDirectory("org/"));
+      assertEquals(true, filter.isAllowedDirectory("org/ocpsoft/"));
+      assertEquals(true, filter.isAllowedDirectory("org/ocpsoft/rewrite"));
+
+      // other trees can be skipped entirely
+      assertEquals(false, filter.isAllowedDirectory("com/"));
+      assertEquals(false, filter.isAllowedDirectory("org/apache/"));
+      assertEquals(false, filter.isAllowedDirectory("META-INF/"));
+   }
+
 }
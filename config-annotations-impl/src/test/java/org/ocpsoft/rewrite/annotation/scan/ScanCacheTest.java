@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.annotation.scan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.ServletContext;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.ocpsoft.rewrite.annotation.scan.ScanCache.Fingerprint;
+
+public class ScanCacheTest
+{
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static final Fingerprint FINGERPRINT = new Fingerprint(100, 200, 300);
+
+   @Test
+   public void testStoreAndLoad() throws Exception
+   {
+      File file = new File(folder.getRoot(), ScanCache.FILE_NAME);
+      List<String> classNames = Arrays.asList("com.example.A", "com.example.B");
+
+      ScanCache cache = ScanCache.load(file, "signature");
+      assertNull(cache.get("/WEB-INF/lib/a.jar", FINGERPRINT));
+      cache.put("/WEB-INF/lib/a.jar", FINGERPRINT, classNames);
+      cache.store();
+
+      ScanCache loaded = ScanCache.load(file, "signature");
+      assertEquals(classNames, loaded.get("/WEB-INF/lib/a.jar", FINGERPRINT));
+
+      // a changed archive is not served from the cache
+      assertNull(loaded.get("/WEB-INF/lib/a.jar", new Fingerprint(100, 200, 301)));
+      assertNull(loaded.get("/WEB-INF/lib/a.jar", new Fingerprint(100, 201, 300)));
+      assertNull(loaded.get("/WEB-INF/lib/a.jar", new Fingerprint(101, 200, 300)));
+   }
+
+   @Test
+   public void testDifferentSignatureDiscardsEntries() throws Exception
+   {
+      File file = new File(folder.getRoot(), ScanCache.FILE_NAME);
+
+      ScanCache cache = ScanCache.load(file, "signature");
+      cache.put("/WEB-INF/lib/a.jar", FINGERPRINT, Arrays.asList("com.example.A"));
+      cache.store();
+
+      assertNull(ScanCache.load(file, "other").get("/WEB-INF/lib/a.jar", FINGERPRINT));
+   }
+
+   @Test
+   public void testStoreDropsRemovedArchives() throws Exception
+   {
+      File file = new File(folder.getRoot(), ScanCache.FILE_NAME);
+
+      ScanCache cache = ScanCache.load(file, "signature");
+      cache.put("/WEB-INF/lib/a.jar", FINGERPRINT, Arrays.asList("com.example.A"));
+      cache.put("/WEB-INF/lib/b.jar", FINGERPRINT, Arrays.asList("com.example.B"));
+      cache.store();
+
+      // only a.jar is still present
+      cache = ScanCache.load(file, "signature");
+      cache.get("/WEB-INF/lib/a.jar", FINGERPRINT);
+      cache.store();
+
+      cache = ScanCache.load(file, "signature");
+      assertEquals(Arrays.asList("com.example.A"), cache.get("/WEB-INF/lib/a.jar", FINGERPRINT));
+      assertNull(cache.get("/WEB-INF/lib/b.jar", FINGERPRINT));
+   }
+
+   @Test
+   public void testCorruptFileIsIgnored() throws Exception
+   {
+      File file = folder.newFile(ScanCache.FILE_NAME);
+      assertNull(ScanCache.load(file, "signature").get("/WEB-INF/lib/a.jar", FINGERPRINT));
+   }
+
+   @Test
+   public void testLoadWithoutTempDir() throws Exception
+   {
+      ServletContext servletContext = Mockito.mock(ServletContext.class);
+      assertNull(ScanCache.load(servletContext, "signature"));
+
+      Mockito.when(servletContext.getAttribute(ScanCache.TEMP_DIR_ATTRIBUTE)).thenReturn(folder.getRoot());
+      ScanCache cache = ScanCache.load(servletContext, "signature");
+      cache.put("/WEB-INF/lib/a.jar", FINGERPRINT, Arrays.asList("com.example.A"));
+      cache.store();
+      assertEquals(true, new File(folder.getRoot(), ScanCache.FILE_NAME).isFile());
+   }
+
+}
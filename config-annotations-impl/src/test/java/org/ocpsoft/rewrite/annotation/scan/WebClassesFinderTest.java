@@ -15,17 +15,23 @@
  */
 package org.ocpsoft.rewrite.annotation.scan;
 
+import java.io.ByteArrayInputStream;
 import java.lang.annotation.Annotation;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.servlet.ServletContext;
 
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.ocpsoft.rewrite.annotation.api.ClassVisitor;
+import org.ocpsoft.rewrite.annotation.index.AnnotationIndex;
 
 @SuppressWarnings({ "unchecked", "rawtypes" })
 public class WebClassesFinderTest
@@ -121,4 +127,145 @@ public class WebClassesFinderTest
 
    }
 
+   @Test
+   public void testWebClassesFinderWithExecutorVisitsInOrder() throws Exception
+   {
+
+      // two packages, each containing one class, listed in reverse order
+      Set<String> classesDirectory = new LinkedHashSet<String>(Arrays.asList("/WEB-INF/classes/b/",
+               "/WEB-INF/classes/a/"));
+
+      ServletContext servletContext = Mockito.mock(ServletContext.class);
+      Mockito.when(servletContext.getResource("/WEB-INF/classes/")).thenReturn(
+               new URL("file:/somewhere/WEB-INF/classes/"));
+      Mockito.when(servletContext.getResourcePaths("/WEB-INF/classes/")).thenReturn(classesDirectory);
+      for (String name : Arrays.asList("a", "b")) {
+         String directory = "/WEB-INF/classes/" + name + "/";
+         String file = directory + "TestClass.class";
+         Mockito.when(servletContext.getResource(directory)).thenReturn(new URL("file:/somewhere" + directory));
+         Mockito.when(servletContext.getResourcePaths(directory)).thenReturn(
+                  new HashSet<String>(Arrays.asList(file)));
+         Mockito.when(servletContext.getResource(file)).thenReturn(new URL("file:/somewhere" + file));
+      }
+
+      // ClassLoader that knows both classes
+      ClassLoader classLoader = Mockito.mock(ClassLoader.class);
+      Mockito.when(classLoader.loadClass("a.TestClass")).thenReturn((Class) ClassFinderTestBean.class);
+      Mockito.when(classLoader.loadClass("b.TestClass")).thenReturn((Class) TestAnnotation.class);
+
+      Set<Class<? extends Annotation>> types = new HashSet<Class<? extends Annotation>>();
+      types.add(TestAnnotation.class);
+
+      ClassVisitor classVisitor = Mockito.mock(ClassVisitor.class);
+
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         new WebClassesFinder(servletContext, classLoader, new PackageFilter(null), new ByteCodeFilter(types), executor)
+                  .findClasses(classVisitor);
+      }
+      finally {
+         executor.shutdown();
+      }
+
+      // classes are visited in order of their names, regardless of the order in which they were found
+      InOrder inOrder = Mockito.inOrder(classVisitor);
+      inOrder.verify(classVisitor).visit(ClassFinderTestBean.class);
+      inOrder.verify(classVisitor).visit(TestAnnotation.class);
+
+   }
+
+   @Test
+   public void testWebClassesFinderWithAnnotationIndex() throws Exception
+   {
+
+      // the index lists one class with a handled and one with an unrelated annotation
+      String index = "# comment\n" + "package.TestClass " + TestAnnotation.class.getName() + "\n"
+               + "package.OtherClass " + Deprecated.class.getName() + "\n";
+
+      ServletContext servletContext = Mockito.mock(ServletContext.class);
+      Mockito.when(servletContext.getResource("/WEB-INF/classes/")).thenReturn(
+               new URL("file:/somewhere/WEB-INF/classes/"));
+      Mockito.when(servletContext.getResourceAsStream("/WEB-INF/classes/" + AnnotationIndex.RESOURCE)).thenReturn(
+               new ByteArrayInputStream(index.getBytes("UTF-8")));
+
+      ClassLoader classLoader = Mockito.mock(ClassLoader.class);
+      Mockito.when(classLoader.loadClass("package.TestClass")).thenReturn((Class) ClassFinderTestBean.class);
+
+      Set<Class<? extends Annotation>> types = new HashSet<Class<? extends Annotation>>();
+      types.add(TestAnnotation.class);
+
+      ClassVisitor classVisitor = Mockito.mock(ClassVisitor.class);
+      new WebClassesFinder(servletContext, classLoader, new PackageFilter(null), new ByteCodeFilter(types), null, true)
+               .findClasses(classVisitor);
+
+      // only the class with the handled annotation is visited, and the directories are not listed
+      Mockito.verify(classVisitor).visit(ClassFinderTestBean.class);
+      Mockito.verifyNoMoreInteractions(classVisitor);
+      Mockito.verify(servletContext, Mockito.never()).getResourcePaths(Mockito.anyString());
+      Mockito.verify(classLoader, Mockito.never()).loadClass("package.OtherClass");
+
+   }
+
+   @Test
+   public void testWebClassesFinderIgnoresAnnotationIndexByDefault() throws Exception
+   {
+
+      ServletContext servletContext = Mockito.mock(ServletContext.class);
+      Mockito.when(servletContext.getResource("/WEB-INF/classes/")).thenReturn(
+               new URL("file:/somewhere/WEB-INF/classes/"));
+      Mockito.when(servletContext.getResourcePaths("/WEB-INF/classes/")).thenReturn(new HashSet<String>());
+      Mockito.when(servletContext.getResourceAsStream("/WEB-INF/classes/" + AnnotationIndex.RESOURCE)).thenReturn(
+               new ByteArrayInputStream(("package.TestClass " + TestAnnotation.class.getName()).getBytes("UTF-8")));
+
+      ClassLoader classLoader = Mockito.mock(ClassLoader.class);
+
+      Set<Class<? extends Annotation>> types = new HashSet<Class<? extends Annotation>>();
+      types.add(TestAnnotation.class);
+
+      ClassVisitor classVisitor = Mockito.mock(ClassVisitor.class);
+      new WebClassesFinder(servletContext, classLoader, new PackageFilter(null), new ByteCodeFilter(types))
+               .findClasses(classVisitor);
+
+      // a possibly stale index is never read, the classes folder is scanned instead
+      Mockito.verifyZeroInteractions(classVisitor);
+      Mockito.verify(servletContext).getResourcePaths("/WEB-INF/classes/");
+      Mockito.verify(servletContext, Mockito.never()).getResourceAsStream(Mockito.anyString());
+
+   }
+
+   @Test
+   public void testWebClassesFinderSkipsFilteredDirectories() throws Exception
+   {
+
+      Set<String> classesDirectory = new HashSet<String>(Arrays.asList("/WEB-INF/classes/a/", "/WEB-INF/classes/b/"));
+
+      ServletContext servletContext = Mockito.mock(ServletContext.class);
+      Mockito.when(servletContext.getResource("/WEB-INF/classes/")).thenReturn(
+               new URL("file:/somewhere/WEB-INF/classes/"));
+      Mockito.when(servletContext.getResourcePaths("/WEB-INF/classes/")).thenReturn(classesDirectory);
+      for (String name : Arrays.asList("a", "b")) {
+         String directory = "/WEB-INF/classes/" + name + "/";
+         String file = directory + "TestClass.class";
+         Mockito.when(servletContext.getResource(directory)).thenReturn(new URL("file:/somewhere" + directory));
+         Mockito.when(servletContext.getResourcePaths(directory)).thenReturn(
+                  new HashSet<String>(Arrays.asList(file)));
+         Mockito.when(servletContext.getResource(file)).thenReturn(new URL("file:/somewhere" + file));
+      }
+
+      ClassLoader classLoader = Mockito.mock(ClassLoader.class);
+      Mockito.when(classLoader.loadClass("a.TestClass")).thenReturn((Class) ClassFinderTestBean.class);
+
+      Set<Class<? extends Annotation>> types = new HashSet<Class<? extends Annotation>>();
+      types.add(TestAnnotation.class);
+
+      ClassVisitor classVisitor = Mockito.mock(ClassVisitor.class);
+      new WebClassesFinder(servletContext, classLoader, new PackageFilter("a"), new ByteCodeFilter(types))
+               .findClasses(classVisitor);
+
+      // the directory of the package not accepted by the filter is never listed
+      Mockito.verify(classVisitor).visit(ClassFinderTestBean.class);
+      Mockito.verify(servletContext, Mockito.never()).getResourcePaths("/WEB-INF/classes/b/");
+
+   }
+
 }
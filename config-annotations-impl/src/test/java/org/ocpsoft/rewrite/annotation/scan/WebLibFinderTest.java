@@ -19,6 +19,8 @@ import static org.junit.Assert.assertNotNull;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
@@ -36,6 +38,7 @@ import javax.servlet.ServletContext;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.ocpsoft.rewrite.annotation.api.ClassVisitor;
+import org.ocpsoft.rewrite.annotation.index.AnnotationIndex;
 
 @SuppressWarnings({ "unchecked", "rawtypes" })
 public class WebLibFinderTest
@@ -83,12 +86,222 @@ public class WebLibFinderTest
 
    }
 
+   @Test
+   public void testWebLibFinderWithAnnotationIndex() throws Exception
+   {
+
+      // the index lists the class with an annotation that is not handled
+      String index = ClassFinderTestBean.class.getName() + " " + Deprecated.class.getName() + "\n";
+      URL jarUrl = new URL("file", null, 0, "/somewhere/WEB-INF/lib/mylib.jar", new TestURLStreamHandler(index));
+
+      ServletContext servletContext = Mockito.mock(ServletContext.class);
+      Mockito.when(servletContext.getResource("/WEB-INF/lib/")).thenReturn(new URL("file:/somewhere/WEB-INF/lib/"));
+      Mockito.when(servletContext.getResourcePaths("/WEB-INF/lib/")).thenReturn(
+               new HashSet<String>(Arrays.asList("/WEB-INF/lib/mylib.jar")));
+      Mockito.when(servletContext.getResource("/WEB-INF/lib/mylib.jar")).thenReturn(jarUrl);
+
+      ClassLoader classLoader = Mockito.mock(ClassLoader.class);
+      Mockito.when(classLoader.loadClass(ClassFinderTestBean.class.getName()))
+               .thenReturn((Class) ClassFinderTestBean.class);
+
+      Set<Class<? extends Annotation>> types = new HashSet<Class<? extends Annotation>>();
+      types.add(TestAnnotation.class);
+
+      ClassVisitor classVisitor = Mockito.mock(ClassVisitor.class);
+      new WebLibFinder(servletContext, classLoader, new PackageFilter(null), new ByteCodeFilter(types), null, null,
+               true).findClasses(classVisitor);
+
+      // the index replaces the byte code scan, which would have accepted the class
+      Mockito.verifyZeroInteractions(classVisitor);
+
+   }
+
+   @Test
+   public void testWebLibFinderIgnoresAnnotationIndexByDefault() throws Exception
+   {
+
+      // the index lists the class with an annotation that is not handled
+      String index = ClassFinderTestBean.class.getName() + " " + Deprecated.class.getName() + "\n";
+      URL jarUrl = new URL("file", null, 0, "/somewhere/WEB-INF/lib/mylib.jar", new TestURLStreamHandler(index));
+
+      ServletContext servletContext = Mockito.mock(ServletContext.class);
+      Mockito.when(servletContext.getResource("/WEB-INF/lib/")).thenReturn(new URL("file:/somewhere/WEB-INF/lib/"));
+      Mockito.when(servletContext.getResourcePaths("/WEB-INF/lib/")).thenReturn(
+               new HashSet<String>(Arrays.asList("/WEB-INF/lib/mylib.jar")));
+      Mockito.when(servletContext.getResource("/WEB-INF/lib/mylib.jar")).thenReturn(jarUrl);
+
+      ClassLoader classLoader = Mockito.mock(ClassLoader.class);
+      Mockito.when(classLoader.loadClass(ClassFinderTestBean.class.getName()))
+               .thenReturn((Class) ClassFinderTestBean.class);
+
+      Set<Class<? extends Annotation>> types = new HashSet<Class<? extends Annotation>>();
+      types.add(TestAnnotation.class);
+
+      ClassVisitor classVisitor = Mockito.mock(ClassVisitor.class);
+      new WebLibFinder(servletContext, classLoader, new PackageFilter(null), new ByteCodeFilter(types))
+               .findClasses(classVisitor);
+
+      // a possibly stale index is ignored, the byte code scan accepts the class
+      Mockito.verify(classVisitor).visit(ClassFinderTestBean.class);
+
+   }
+
+   @Test
+   public void testWebLibFinderWithScanCache() throws Exception
+   {
+
+      URL jarUrl = new URL("file", null, 0, "/somewhere/WEB-INF/lib/mylib.jar", new TestURLStreamHandler());
+
+      ServletContext servletContext = Mockito.mock(ServletContext.class);
+      Mockito.when(servletContext.getResource("/WEB-INF/lib/")).thenReturn(new URL("file:/somewhere/WEB-INF/lib/"));
+      Mockito.when(servletContext.getResourcePaths("/WEB-INF/lib/")).thenReturn(
+               new HashSet<String>(Arrays.asList("/WEB-INF/lib/mylib.jar")));
+      Mockito.when(servletContext.getResource("/WEB-INF/lib/mylib.jar")).thenReturn(jarUrl);
+
+      ClassLoader classLoader = Mockito.mock(ClassLoader.class);
+      Mockito.when(classLoader.loadClass(ClassFinderTestBean.class.getName()))
+               .thenReturn((Class) ClassFinderTestBean.class);
+
+      Set<Class<? extends Annotation>> types = new HashSet<Class<? extends Annotation>>();
+      types.add(TestAnnotation.class);
+      ByteCodeFilter byteCodeFilter = Mockito.spy(new ByteCodeFilter(types));
+
+      File cacheFile = File.createTempFile("scan", ".cache");
+      cacheFile.delete();
+      try
+      {
+         // the first run scans the archive, the second one uses the stored result
+         for (int i = 0; i < 2; i++)
+         {
+            ScanCache cache = ScanCache.load(cacheFile, "signature");
+            ClassVisitor classVisitor = Mockito.mock(ClassVisitor.class);
+            new WebLibFinder(servletContext, classLoader, new PackageFilter(null), byteCodeFilter, null, cache)
+                     .findClasses(classVisitor);
+            cache.store();
+
+            Mockito.verify(classVisitor).visit(ClassFinderTestBean.class);
+         }
+
+         Mockito.verify(byteCodeFilter, Mockito.times(1)).accept(Mockito.any(InputStream.class));
+      }
+      finally
+      {
+         cacheFile.delete();
+      }
+
+   }
+
+   @Test
+   public void testWebLibFinderWithRealPath() throws Exception
+   {
+
+      // the container URL cannot be read, but the archive is available as a local file
+      URL jarUrl = new URL("vfs", null, 0, "/content/app.war/WEB-INF/lib/mylib.jar", new URLStreamHandler() {
+         @Override
+         protected URLConnection openConnection(URL u) throws IOException
+         {
+            throw new IOException("Archive must be read from the local file");
+         }
+      });
+      File jarFile = File.createTempFile("mylib", ".jar");
+      try
+      {
+         FileOutputStream jarOutput = new FileOutputStream(jarFile);
+         try
+         {
+            jarOutput.write(createJar(null));
+         }
+         finally
+         {
+            jarOutput.close();
+         }
+
+         ServletContext servletContext = Mockito.mock(ServletContext.class);
+         Mockito.when(servletContext.getResource("/WEB-INF/lib/")).thenReturn(
+                  new URL("file:/somewhere/WEB-INF/lib/"));
+         Mockito.when(servletContext.getResourcePaths("/WEB-INF/lib/")).thenReturn(
+                  new HashSet<String>(Arrays.asList("/WEB-INF/lib/mylib.jar")));
+         Mockito.when(servletContext.getResource("/WEB-INF/lib/mylib.jar")).thenReturn(jarUrl);
+         Mockito.when(servletContext.getRealPath("/WEB-INF/lib/mylib.jar")).thenReturn(jarFile.getPath());
+
+         ClassLoader classLoader = Mockito.mock(ClassLoader.class);
+         Mockito.when(classLoader.loadClass(ClassFinderTestBean.class.getName()))
+                  .thenReturn((Class) ClassFinderTestBean.class);
+
+         Set<Class<? extends Annotation>> types = new HashSet<Class<? extends Annotation>>();
+         types.add(TestAnnotation.class);
+
+         ClassVisitor classVisitor = Mockito.mock(ClassVisitor.class);
+         new WebLibFinder(servletContext, classLoader, new PackageFilter(null), new ByteCodeFilter(types))
+                  .findClasses(classVisitor);
+
+         Mockito.verify(classVisitor).visit(ClassFinderTestBean.class);
+      }
+      finally
+      {
+         jarFile.delete();
+      }
+
+   }
+
+   /**
+    * Creates an in-memory JAR archive containing only the {@link ClassFinderTestBean} class, followed by an optional
+    * annotation index.
+    */
+   private static byte[] createJar(String index) throws IOException
+   {
+      // location of the class on the classpath and in the archive
+      final String classLocation = ClassFinderTestBean.class.getName().replace('.', '/') + ".class";
+
+      // read the original class file from the classpath
+      ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+      InputStream classStream = classLoader.getResourceAsStream(classLocation);
+      assertNotNull("Cannot find test class", classStream);
+
+      // prepare the in-memory JAR file
+      ByteArrayOutputStream byteArrayStream = new ByteArrayOutputStream();
+      JarOutputStream jarOutput = new JarOutputStream(byteArrayStream);
+
+      // write the class file to the archive
+      jarOutput.putNextEntry(new ZipEntry(classLocation));
+      byte[] buffer = new byte[255];
+      for (int len; (len = classStream.read(buffer)) != -1;)
+      {
+         jarOutput.write(buffer, 0, len);
+      }
+      jarOutput.closeEntry();
+
+      // write the annotation index to the archive
+      if (index != null)
+      {
+         jarOutput.putNextEntry(new ZipEntry(AnnotationIndex.RESOURCE));
+         jarOutput.write(index.getBytes("UTF-8"));
+         jarOutput.closeEntry();
+      }
+
+      // close the JAR archive and return its content
+      jarOutput.close();
+      return byteArrayStream.toByteArray();
+   }
+
    /**
     * A custom {@link URLStreamHandler} that will always return an in-memory JAR archive containing only the
-    * {@link ClassFinderTestBean} class.
+    * {@link ClassFinderTestBean} class, followed by an optional annotation index.
     */
    private final class TestURLStreamHandler extends URLStreamHandler
    {
+      private final String index;
+
+      public TestURLStreamHandler()
+      {
+         this(null);
+      }
+
+      public TestURLStreamHandler(String index)
+      {
+         this.index = index;
+      }
+
       protected URLConnection openConnection(URL u) throws IOException
       {
          return new URLConnection(u)
@@ -102,38 +315,7 @@ public class WebLibFinderTest
             @Override
             public InputStream getInputStream() throws IOException
             {
-               try
-               {
-                  // location of the class on the classpath and in the archive
-                  final String classLocation = ClassFinderTestBean.class.getName().replace('.', '/') + ".class";
-
-                  // read the original class file from the classpath
-                  ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-                  InputStream classStream = classLoader.getResourceAsStream(classLocation);
-                  assertNotNull("Cannot find test class", classStream);
-
-                  // prepare the in-memory JAR file
-                  ByteArrayOutputStream byteArrayStream = new ByteArrayOutputStream();
-                  JarOutputStream jarOutput = new JarOutputStream(byteArrayStream);
-
-                  // write the class file to the archive
-                  jarOutput.putNextEntry(new ZipEntry(classLocation));
-                  byte[] buffer = new byte[255];
-                  for (int len; (len = classStream.read(buffer)) != -1;)
-                  {
-                     jarOutput.write(buffer, 0, len);
-                  }
-                  jarOutput.closeEntry();
-
-                  // close the JAR archive and return the InputStream
-                  jarOutput.close();
-                  return new ByteArrayInputStream(byteArrayStream.toByteArray());
-
-               }
-               catch (IOException e)
-               {
-                  throw new IllegalStateException(e);
-               }
+               return new ByteArrayInputStream(createJar(index));
             }
          };
       }
@@ -32,6 +32,7 @@ public class JodaTime extends DefaultConditionBuilder
 {
    private final TimeCondition condition;
    private DateTimeZone zone;
+   private TimeSource timeSource = TimeSource.getDefault();
 
    /*
     * Constructors
@@ -74,16 +75,27 @@ public class JodaTime extends DefaultConditionBuilder
       return new JodaTime(condition, zone);
    }
 
+   /**
+    * Evaluate against the time provided by the given {@link TimeSource} instead of {@link TimeSource#getDefault()}, for
+    * example to use a finer granularity.
+    */
+   public JodaTime using(final TimeSource timeSource)
+   {
+      this.timeSource = timeSource;
+      return this;
+   }
+
    /*
     * Evaluator
     */
    @Override
    public boolean evaluate(final Rewrite event, final EvaluationContext context)
    {
-      if (zone != null)
-         return condition.matches(new DateTime(zone));
+      DateTimeZone timeZone = zone != null ? zone : DateTimeZone.getDefault();
+      if (condition instanceof TimeWindow)
+         return ((TimeWindow) condition).matches(timeSource.currentTimeMillis(), timeZone);
       else
-         return condition.matches(new DateTime());
+         return condition.matches(timeSource.now(timeZone));
    }
 
 }
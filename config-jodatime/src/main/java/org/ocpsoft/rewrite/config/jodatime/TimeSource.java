@@ -0,0 +1,103 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config.jodatime;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Provides the current time to {@link JodaTime} conditions. The time advances in steps of a configurable granularity,
+ * and one {@link DateTime} is shared per {@link DateTimeZone} until the next step, so that evaluating time based rules
+ * does not create a new {@link DateTime} for each request.
+ * <p>
+ * The cached values are refreshed by the first caller after each step, rather than by a background thread that would
+ * outlive the application.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class TimeSource
+{
+   /**
+    * The granularity of the default {@link TimeSource}, in milliseconds.
+    */
+   public static final long DEFAULT_GRANULARITY = 1000;
+
+   private static final TimeSource DEFAULT = new TimeSource(DEFAULT_GRANULARITY);
+
+   private final long granularity;
+
+   private final ConcurrentMap<DateTimeZone, DateTime> times = new ConcurrentHashMap<DateTimeZone, DateTime>();
+
+   private TimeSource(final long granularity)
+   {
+      if (granularity < 1)
+         throw new IllegalArgumentException("Granularity must be at least 1 millisecond, but was [" + granularity
+                  + "]");
+      this.granularity = granularity;
+   }
+
+   /**
+    * Return the shared {@link TimeSource} advancing in steps of {@link #DEFAULT_GRANULARITY} milliseconds.
+    */
+   public static TimeSource getDefault()
+   {
+      return DEFAULT;
+   }
+
+   /**
+    * Create a new {@link TimeSource} advancing in steps of the given number of milliseconds. A granularity of 1 returns
+    * the exact time.
+    */
+   public static TimeSource withGranularity(final long granularity)
+   {
+      return new TimeSource(granularity);
+   }
+
+   /**
+    * Return the granularity of this {@link TimeSource} in milliseconds.
+    */
+   public long getGranularity()
+   {
+      return granularity;
+   }
+
+   /**
+    * Return the current time in milliseconds, rounded down to the granularity.
+    */
+   public long currentTimeMillis()
+   {
+      long now = System.currentTimeMillis();
+      return now - (now % granularity);
+   }
+
+   /**
+    * Return the current time in the given {@link DateTimeZone}, rounded down to the granularity.
+    */
+   public DateTime now(final DateTimeZone zone)
+   {
+      long now = currentTimeMillis();
+      DateTime cached = times.get(zone);
+      if ((cached == null) || (cached.getMillis() != now))
+      {
+         cached = new DateTime(now, zone);
+         times.put(zone, cached);
+      }
+      return cached;
+   }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config.jodatime;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalTime;
+import org.joda.time.ReadableInstant;
+
+/**
+ * A {@link TimeCondition} that matches while the time is within a window. Fixed windows are plain comparisons, and the
+ * boundaries of recurring windows are computed in advance and cached until the time leaves the period they were
+ * computed for, so that a match is decided by comparing milliseconds.
+ * 
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public abstract class TimeWindow implements TimeCondition
+{
+   /**
+    * Match while the time is at or after the given start, and before the given end.
+    */
+   public static TimeWindow between(final ReadableInstant start, final ReadableInstant end)
+   {
+      return new Fixed(start.getMillis(), end.getMillis());
+   }
+
+   /**
+    * Match while the time is at or after the given instant.
+    */
+   public static TimeWindow after(final ReadableInstant start)
+   {
+      return new Fixed(start.getMillis(), Long.MAX_VALUE);
+   }
+
+   /**
+    * Match while the time is before the given instant.
+    */
+   public static TimeWindow before(final ReadableInstant end)
+   {
+      return new Fixed(Long.MIN_VALUE, end.getMillis());
+   }
+
+   /**
+    * Match every day while the local time is at or after the given start, and before the given end. If the end is
+    * before the start, the window extends past midnight.
+    */
+   public static TimeWindow daily(final LocalTime start, final LocalTime end)
+   {
+      return new Daily(start.getMillisOfDay(), end.getMillisOfDay());
+   }
+
+   @Override
+   public boolean matches(final DateTime time)
+   {
+      return matches(time.getMillis(), time.getZone());
+   }
+
+   /**
+    * Return true if the given instant is within this window, where local times refer to the given zone.
+    */
+   public abstract boolean matches(long millis, DateTimeZone zone);
+
+   private static final class Fixed extends TimeWindow
+   {
+      private final long start;
+      private final long end;
+
+      private Fixed(final long start, final long end)
+      {
+         this.start = start;
+         this.end = end;
+      }
+
+      @Override
+      public boolean matches(final long millis, final DateTimeZone zone)
+      {
+         return (millis >= start) && (millis < end);
+      }
+   }
+
+   private static final class Daily extends TimeWindow
+   {
+      private static final long DAY = 24L * 60 * 60 * 1000;
+
+      private final int start;
+      private final int end;
+
+      private volatile Period period;
+
+      private Daily(final int start, final int end)
+      {
+         this.start = start;
+         this.end = end;
+      }
+
+      @Override
+      public boolean matches(final long millis, final DateTimeZone zone)
+      {
+         Period current = period;
+         if ((current == null) || (current.zone != zone) || (millis < current.from) || (millis >= current.until))
+         {
+            current = compute(millis, zone);
+            period = current;
+         }
+         return current.active;
+      }
+
+      /**
+       * Compute the period containing the given instant in which the window is either active or inactive.
+       */
+      private Period compute(final long millis, final DateTimeZone zone)
+      {
+         long local = zone.convertUTCToLocal(millis);
+         long localMidnight = local - mod(local, DAY);
+         long timeOfDay = local - localMidnight;
+         boolean active = start <= end ? (timeOfDay >= start) && (timeOfDay < end)
+                  : (timeOfDay >= start) || (timeOfDay < end);
+
+         // the state can only change at midnight or at the start or end of the window
+         long[] boundaries = {
+                  zone.convertLocalToUTC(localMidnight, false),
+                  zone.convertLocalToUTC(localMidnight + start, false),
+                  zone.convertLocalToUTC(localMidnight + end, false),
+                  zone.convertLocalToUTC(localMidnight + DAY, false) };
+
+         long from = Long.MIN_VALUE;
+         long until = Long.MAX_VALUE;
+         for (long boundary : boundaries) {
+            if ((boundary <= millis) && (boundary > from))
+               from = boundary;
+            if ((boundary > millis) && (boundary < until))
+               until = boundary;
+         }
+
+         // don't cache anything if a time zone transition confuses the boundaries
+         if ((from == Long.MIN_VALUE) || (until == Long.MAX_VALUE))
+            return new Period(zone, millis, millis + 1, active);
+         return new Period(zone, from, until, active);
+      }
+
+      private static long mod(final long value, final long divisor)
+      {
+         long result = value % divisor;
+         return result < 0 ? result + divisor : result;
+      }
+
+      /**
+       * A period of time in which the window is either active or inactive.
+       */
+      private static final class Period
+      {
+         private final DateTimeZone zone;
+         private final long from;
+         private final long until;
+         private final boolean active;
+
+         private Period(final DateTimeZone zone, final long from, final long until, final boolean active)
+         {
+            this.zone = zone;
+            this.from = from;
+            this.until = until;
+            this.active = active;
+         }
+      }
+   }
+}
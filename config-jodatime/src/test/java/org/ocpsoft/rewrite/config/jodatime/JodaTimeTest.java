@@ -44,6 +44,16 @@ public class JodaTimeTest
       Assert.assertTrue(jodaTime.evaluate(new MockRewrite(), new MockEvaluationContext()));
    }
 
+   @Test
+   public void testTimeWindow()
+   {
+      DateTime now = new DateTime();
+      Assert.assertTrue(JodaTime.matches(TimeWindow.between(now.minusHours(1), now.plusHours(1)))
+               .evaluate(new MockRewrite(), new MockEvaluationContext()));
+      Assert.assertFalse(JodaTime.matches(TimeWindow.after(now.plusHours(1)))
+               .evaluate(new MockRewrite(), new MockEvaluationContext()));
+   }
+
    @Test
    public void testTimeConstraintFalseEvaluatesToFalse()
    {
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config.jodatime;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalTime;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ */
+public class TimeWindowTest
+{
+   private static final DateTimeZone BERLIN = DateTimeZone.forID("Europe/Berlin");
+
+   @Test
+   public void testBetween()
+   {
+      DateTime start = new DateTime(2012, 3, 1, 12, 0, 0, 0, BERLIN);
+      TimeWindow window = TimeWindow.between(start, start.plusHours(1));
+
+      Assert.assertFalse(window.matches(start.minusMillis(1)));
+      Assert.assertTrue(window.matches(start));
+      Assert.assertTrue(window.matches(start.plusMinutes(59)));
+      Assert.assertFalse(window.matches(start.plusHours(1)));
+
+      Assert.assertTrue(TimeWindow.after(start).matches(start.plusYears(10)));
+      Assert.assertFalse(TimeWindow.before(start).matches(start));
+   }
+
+   @Test
+   public void testDaily()
+   {
+      TimeWindow window = TimeWindow.daily(new LocalTime(9, 0), new LocalTime(17, 0));
+      DateTime day = new DateTime(2012, 3, 1, 0, 0, 0, 0, BERLIN);
+
+      Assert.assertFalse(window.matches(day.plusHours(8)));
+      Assert.assertTrue(window.matches(day.plusHours(9)));
+      Assert.assertTrue(window.matches(day.plusHours(12)));
+      Assert.assertFalse(window.matches(day.plusHours(17)));
+      Assert.assertTrue(window.matches(day.plusDays(1).plusHours(10)));
+      Assert.assertTrue(window.matches(day.plusHours(12).minusDays(40)));
+      Assert.assertFalse(window.matches(day.plusHours(18).minusDays(40)));
+
+      // the same instant in another zone
+      Assert.assertFalse(window.matches(day.plusHours(12).withZone(DateTimeZone.forOffsetHours(-8))));
+   }
+
+   @Test
+   public void testDailyPastMidnight()
+   {
+      TimeWindow window = TimeWindow.daily(new LocalTime(22, 0), new LocalTime(6, 0));
+      DateTime day = new DateTime(2012, 3, 1, 0, 0, 0, 0, BERLIN);
+
+      Assert.assertTrue(window.matches(day.plusHours(1)));
+      Assert.assertFalse(window.matches(day.plusHours(6)));
+      Assert.assertFalse(window.matches(day.plusHours(21)));
+      Assert.assertTrue(window.matches(day.plusHours(23)));
+      Assert.assertTrue(window.matches(day.plusDays(1)));
+   }
+
+   @Test
+   public void testDailyAcrossDaylightSavingTime()
+   {
+      TimeWindow window = TimeWindow.daily(new LocalTime(1, 0), new LocalTime(4, 0));
+
+      // clocks in Berlin skip from 02:00 to 03:00 on March 25th, 2012
+      DateTime day = new DateTime(2012, 3, 25, 0, 0, 0, 0, BERLIN);
+      Assert.assertFalse(window.matches(day.plusMinutes(59)));
+      Assert.assertTrue(window.matches(day.plusHours(1)));
+      Assert.assertTrue(window.matches(day.plusHours(2)));
+      Assert.assertFalse(window.matches(day.plusHours(3)));
+      Assert.assertEquals(5, day.plusHours(4).getHourOfDay());
+      Assert.assertFalse(window.matches(day.plusHours(4)));
+   }
+
+   @Test
+   public void testTimeSourceSharesTimeWithinGranularity()
+   {
+      TimeSource source = TimeSource.withGranularity(60 * 60 * 1000);
+      DateTime first = source.now(BERLIN);
+      Assert.assertEquals(0, first.getMillis() % (60 * 60 * 1000));
+      Assert.assertEquals(BERLIN, first.getZone());
+
+      // unless the test runs across the full hour
+      DateTime second = source.now(BERLIN);
+      Assert.assertTrue(first == second || second.getMillis() > first.getMillis());
+      Assert.assertEquals(DateTimeZone.UTC, source.now(DateTimeZone.UTC).getZone());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testTimeSourceRequiresPositiveGranularity()
+   {
+      TimeSource.withGranularity(0);
+   }
+}
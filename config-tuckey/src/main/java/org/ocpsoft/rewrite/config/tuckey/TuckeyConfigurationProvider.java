@@ -15,9 +15,14 @@
  */
 package org.ocpsoft.rewrite.config.tuckey;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.zip.CRC32;
 
 import javax.servlet.ServletContext;
 
@@ -30,65 +35,147 @@ import org.tuckey.web.filters.urlrewrite.UrlRewriter;
 import org.ocpsoft.rewrite.config.Configuration;
 
 /**
+ * Loads the Tuckey UrlRewriteFilter configuration from <code>/WEB-INF/urlrewrite.xml</code>.
+ * <p>
+ * The file is only parsed again if it has changed, which is detected by its size and modification time, and by its
+ * checksum if these are not available or have changed. The resulting {@link Configuration} is replaced atomically, so
+ * requests in progress keep using the previous one. If the file is not available as a local file, it is checked at most
+ * once every {@link #CHECK_INTERVAL} milliseconds.
+ * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  * 
  */
 public class TuckeyConfigurationProvider extends HttpConfigurationProvider
 {
+   /**
+    * Milliseconds between two checks of a configuration file that is not a local file.
+    */
+   public static final long CHECK_INTERVAL = 1000;
+
+   /**
+    * Set this context parameter to <code>true</code> to translate the Tuckey rules into native rules where possible,
+    * see {@link TuckeyRuleTranslator}.
+    */
+   public static final String CONFIG_TRANSLATE_RULES = "org.ocpsoft.rewrite.config.tuckey.TRANSLATE_RULES";
+
+   private static final String CONF_PATH = "/WEB-INF/urlrewrite.xml";
+
    Logger log = Logger.getLogger(TuckeyConfigurationProvider.class);
-   private UrlRewriter urlRewriter;
+
+   private volatile LoadedConf loaded;
 
    @Override
    public Configuration getConfiguration(final ServletContext context)
    {
-      loadUrlRewriteConfig(context);
-      ConfigurationBuilder config = ConfigurationBuilder.begin();
-      if (urlRewriter != null)
+      File localFile = getLocalFile(context);
+      LoadedConf current = loaded;
+      if ((current != null) && current.isUpToDate(localFile))
       {
-         config.addRule(new TuckeyRewriteRuleAdaptor(urlRewriter));
+         return current.configuration;
+      }
+
+      synchronized (this)
+      {
+         current = loaded;
+         if ((current != null) && current.isUpToDate(localFile))
+         {
+            return current.configuration;
+         }
+
+         loaded = loadUrlRewriteConfig(context, localFile, current);
+         return loaded.configuration;
       }
-      return config;
    }
 
-   private void loadUrlRewriteConfig(final ServletContext context)
+   private static File getLocalFile(final ServletContext context)
    {
-      String confPath = "/WEB-INF/urlrewrite.xml";
-      InputStream inputStream = context.getResourceAsStream(confPath);
-      // attempt to retrieve from location other than local WEB-INF
-      if (inputStream == null) {
-         inputStream = ClassLoader.getSystemResourceAsStream(confPath);
+      String realPath = context.getRealPath(CONF_PATH);
+      if (realPath != null)
+      {
+         File file = new File(realPath);
+         if (file.isFile())
+            return file;
       }
-      URL confUrl = null;
+      return null;
+   }
+
+   /**
+    * Read the configuration file and parse it, unless its checksum shows that it hasn't changed.
+    */
+   private LoadedConf loadUrlRewriteConfig(final ServletContext context, final File localFile,
+            final LoadedConf previous)
+   {
+      long lastModified = localFile == null ? 0 : localFile.lastModified();
+      byte[] data = null;
       try {
-         confUrl = context.getResource(confPath);
+         InputStream inputStream = context.getResourceAsStream(CONF_PATH);
+         // attempt to retrieve from location other than local WEB-INF
+         if (inputStream == null) {
+            inputStream = ClassLoader.getSystemResourceAsStream(CONF_PATH);
+         }
+         if (inputStream != null) {
+            try {
+               ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+               byte[] buffer = new byte[4096];
+               for (int len; (len = inputStream.read(buffer)) != -1;) {
+                  bytes.write(buffer, 0, len);
+               }
+               data = bytes.toByteArray();
+            }
+            finally {
+               inputStream.close();
+            }
+         }
       }
-      catch (MalformedURLException e) {
-         log.debug("Error", e);
+      catch (IOException e) {
+         log.error("unable to read urlrewrite conf file at " + CONF_PATH, e);
       }
-      String confUrlStr = null;
-      if (confUrl != null) {
-         confUrlStr = confUrl.toString();
+
+      long checksum = checksum(data);
+      if ((previous != null) && (previous.checksum == checksum))
+      {
+         // only touched, keep the parsed configuration
+         return new LoadedConf(previous.configuration, localFile, lastModified, checksum);
       }
-      if (inputStream == null) {
-         log.error("unable to find urlrewrite conf file at " + confPath);
-         // set the writer back to null
-         if (urlRewriter != null) {
+
+      ConfigurationBuilder config = ConfigurationBuilder.begin();
+      if (data == null) {
+         log.error("unable to find urlrewrite conf file at " + CONF_PATH);
+         if (previous != null) {
             log.error("unloading existing conf");
-            urlRewriter = null;
          }
-
       }
       else {
-         Conf conf = new Conf(context, inputStream, confPath, confUrlStr, false);
-         checkConfLocal(conf);
+         URL confUrl = null;
+         try {
+            confUrl = context.getResource(CONF_PATH);
+         }
+         catch (MalformedURLException e) {
+            log.debug("Error", e);
+         }
+         String confUrlStr = null;
+         if (confUrl != null) {
+            confUrlStr = confUrl.toString();
+         }
+
+         Conf conf = new Conf(context, new ByteArrayInputStream(data), CONF_PATH, confUrlStr, false);
+         UrlRewriter urlRewriter = checkConfLocal(conf, previous != null);
+         if (urlRewriter != null)
+         {
+            if ("true".equalsIgnoreCase(context.getInitParameter(CONFIG_TRANSLATE_RULES)))
+               config = TuckeyRuleTranslator.translate(conf, urlRewriter);
+            else
+               config.addRule(new TuckeyRewriteRuleAdaptor(urlRewriter));
+         }
       }
+      return new LoadedConf(config, localFile, lastModified, checksum);
    }
 
-   private void checkConfLocal(final Conf conf)
+   private UrlRewriter checkConfLocal(final Conf conf, final boolean reloaded)
    {
       if (conf.isOk() && conf.isEngineEnabled()) {
-         urlRewriter = new UrlRewriter(conf);
-         log.debug("Tuckey UrlRewriteFilter configuration loaded (Status: OK)");
+         log.debug("Tuckey UrlRewriteFilter configuration " + (reloaded ? "reloaded" : "loaded") + " (Status: OK)");
+         return new UrlRewriter(conf);
       }
       else {
          if (!conf.isOk()) {
@@ -97,17 +184,66 @@ public class TuckeyConfigurationProvider extends HttpConfigurationProvider
          if (!conf.isEngineEnabled()) {
             log.warn("Tuckey UrlRewriteFilter engine explicitly disabled in configuration");
          }
-         if (urlRewriter != null) {
+         if (reloaded) {
             log.debug("Tuckey UrlRewriteFilter configuration unloaded");
-            urlRewriter = null;
          }
+         return null;
       }
    }
 
+   /**
+    * Returns the CRC-32 checksum of the data, or <code>-1</code> if there is no data
+    */
+   private static long checksum(final byte[] data)
+   {
+      if (data == null)
+         return -1;
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      return crc.getValue();
+   }
+
    @Override
    public int priority()
    {
       return 100;
    }
 
+   /**
+    * A parsed configuration file and the state of the file it was parsed from
+    */
+   private static final class LoadedConf
+   {
+      private final Configuration configuration;
+      private final File localFile;
+      private final long lastModified;
+      private final long size;
+      private final long checksum;
+      private final long checked = System.currentTimeMillis();
+
+      private LoadedConf(final Configuration configuration, final File localFile, final long lastModified,
+               final long checksum)
+      {
+         this.configuration = configuration;
+         this.localFile = localFile;
+         this.lastModified = lastModified;
+         this.size = localFile == null ? -1 : localFile.length();
+         this.checksum = checksum;
+      }
+
+      /**
+       * Checks whether the configuration file is known to be unchanged, without reading it
+       */
+      private boolean isUpToDate(final File currentFile)
+      {
+         if ((localFile != null) && (currentFile != null))
+         {
+            return localFile.equals(currentFile) && (currentFile.lastModified() == lastModified)
+                     && (currentFile.length() == size);
+         }
+         return (localFile == null) && (currentFile == null)
+                  && (System.currentTimeMillis() - checked < CHECK_INTERVAL);
+      }
+   }
+
 }
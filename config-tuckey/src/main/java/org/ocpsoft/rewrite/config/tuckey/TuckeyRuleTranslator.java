@@ -0,0 +1,426 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config.tuckey;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.config.And;
+import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.config.ConfigurationBuilder;
+import org.ocpsoft.rewrite.config.Direction;
+import org.ocpsoft.rewrite.config.Not;
+import org.ocpsoft.rewrite.config.Operation;
+import org.ocpsoft.rewrite.config.RuleBuilder;
+import org.ocpsoft.rewrite.servlet.config.Forward;
+import org.ocpsoft.rewrite.servlet.config.Header;
+import org.ocpsoft.rewrite.servlet.config.IPath;
+import org.ocpsoft.rewrite.servlet.config.Method;
+import org.ocpsoft.rewrite.servlet.config.Path;
+import org.ocpsoft.rewrite.servlet.config.Redirect;
+import org.tuckey.web.filters.urlrewrite.Conf;
+import org.tuckey.web.filters.urlrewrite.NormalRule;
+import org.tuckey.web.filters.urlrewrite.UrlRewriter;
+
+/**
+ * Translates the rules of a Tuckey UrlRewriteFilter {@link Conf} into native {@link Path}, {@link Header},
+ * {@link Method}, {@link Redirect} and {@link Forward} rules, so that they are evaluated like any other Rewrite rule.
+ * <p>
+ * Only rules whose meaning is preserved exactly are translated: regular expressions anchored with <code>^</code> and
+ * <code>$</code>, redirects and forwards whose target only refers to groups of the expression, header and method
+ * conditions, and rules that end rule processing, because Tuckey applies later rules to the rewritten URL otherwise.
+ * Rules are translated in order until the first rule that cannot be translated. That rule and all following rules are
+ * handled by a {@link TuckeyRewriteRuleAdaptor}, which evaluates the translated rules again, but these cannot match at
+ * that point.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class TuckeyRuleTranslator
+{
+   private static final Logger log = Logger.getLogger(TuckeyRuleTranslator.class);
+
+   private static final String GLUE_PREFIX = "tuckey_";
+
+   /**
+    * Translate the rules of the given {@link Conf}, falling back to the given {@link UrlRewriter} for the rules that
+    * cannot be translated.
+    */
+   public static ConfigurationBuilder translate(final Conf conf, final UrlRewriter urlRewriter)
+   {
+      ConfigurationBuilder config = ConfigurationBuilder.begin();
+
+      List<?> rules = conf.getRules();
+      int translated = 0;
+      if (!conf.isUseQueryString() && !conf.isUseContext())
+      {
+         while (translated < rules.size())
+         {
+            Object rule = rules.get(translated);
+            boolean last = translated == rules.size() - 1;
+            RuleBuilder result = translate(rule, last, translated);
+            if (result == null)
+               break;
+
+            config.addRule(result);
+            translated++;
+         }
+      }
+      else
+         log.debug("Tuckey rules matching the query string or context path are not translated");
+
+      if (translated < rules.size())
+         config.addRule(new TuckeyRewriteRuleAdaptor(urlRewriter));
+
+      log.info("Translated [" + translated + "] of [" + rules.size() + "] Tuckey UrlRewriteFilter rules");
+      return config;
+   }
+
+   /**
+    * Translate a single rule, or return null if it cannot be translated.
+    */
+   static RuleBuilder translate(final Object tuckeyRule, final boolean lastInConf, final int index)
+   {
+      if (!(tuckeyRule instanceof NormalRule))
+         return reject(String.valueOf(tuckeyRule), "only normal rules are supported");
+
+      NormalRule rule = (NormalRule) tuckeyRule;
+      if (!rule.isEnabled() || !rule.isValid() || rule.isFilter())
+         return reject(rule, "the rule is disabled, invalid or a filter");
+      if (!rule.getRuns().isEmpty() || !rule.getSetAttributes().isEmpty())
+         return reject(rule, "<run> and <set> are not supported");
+      if (rule.isMatchTypeWildcard())
+         return reject(rule, "wildcard expressions are not supported");
+      if (!rule.isLast() && !lastInConf)
+         return reject(rule, "following rules would be applied to the rewritten URL");
+
+      Map<String, String> parameters = new LinkedHashMap<String, String>();
+      int groupCount = translateFrom(rule.getFrom(), rule.isFromCaseSensitive(), parameters);
+      if (groupCount < 0)
+         return reject(rule, "the expression [" + rule.getFrom() + "] cannot be expressed as a Path");
+
+      String target = translateTo(rule.getTo(), groupCount);
+      if (target == null || rule.isToContainsVariable() || rule.isToContainsFunction())
+         return reject(rule, "the target [" + rule.getTo() + "] cannot be expressed as a location");
+
+      Operation operation;
+      if ("redirect".equals(rule.getToType()) || "temporary-redirect".equals(rule.getToType()))
+         operation = Redirect.temporary(target);
+      else if ("permanent-redirect".equals(rule.getToType()))
+         operation = Redirect.permanent(target);
+      else if ("forward".equals(rule.getToType()))
+         operation = Forward.to(target);
+      else
+         return reject(rule, "the target type [" + rule.getToType() + "] is not supported");
+
+      List<Condition> conditions = new ArrayList<Condition>();
+      conditions.add(Direction.isInbound());
+
+      conditions.add(createPath(parameters));
+
+      for (Object tuckeyCondition : rule.getConditions()) {
+         Condition condition = translate((org.tuckey.web.filters.urlrewrite.Condition) tuckeyCondition);
+         if (condition == null)
+            return reject(rule, "the condition [" + ((org.tuckey.web.filters.urlrewrite.Condition) tuckeyCondition)
+                     .getDisplayName() + "] is not supported");
+         conditions.add(condition);
+      }
+
+      String id = rule.getName() != null ? rule.getName() : String.valueOf(index);
+      return RuleBuilder.define("tuckey-" + id)
+               .when(And.all(conditions.toArray(new Condition[conditions.size()])))
+               .perform(operation);
+   }
+
+   /**
+    * Translate a header or method condition, or return null if it cannot be translated.
+    */
+   private static Condition translate(final org.tuckey.web.filters.urlrewrite.Condition condition)
+   {
+      if ("or".equals(condition.getNext()))
+         return null;
+
+      boolean negated;
+      if ("notequal".equals(condition.getOperator()))
+         negated = true;
+      else if ("equal".equals(condition.getOperator()))
+         negated = false;
+      else
+         return null;
+
+      String value = condition.getValue() == null ? "" : condition.getValue();
+      Condition result;
+      if ("header".equals(condition.getType()) && condition.getName() != null && condition.getName().length() > 0)
+      {
+         // Tuckey searches the value, and an empty pattern only requires the header to be present
+         String valuePattern = value.length() == 0 ? ".+" : ".*(?:" + value + ").*";
+         if (!condition.isCaseSensitive())
+            valuePattern = "(?i)" + valuePattern;
+         if (!isValidPattern(valuePattern))
+            return null;
+
+         Header header = Header.matches("{name}", "{value}");
+         header.where("name").matches("(?i)" + Pattern.quote(condition.getName()));
+         header.where("value").matches("(?s)" + valuePattern);
+         result = header;
+      }
+      else if ("method".equals(condition.getType()))
+      {
+         String method = value.toUpperCase();
+         if ("GET".equals(method))
+            result = Method.isGet();
+         else if ("POST".equals(method))
+            result = Method.isPost();
+         else if ("HEAD".equals(method))
+            result = Method.isHead();
+         else if ("OPTIONS".equals(method))
+            result = Method.isOptions();
+         else if ("PUT".equals(method))
+            result = Method.isPut();
+         else if ("DELETE".equals(method))
+            result = Method.isDelete();
+         else if ("TRACE".equals(method))
+            result = Method.isTrace();
+         else
+            return null;
+      }
+      else
+         return null;
+
+      return negated ? Not.any(result) : result;
+   }
+
+   /**
+    * Split an anchored regular expression into the parameters of a {@link Path} pattern consisting only of parameters:
+    * one per capturing group, named by its number, and one per part of the expression between groups. Returns the
+    * number of groups, or -1 if the expression cannot be split without changing its meaning.
+    */
+   static int translateFrom(final String from, final boolean caseSensitive, final Map<String, String> parameters)
+   {
+      if (from == null || from.length() < 2 || !from.startsWith("^") || !from.endsWith("$") || from.endsWith("\\$"))
+         return -1;
+
+      String regex = from.substring(1, from.length() - 1);
+      List<String> parts = new ArrayList<String>();
+      List<Boolean> capturing = new ArrayList<Boolean>();
+      StringBuilder glue = new StringBuilder();
+
+      int depth = 0;
+      int i = 0;
+      while (i < regex.length())
+      {
+         char c = regex.charAt(i);
+         if (c == '(' && !regex.startsWith("(?", i))
+         {
+            // a capturing group becomes a parameter of its own, which only works outside of other groups
+            int end = skipGroup(regex, i);
+            if (depth > 0 || end < 0 || (end < regex.length() && "*+?{".indexOf(regex.charAt(end)) >= 0))
+               return -1;
+
+            if (glue.length() > 0)
+            {
+               parts.add(glue.toString());
+               capturing.add(false);
+               glue.setLength(0);
+            }
+            parts.add(regex.substring(i + 1, end - 1));
+            capturing.add(true);
+            i = end;
+            continue;
+         }
+
+         int end = skipAtom(regex, i);
+         if (end < 0)
+            return -1;
+         if (c == '(')
+         {
+            // inline flags and named groups would not survive the split
+            if (!regex.startsWith("(?:", i) && !regex.startsWith("(?=", i) && !regex.startsWith("(?!", i)
+                     && !regex.startsWith("(?<=", i) && !regex.startsWith("(?<!", i))
+               return -1;
+            depth++;
+         }
+         else if (c == ')')
+            depth--;
+         else if (c == '|' && depth == 0)
+            return -1;
+
+         glue.append(regex, i, end);
+         i = end;
+      }
+      if (depth != 0)
+         return -1;
+      if (glue.length() > 0)
+      {
+         parts.add(glue.toString());
+         capturing.add(false);
+      }
+
+      int groups = 0;
+      int glueParts = 0;
+      for (int part = 0; part < parts.size(); part++)
+      {
+         String partRegex = caseSensitive ? parts.get(part) : "(?i:" + parts.get(part) + ")";
+         if (!isValidPattern(partRegex) || Pattern.compile(partRegex).matcher("").groupCount() > 0)
+            return -1;
+
+         String name = capturing.get(part) ? String.valueOf(++groups) : GLUE_PREFIX + glueParts++;
+         parameters.put(name, partRegex);
+      }
+      return groups;
+   }
+
+   /**
+    * Create the {@link Path} for the parameters of {@link #translateFrom(String, boolean, Map)}
+    */
+   static IPath createPath(final Map<String, String> parameters)
+   {
+      StringBuilder pattern = new StringBuilder();
+      for (String name : parameters.keySet()) {
+         pattern.append('{').append(name).append('}');
+      }
+      IPath path = Path.matches(pattern.toString());
+      for (Entry<String, String> parameter : parameters.entrySet()) {
+         path.where(parameter.getKey()).matches(parameter.getValue());
+      }
+      return path;
+   }
+
+   /**
+    * Convert a Tuckey target with back-references like <code>$1</code> into a location pattern, or return null if the
+    * target contains anything else that Tuckey would replace.
+    */
+   static String translateTo(final String to, final int groupCount)
+   {
+      if (to == null || to.length() == 0 || "null".equals(to) || "-".equals(to))
+         return null;
+
+      StringBuilder result = new StringBuilder();
+      for (int i = 0; i < to.length(); i++)
+      {
+         char c = to.charAt(i);
+         if (c == '$')
+         {
+            if (i + 1 >= to.length() || !Character.isDigit(to.charAt(i + 1)))
+               return null;
+            int group = to.charAt(i + 1) - '0';
+            if (group < 1 || group > groupCount || (i + 2 < to.length() && Character.isDigit(to.charAt(i + 2))))
+               return null;
+            result.append('{').append(group).append('}');
+            i++;
+         }
+         else if (c == '{' || c == '}' || c == '\\' || c == '%')
+            return null;
+         else
+            result.append(c);
+      }
+      return result.toString();
+   }
+
+   /**
+    * Return the index after the group starting at the given index, or -1 if it contains another capturing group or is
+    * not closed.
+    */
+   private static int skipGroup(final String regex, final int start)
+   {
+      int depth = 0;
+      int i = start;
+      while (i < regex.length())
+      {
+         char c = regex.charAt(i);
+         if (c == '(')
+         {
+            if (i != start && !regex.startsWith("(?", i))
+               return -1;
+            depth++;
+         }
+         else if (c == ')')
+         {
+            depth--;
+            if (depth == 0)
+               return i + 1;
+         }
+         int end = skipAtom(regex, i);
+         if (end < 0)
+            return -1;
+         i = end;
+      }
+      return -1;
+   }
+
+   /**
+    * Return the index after the single character, escape sequence or character class at the given index, or -1 if it
+    * is a back-reference or not terminated.
+    */
+   private static int skipAtom(final String regex, final int start)
+   {
+      char c = regex.charAt(start);
+      if (c == '\\')
+      {
+         if (start + 1 >= regex.length() || Character.isDigit(regex.charAt(start + 1)) || regex.charAt(start + 1) == 'k')
+            return -1;
+         if (regex.charAt(start + 1) == 'Q')
+         {
+            int end = regex.indexOf("\\E", start);
+            return end < 0 ? -1 : end + 2;
+         }
+         return start + 2;
+      }
+      if (c == '[')
+      {
+         int depth = 0;
+         for (int i = start; i < regex.length(); i++)
+         {
+            char current = regex.charAt(i);
+            if (current == '\\')
+               i++;
+            else if (current == '[')
+               depth++;
+            else if (current == ']' && --depth == 0)
+               return i + 1;
+         }
+         return -1;
+      }
+      return start + 1;
+   }
+
+   private static boolean isValidPattern(final String regex)
+   {
+      try {
+         Pattern.compile(regex);
+         return true;
+      }
+      catch (RuntimeException e) {
+         return false;
+      }
+   }
+
+   private static RuleBuilder reject(final NormalRule rule, final String reason)
+   {
+      return reject(rule.getDisplayName(), reason);
+   }
+
+   private static RuleBuilder reject(final String rule, final String reason)
+   {
+      if (log.isDebugEnabled())
+         log.debug("Tuckey rule [" + rule + "] is not translated: " + reason);
+      return null;
+   }
+}
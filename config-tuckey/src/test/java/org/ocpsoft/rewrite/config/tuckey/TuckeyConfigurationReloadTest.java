@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config.tuckey;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.servlet.ServletContext;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ocpsoft.rewrite.config.Configuration;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ */
+public class TuckeyConfigurationReloadTest
+{
+   private static final String RULE = "<urlrewrite><rule><from>^/old$</from><to type=\"redirect\">/new</to></rule>"
+            + "</urlrewrite>";
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private File file;
+   private ServletContext context;
+   private TuckeyConfigurationProvider provider;
+
+   @Before
+   public void before() throws Exception
+   {
+      file = new File(folder.getRoot(), "urlrewrite.xml");
+      context = mock(ServletContext.class);
+      when(context.getRealPath("/WEB-INF/urlrewrite.xml")).thenReturn(file.getPath());
+      when(context.getResourceAsStream("/WEB-INF/urlrewrite.xml")).thenAnswer(new Answer<InputStream>() {
+         @Override
+         public InputStream answer(InvocationOnMock invocation) throws Throwable
+         {
+            return file.isFile() ? new FileInputStream(file) : null;
+         }
+      });
+      provider = new TuckeyConfigurationProvider();
+   }
+
+   @Test
+   public void testConfigurationIsParsedOnce() throws Exception
+   {
+      write(RULE, 10000);
+      Configuration first = provider.getConfiguration(context);
+      Assert.assertEquals(1, first.getRules().size());
+      Assert.assertSame(first, provider.getConfiguration(context));
+   }
+
+   @Test
+   public void testModifiedConfigurationIsReloaded() throws Exception
+   {
+      write(RULE, 10000);
+      Configuration first = provider.getConfiguration(context);
+
+      write("<urlrewrite></urlrewrite>", 20000);
+      Configuration second = provider.getConfiguration(context);
+      Assert.assertNotSame(first, second);
+      Assert.assertEquals(1, second.getRules().size());
+      Assert.assertNotSame(first.getRules().get(0), second.getRules().get(0));
+   }
+
+   @Test
+   public void testTouchedConfigurationIsNotParsedAgain() throws Exception
+   {
+      write(RULE, 10000);
+      Configuration first = provider.getConfiguration(context);
+
+      write(RULE, 20000);
+      Assert.assertSame(first, provider.getConfiguration(context));
+   }
+
+   @Test
+   public void testRemovedConfigurationIsUnloaded() throws Exception
+   {
+      write(RULE, 10000);
+      Assert.assertEquals(1, provider.getConfiguration(context).getRules().size());
+
+      file.delete();
+      Assert.assertEquals(0, provider.getConfiguration(context).getRules().size());
+   }
+
+   private void write(String content, long lastModified) throws Exception
+   {
+      OutputStream stream = new FileOutputStream(file);
+      try {
+         stream.write(content.getBytes("UTF-8"));
+      }
+      finally {
+         stream.close();
+      }
+      file.setLastModified(lastModified);
+   }
+}
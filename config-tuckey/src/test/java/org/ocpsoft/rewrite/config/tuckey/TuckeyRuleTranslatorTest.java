@@ -0,0 +1,166 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.config.tuckey;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.ocpsoft.rewrite.config.Operation;
+import org.ocpsoft.rewrite.config.Rule;
+import org.ocpsoft.rewrite.servlet.http.event.HttpInboundServletRewrite;
+import org.ocpsoft.rewrite.servlet.impl.EvaluationContextImpl;
+import org.tuckey.web.filters.urlrewrite.Conf;
+import org.tuckey.web.filters.urlrewrite.UrlRewriter;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ */
+public class TuckeyRuleTranslatorTest
+{
+   @Test
+   public void testTranslateFrom()
+   {
+      Map<String, String> parameters = new LinkedHashMap<String, String>();
+      Assert.assertEquals(1, TuckeyRuleTranslator.translateFrom("^/some/olddir/(.*)$", true, parameters));
+      Assert.assertEquals(Arrays.asList("tuckey_0", "1"), Arrays.asList(parameters.keySet().toArray()));
+      Assert.assertEquals("/some/olddir/", parameters.get("tuckey_0"));
+      Assert.assertEquals(".*", parameters.get("1"));
+
+      parameters.clear();
+      Assert.assertEquals(2, TuckeyRuleTranslator.translateFrom("^/a/([0-9]+)(?:\\.html)?/([^/(]+)$", false,
+               parameters));
+      Assert.assertEquals(Arrays.asList("tuckey_0", "1", "tuckey_1", "2"),
+               Arrays.asList(parameters.keySet().toArray()));
+      Assert.assertEquals("(?i:(?:\\.html)?/)", parameters.get("tuckey_1"));
+      Assert.assertEquals("(?i:[^/(]+)", parameters.get("2"));
+   }
+
+   @Test
+   public void testUntranslatableExpressions()
+   {
+      for (String from : Arrays.asList("/some/olddir/(.*)$", "^/some/olddir/(.*)", "^/(a)+$", "^/((a)b)$",
+               "^/a|/b$", "^/(a)/\\1$", "^(?i)/a$", "^/(?<name>a)$", "^/[abc$")) {
+         Assert.assertEquals(from, -1, TuckeyRuleTranslator.translateFrom(from, true,
+                  new LinkedHashMap<String, String>()));
+      }
+   }
+
+   @Test
+   public void testTranslateTo()
+   {
+      Assert.assertEquals("/very/newdir/{1}", TuckeyRuleTranslator.translateTo("/very/newdir/$1", 1));
+      Assert.assertNull(TuckeyRuleTranslator.translateTo("/very/newdir/$2", 1));
+      Assert.assertNull(TuckeyRuleTranslator.translateTo("/very/%{context-path}", 0));
+      Assert.assertNull(TuckeyRuleTranslator.translateTo("null", 0));
+   }
+
+   @Test
+   public void testTranslatedRedirect()
+   {
+      List<Rule> rules = translate("<rule><from>^/some/olddir/(.*)$</from>"
+               + "<to type=\"redirect\" last=\"true\">/very/newdir/$1</to></rule>");
+      Assert.assertEquals(1, rules.size());
+      Assert.assertEquals("tuckey-0", rules.get(0).getId());
+
+      HttpInboundServletRewrite event = request("GET", "/SOME/olddir/value");
+      Assert.assertTrue(perform(rules.get(0), event));
+      verify(event).redirectTemporary("/very/newdir/value");
+
+      Assert.assertFalse(perform(rules.get(0), request("GET", "/other/olddir/value")));
+   }
+
+   @Test
+   public void testTranslatedConditions()
+   {
+      List<Rule> rules = translate("<rule><condition name=\"user-agent\">Mobile</condition>"
+               + "<condition type=\"method\" operator=\"notequal\">post</condition>"
+               + "<from casesensitive=\"true\">^/index$</from><to type=\"forward\">/mobile.html</to></rule>");
+      Assert.assertEquals(1, rules.size());
+
+      HttpInboundServletRewrite event = request("GET", "/index");
+      when(event.getRequest().getHeaderNames()).thenReturn(Collections.enumeration(Arrays.asList("User-Agent")));
+      when(event.getRequest().getHeaders("User-Agent")).thenReturn(
+               Collections.enumeration(Arrays.asList("Some mobile browser")));
+      Assert.assertTrue(perform(rules.get(0), event));
+      verify(event).forward("/mobile.html");
+
+      event = request("POST", "/index");
+      when(event.getRequest().getHeaderNames()).thenReturn(Collections.enumeration(Arrays.asList("User-Agent")));
+      when(event.getRequest().getHeaders("User-Agent")).thenReturn(
+               Collections.enumeration(Arrays.asList("Some mobile browser")));
+      Assert.assertFalse(perform(rules.get(0), event));
+      verify(event, never()).forward("/mobile.html");
+
+      Assert.assertFalse(perform(rules.get(0), request("GET", "/INDEX")));
+   }
+
+   @Test
+   public void testFallbackToAdaptor()
+   {
+      List<Rule> rules = translate("<rule><from>^/first$</from><to type=\"redirect\" last=\"true\">/a</to></rule>"
+               + "<rule><from>^/second$</from><to type=\"redirect\">/b</to></rule>"
+               + "<rule><from>^/third$</from><to type=\"redirect\" last=\"true\">/c</to></rule>");
+      Assert.assertEquals(2, rules.size());
+      Assert.assertEquals("tuckey-0", rules.get(0).getId());
+      Assert.assertTrue(rules.get(1) instanceof TuckeyRewriteRuleAdaptor);
+   }
+
+   private static List<Rule> translate(String rules)
+   {
+      Conf conf = new Conf(new ByteArrayInputStream(("<urlrewrite>" + rules + "</urlrewrite>").getBytes()),
+               "urlrewrite.xml");
+      Assert.assertTrue(conf.isOk());
+      return TuckeyRuleTranslator.translate(conf, new UrlRewriter(conf)).getRules();
+   }
+
+   private static HttpInboundServletRewrite request(String method, String path)
+   {
+      HttpServletRequest request = mock(HttpServletRequest.class);
+      when(request.getMethod()).thenReturn(method);
+      when(request.getHeaderNames()).thenReturn(Collections.enumeration(Collections.<String> emptyList()));
+      HttpInboundServletRewrite event = mock(HttpInboundServletRewrite.class);
+      when(event.getRequest()).thenReturn(request);
+      when(event.getRequestPath()).thenReturn(path);
+      return event;
+   }
+
+   private static boolean perform(Rule rule, HttpInboundServletRewrite event)
+   {
+      EvaluationContextImpl context = new EvaluationContextImpl();
+      if (!rule.evaluate(event, context))
+         return false;
+      for (Operation operation : context.getPreOperations()) {
+         operation.perform(event, context);
+      }
+      rule.perform(event, context);
+      return true;
+   }
+}
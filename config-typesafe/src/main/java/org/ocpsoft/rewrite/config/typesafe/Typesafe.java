@@ -2,44 +2,37 @@ package org.ocpsoft.rewrite.config.typesafe;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 
-import org.ocpsoft.common.pattern.WeightedComparator;
-import org.ocpsoft.common.services.ServiceLoader;
-import org.ocpsoft.common.util.Iterators;
-import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.bind.Evaluation;
 import org.ocpsoft.rewrite.config.Operation;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.event.Rewrite;
-import org.ocpsoft.rewrite.util.ServiceLogger;
+import org.ocpsoft.rewrite.util.Services;
 
 public class Typesafe implements Operation
 {
-   private static Logger log = Logger.getLogger(Typesafe.class);
-
-   private static List<InstanceFactory> factories;
-
    private final List<String> parameters = new ArrayList<String>();
 
    private Method method;
    private Object[] args;
 
-   @SuppressWarnings("unchecked")
+   /**
+    * Argument slots resolved when the method is bound. A <code>null</code> slot uses the recorded argument value.
+    */
+   private Evaluation[] bindings;
+
+   /**
+    * The {@link InstanceFactory} that last provided an instance of the declaring type.
+    */
+   private volatile InstanceFactory factory;
+
    public static Typesafe method()
    {
-      if (factories == null)
-      {
-         factories = Iterators.asUniqueList(ServiceLoader.load(InstanceFactory.class));
-         Collections.sort(factories, new WeightedComparator());
-         ServiceLogger.logLoadedServices(log, InstanceFactory.class, factories);
-      }
-
       return new Typesafe();
    }
 
@@ -67,12 +60,37 @@ public class Typesafe implements Operation
       @Override
       public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable
       {
-         this.typesafe.method = method;
-         this.typesafe.args = args;
+         this.typesafe.bind(method, args);
          return null;
       }
    }
 
+   private void bind(Method method, Object[] args)
+   {
+      /*
+       * Suppress access checks once, up front, instead of on every invocation.
+       */
+      if (!method.isAccessible())
+         method.setAccessible(true);
+
+      this.method = method;
+      this.args = args;
+
+      if (parameters.size() == args.length)
+         this.bindings = resolveBindings();
+   }
+
+   private Evaluation[] resolveBindings()
+   {
+      Evaluation[] result = new Evaluation[parameters.size()];
+      for (int i = 0; i < result.length; i++) {
+         String arg = parameters.get(i);
+         if (arg != null)
+            result[i] = Evaluation.property(arg);
+      }
+      return result;
+   }
+
    @Override
    public void perform(Rewrite event, EvaluationContext context)
    {
@@ -90,12 +108,15 @@ public class Typesafe implements Operation
                   + "]. Expected [" + args.length + "] but got [" + parameters.size() + "]");
       }
 
+      if (bindings == null)
+         bindings = resolveBindings();
+
       Object[] values = new Object[args.length];
 
       for (int i = 0; i < args.length; i++) {
-         String arg = parameters.get(i);
-         if (arg != null)
-            values[i] = Evaluation.property(arg).retrieveConverted(event, context);
+         Evaluation binding = bindings[i];
+         if (binding != null)
+            values[i] = binding.retrieveConverted(event, context);
          else
             values[i] = args[i];
       }
@@ -113,13 +134,7 @@ public class Typesafe implements Operation
                   + "]. Expected [" + args.length + "] but got [" + values.length + "]");
       }
 
-      Object instance = null;
-      for (InstanceFactory factory : factories) {
-         instance = factory.getInstance(type);
-         if (instance != null)
-            break;
-      }
-
+      Object instance = getInstance(type);
       if (instance == null)
          throw new IllegalStateException("Cannot invoke method [" + buildSignature(type, method)
                   + "] because no instance of type [" + type.getName()
@@ -133,6 +148,31 @@ public class Typesafe implements Operation
       }
    }
 
+   /**
+    * Obtain an instance of the given type, trying the {@link InstanceFactory} that last provided one before consulting
+    * all registered factories.
+    */
+   private Object getInstance(Class<?> type)
+   {
+      InstanceFactory cached = factory;
+      if (cached != null)
+      {
+         Object instance = cached.getInstance(type);
+         if (instance != null)
+            return instance;
+      }
+
+      for (InstanceFactory factory : Services.load(InstanceFactory.class)) {
+         Object instance = factory.getInstance(type);
+         if (instance != null)
+         {
+            this.factory = factory;
+            return instance;
+         }
+      }
+      return null;
+   }
+
    public <T> T param(Class<T> type)
    {
       return param(type, null);
@@ -161,6 +161,26 @@ public class TypesafeInvocationTest
       Assert.assertTrue(DummyObject.invoked);
    }
 
+   @Test
+   public void testInvokeTypesafeRepeatedlyWithNamedParams()
+   {
+      Typesafe typesafe = Typesafe.method();
+      DummyObject object = typesafe.invoke(DummyObject.class);
+      object.doSomething(typesafe.param(boolean.class, "bool"), typesafe.param(Integer.class, "int"));
+
+      Evaluation.property("bool").submit(rewrite, context, true);
+      Evaluation.property("int").submit(rewrite, context, 15);
+      typesafe.perform(rewrite, context);
+      Assert.assertEquals(15, DummyObject.number);
+
+      EvaluationContext next = new MockEvaluationContext();
+      Evaluation.property("bool").submit(rewrite, next, false);
+      Evaluation.property("int").submit(rewrite, next, 16);
+      typesafe.perform(rewrite, next);
+      Assert.assertEquals(16, DummyObject.number);
+      Assert.assertEquals(false, DummyObject.bool);
+   }
+
    @Test(expected = IllegalStateException.class)
    public void testInvokeTypesafeWithMissingParams()
    {
@@ -16,14 +16,14 @@
 package org.ocpsoft.rewrite.less;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.Charset;
+import java.net.URL;
 
 import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.IOUtils;
 import org.ocpsoft.logging.Logger;
+import org.ocpsoft.rewrite.less.LessCache.CompiledCss;
 import org.ocpsoft.rewrite.config.Rule;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.event.Rewrite;
@@ -31,7 +31,10 @@ import org.ocpsoft.rewrite.servlet.http.event.HttpInboundServletRewrite;
 
 /**
  * 
- * Implementation of {@link Rule} that renders LESS files to CSS.
+ * Implementation of {@link Rule} that renders LESS files to CSS. The rendered CSS is cached until the LESS file
+ * changes, and served with an <code>ETag</code> and <code>Last-Modified</code> header, so that conditional requests
+ * can be answered with <code>304 Not Modified</code>. The LESS files may also be compiled in advance, see
+ * {@link #precompile(ServletContext)}.
  * 
  * @author Christian Kaltepoth
  * 
@@ -43,7 +46,7 @@ public class Less implements Rule
 
    private final String suffix;
 
-   private final LessEngine lessEngine = new LessEngine();
+   private boolean gzip;
 
    public static Less fileType(String fileType)
    {
@@ -55,6 +58,26 @@ public class Less implements Rule
       this.suffix = suffix;
    }
 
+   /**
+    * Also serve the compiled CSS compressed with gzip to clients accepting it. The compressed CSS is cached as well.
+    */
+   public Less withGzip()
+   {
+      this.gzip = true;
+      return this;
+   }
+
+   /**
+    * Find all LESS files of the given {@link ServletContext} and compile them in the background, so that the first
+    * requests don't have to wait for the compiler. Call this when building the configuration, which happens when the
+    * filter is initialized. Files are only precompiled once per {@link ServletContext}, and failures are logged.
+    */
+   public Less precompile(ServletContext servletContext)
+   {
+      LessCache.getFor(servletContext).precompile(servletContext, suffix);
+      return this;
+   }
+
    @Override
    public String getId()
    {
@@ -89,37 +112,118 @@ public class Less implements Rule
 
          HttpInboundServletRewrite inboundRewrite = (HttpInboundServletRewrite) event;
 
-         // try to load the accessed LESS source
-         ServletContext servletContext = inboundRewrite.getRequest().getServletContext();
-         InputStream inputStream = servletContext.getResourceAsStream(inboundRewrite.getRequestPath());
+         // IO errors must be handled here
+         try {
 
-         // proceed only if requested resource has been found
-         if (inputStream != null) {
+            // try to locate the accessed LESS source
+            String path = inboundRewrite.getRequestPath();
+            ServletContext servletContext = inboundRewrite.getRequest().getServletContext();
+            URL resource = servletContext.getResource(path);
 
-            // IO errors must be handled here
-            try {
+            // proceed only if requested resource has been found
+            if (resource != null) {
 
-               // read the LESS source and render it to CSS
-               String lessData = IOUtils.toString(inputStream);
-               String cssData = lessEngine.process(lessData);
+               CompiledCss css = LessCache.getFor(servletContext).get(path, resource);
 
-               // write the CSS to the client
+               HttpServletRequest request = inboundRewrite.getRequest();
                HttpServletResponse response = inboundRewrite.getResponse();
-               response.getOutputStream().write(cssData.getBytes(Charset.forName("UTF8")));
+
+               boolean gzipped = gzip && acceptsGzip(request);
+               String etag = css.getETag(gzipped);
+               response.setHeader("ETag", etag);
+               if (css.getLastModified() > 0) {
+                  response.setDateHeader("Last-Modified", css.getLastModified());
+               }
+               if (gzip) {
+                  response.setHeader("Vary", "Accept-Encoding");
+               }
+
+               // the client already has the current CSS
+               if (isNotModified(request, etag, css.getLastModified())) {
+                  response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+               }
+
+               // write the CSS to the client
+               else {
+                  byte[] data = gzipped ? css.getGzippedCss() : css.getCss();
+                  response.setContentType("text/css");
+                  if (gzipped) {
+                     response.setHeader("Content-Encoding", "gzip");
+                  }
+                  response.setContentLength(data.length);
+                  response.getOutputStream().write(data);
+               }
                response.flushBuffer();
 
                // the application doesn't need to process the request anymore
                inboundRewrite.abort();
 
             }
-            catch (IOException e) {
-               log.error("Failed to process LESS file", e);
-            }
 
          }
+         catch (IOException e) {
+            log.error("Failed to process LESS file", e);
+         }
 
       }
 
    }
 
+   /**
+    * Checks the conditional headers of the request against the current entity tag and modification time. As required
+    * by HTTP, <code>If-Modified-Since</code> is ignored if the request contains <code>If-None-Match</code>.
+    */
+   static boolean isNotModified(HttpServletRequest request, String etag, long lastModified)
+   {
+      String ifNoneMatch = request.getHeader("If-None-Match");
+      if (ifNoneMatch != null) {
+         for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+               tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      if (lastModified > 0) {
+         try {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            // HTTP dates have a resolution of one second
+            return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+         }
+         catch (IllegalArgumentException e) {
+            // malformed date
+            return false;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Checks whether the client accepts gzip compressed content
+    */
+   static boolean acceptsGzip(HttpServletRequest request)
+   {
+      String acceptEncoding = request.getHeader("Accept-Encoding");
+      if (acceptEncoding != null) {
+         for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+               for (int i = 1; i < parameters.length; i++) {
+                  if (parameters[i].trim().matches("q\\s*=\\s*0(\\.0*)?")) {
+                     return false;
+                  }
+               }
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
 }
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.less;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletContext;
+
+import org.apache.commons.io.IOUtils;
+import org.ocpsoft.logging.Logger;
+
+/**
+ * Cache of the CSS compiled from LESS resources, keyed by the path of the resource. An entry is reused as long as the
+ * modification time of the resource is unchanged, or, if it has changed or is unknown, as long as the source has the
+ * same hash. Sources are only compiled when the CSS is actually requested, so a request that can be answered with
+ * <code>304 Not Modified</code> never invokes the {@link LessEngine}.
+ * <p>
+ * Rules may be created again whenever the configuration is loaded, so the cache is shared by all {@link Less} rules
+ * of a {@link ServletContext} and stored as one of its attributes.
+ *
+ * @author Christian Kaltepoth
+ */
+class LessCache
+{
+
+   private static final Logger log = Logger.getLogger(LessCache.class);
+
+   private static final String KEY = LessCache.class.getName();
+
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   private final LessEngine lessEngine;
+
+   private final ConcurrentMap<String, CompiledCss> entries = new ConcurrentHashMap<String, CompiledCss>();
+
+   /**
+    * The suffixes whose resources have already been precompiled
+    */
+   private final Set<String> precompiledSuffixes = Collections.synchronizedSet(new HashSet<String>());
+
+   LessCache(LessEngine lessEngine)
+   {
+      this.lessEngine = lessEngine;
+   }
+
+   /**
+    * Get the {@link LessCache} for the given {@link ServletContext}, creating it if necessary. Concurrent callers always
+    * get the same instance.
+    */
+   static LessCache getFor(ServletContext context)
+   {
+      Object stored = context.getAttribute(KEY);
+      if (stored instanceof LessCache)
+         return (LessCache) stored;
+
+      synchronized (LessCache.class) {
+         stored = context.getAttribute(KEY);
+         if (stored instanceof LessCache)
+            return (LessCache) stored;
+
+         LessCache result = new LessCache(new LessEngine());
+         context.setAttribute(KEY, result);
+         return result;
+      }
+   }
+
+   /**
+    * Find all resources of the {@link ServletContext} ending with the given suffix, and compile them in the background
+    * using one thread per available processor. Resources that fail to compile are logged and compiled again on their
+    * first request. Does nothing if the resources with this suffix have already been precompiled.
+    *
+    * @return the compilation tasks that have been started
+    */
+   List<Future<?>> precompile(final ServletContext context, String suffix)
+   {
+      List<Future<?>> result = new ArrayList<Future<?>>();
+      if (!precompiledSuffixes.add(suffix)) {
+         return result;
+      }
+
+      List<String> paths = new ArrayList<String>();
+      findResources(context, "/", suffix, paths);
+      if (paths.isEmpty()) {
+         return result;
+      }
+      log.info("Precompiling " + paths.size() + " LESS files in the background");
+
+      int threads = Math.min(paths.size(), Runtime.getRuntime().availableProcessors());
+      ExecutorService executor = Executors.newFixedThreadPool(threads, new PrecompilerThreadFactory());
+      try {
+         for (final String path : paths) {
+            result.add(executor.submit(new Runnable() {
+               @Override
+               public void run()
+               {
+                  try {
+                     URL resource = context.getResource(path);
+                     if (resource != null) {
+                        get(path, resource).getCss();
+                     }
+                  }
+                  catch (Exception e) {
+                     log.warn("Failed to precompile LESS file: " + path, e);
+                  }
+               }
+            }));
+         }
+      }
+      finally {
+         // the threads terminate once all files are compiled
+         executor.shutdown();
+      }
+      return result;
+   }
+
+   /**
+    * Recursively collect the paths of all resources below the given directory ending with the suffix. Resources below
+    * <code>/WEB-INF/</code> and <code>/META-INF/</code> cannot be requested and are skipped.
+    */
+   private static void findResources(ServletContext context, String directory, String suffix, List<String> result)
+   {
+      Set<String> paths = context.getResourcePaths(directory);
+      if (paths != null) {
+         for (String path : paths) {
+            if (path.endsWith("/")) {
+               if (!path.equals("/WEB-INF/") && !path.equals("/META-INF/")) {
+                  findResources(context, path, suffix, result);
+               }
+            }
+            else if (path.endsWith(suffix)) {
+               result.add(path);
+            }
+         }
+      }
+   }
+
+   /**
+    * Return the entry of the LESS resource with the given path, creating a new one if the resource has changed.
+    *
+    * @param path the path of the resource, used as the cache key
+    * @param resource the {@link URL} the resource is read from
+    */
+   CompiledCss get(String path, URL resource) throws IOException
+   {
+      URLConnection connection = resource.openConnection();
+      InputStream inputStream = connection.getInputStream();
+      try {
+
+         // fast path: the resource has not been modified since it was cached
+         long lastModified = connection.getLastModified();
+         CompiledCss cached = entries.get(path);
+         if (cached != null && lastModified > 0 && cached.getLastModified() == lastModified) {
+            return cached;
+         }
+
+         byte[] source = IOUtils.toByteArray(inputStream);
+         String hash = md5(source);
+
+         // only the modification time has changed, e.g. after a redeployment
+         if (cached != null && cached.hash.equals(hash)) {
+            cached.lastModified = lastModified;
+            return cached;
+         }
+
+         CompiledCss created = new CompiledCss(new String(source), hash, lastModified);
+         entries.put(path, created);
+         return created;
+
+      }
+      finally {
+         inputStream.close();
+      }
+   }
+
+   private static String md5(byte[] data)
+   {
+      try {
+         byte[] digest = MessageDigest.getInstance("MD5").digest(data);
+         StringBuilder result = new StringBuilder(digest.length * 2);
+         for (byte b : digest) {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+         }
+         return result.toString();
+      }
+      catch (NoSuchAlgorithmException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+
+   /**
+    * Creates the daemon threads used to precompile resources, so that they never prevent the JVM from exiting
+    */
+   private static class PrecompilerThreadFactory implements ThreadFactory
+   {
+      private static final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+         Thread thread = new Thread(runnable, "rewrite-less-precompiler-" + count.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      }
+   }
+
+   /**
+    * The CSS rendered from a single version of a LESS resource
+    */
+   class CompiledCss
+   {
+
+      private final String hash;
+
+      private volatile long lastModified;
+
+      private String source;
+
+      private byte[] css;
+
+      private byte[] gzippedCss;
+
+      private CompiledCss(String source, String hash, long lastModified)
+      {
+         this.source = source;
+         this.hash = hash;
+         this.lastModified = lastModified;
+      }
+
+      /**
+       * The modification time of the LESS resource, or <code>0</code> if it is unknown
+       */
+      long getLastModified()
+      {
+         return lastModified;
+      }
+
+      /**
+       * The entity tag of the CSS, which depends only on the LESS source
+       */
+      String getETag(boolean gzipped)
+      {
+         return gzipped ? "\"" + hash + "-gzip\"" : "\"" + hash + "\"";
+      }
+
+      /**
+       * The CSS encoded as UTF-8, compiling the source on first access
+       */
+      synchronized byte[] getCss()
+      {
+         if (css == null) {
+            String result = lessEngine.process(source);
+            css = result != null ? result.getBytes(UTF8) : new byte[0];
+            source = null;
+         }
+         return css;
+      }
+
+      /**
+       * The CSS compressed with gzip, compressing it on first access
+       */
+      synchronized byte[] getGzippedCss() throws IOException
+      {
+         if (gzippedCss == null) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+            gzip.write(getCss());
+            gzip.close();
+            gzippedCss = bytes.toByteArray();
+         }
+         return gzippedCss;
+      }
+
+   }
+
+}
@@ -1,12 +1,12 @@
 /*
  * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
- * 
+ *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
- * 
+ *
  *     http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -18,62 +18,198 @@ package org.ocpsoft.rewrite.less;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
-
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+
+/**
+ * Compiles LESS sources to CSS using Rhino.
+ * <p>
+ * The LESS compiler and its environment are evaluated only once per class-loader, into a sealed scope shared by all
+ * engines. Each call to {@link #process(String)} only invokes the compiler in a new scope whose prototype is the shared
+ * one. The engine's contexts use dynamic scope, so that the new scope is the global scope of the compilation: global
+ * variables written by the compiler are created in it instead of the shared scope. Objects held by the shared scope,
+ * like <code>less</code> or <code>window</code>, are still shared. Rhino {@link Context} instances are pooled, which
+ * also bounds the number of concurrent compilations.
+ *
+ * @author Christian Kaltepoth
+ */
 public class LessEngine
 {
+   /**
+    * The scripts evaluated into the shared scope, in order.
+    */
+   private static final String[] BASE_SCRIPTS = { "env.rhino.1.2.js", "less-1.3.0.min.js", "api.js" };
+
+   private static volatile ScriptableObject sharedScope;
 
-   private final String baseScript;
+   private static final ContextFactory contextFactory = new DynamicScopeContextFactory();
+   private final BlockingQueue<Context> contexts = new LinkedBlockingQueue<Context>();
+   private final AtomicInteger createdContexts = new AtomicInteger();
+   private final int poolSize;
 
+   /**
+    * Create a new {@link LessEngine} compiling as many sources concurrently as there are available processors.
+    */
    public LessEngine()
    {
-      StringBuilder scriptBuilder = new StringBuilder();
-      scriptBuilder.append("function print(s) {}"); // required by env.rhino
-      scriptBuilder.append(getClasspathResourceAsString("env.rhino.1.2.js"));
-      scriptBuilder.append(getClasspathResourceAsString("less-1.3.0.min.js"));
-      scriptBuilder.append(getClasspathResourceAsString("api.js"));
-      baseScript = scriptBuilder.toString();
+      this(Runtime.getRuntime().availableProcessors());
    }
 
-   public String process(String less)
+   /**
+    * Create a new {@link LessEngine} compiling at most the given number of sources concurrently.
+    */
+   public LessEngine(final int poolSize)
    {
+      if (poolSize < 1)
+         throw new IllegalArgumentException("Pool size must be at least 1, but was [" + poolSize + "]");
+      this.poolSize = poolSize;
+   }
 
-      Context context = Context.enter();
+   /**
+    * Compile the given LESS source to CSS. If the current thread has already entered a Rhino {@link Context}, that
+    * context is used, and global variables are only kept apart from the shared scope if it supports
+    * {@link Context#FEATURE_DYNAMIC_SCOPE}.
+    */
+   public String process(String less)
+   {
+      // a thread that already uses Rhino keeps its own context
+      boolean pooled = Context.getCurrentContext() == null;
+      Context context = pooled ? acquireContext() : Context.enter();
 
       try {
 
-         context.setOptimizationLevel(-1);
-         context.setLanguageVersion(Context.VERSION_1_8);
-
-         Scriptable scope = context.initStandardObjects();
+         ScriptableObject shared = getSharedScope(context);
 
-         String script = new StringBuilder(baseScript)
-                  .append("lessToCss('")
-                  .append(escape(less))
-                  .append("');")
-                  .toString();
+         // per-call global scope, looked up instead of the shared scope by dynamic scoping
+         Scriptable scope = context.newObject(shared);
+         scope.setPrototype(shared);
+         scope.setParentScope(null);
 
-         Object result = context.evaluateString(scope, script, this.getClass().getSimpleName(), 1, null);
+         Function lessToCss = (Function) ScriptableObject.getProperty(shared, "lessToCss");
+         Object result = lessToCss.call(context, scope, scope, new Object[] { less });
 
-         if (result != null) {
-            return result.toString();
+         if (result != null && !(result instanceof Undefined)) {
+            return Context.toString(result);
          }
 
       }
       finally {
          Context.exit();
+         if (pooled) {
+            contexts.offer(context);
+         }
       }
       return null;
 
    }
 
+   /**
+    * Take a context from the pool, creating one if the pool is not full, and enter it on the current thread.
+    */
+   private Context acquireContext()
+   {
+      Context context = contexts.poll();
+      if (context == null) {
+         if (createdContexts.incrementAndGet() <= poolSize) {
+            context = contextFactory.enterContext();
+            configure(context);
+            return context;
+         }
+         createdContexts.decrementAndGet();
+
+         try {
+            context = contexts.take();
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a LESS compiler", e);
+         }
+      }
+      return contextFactory.enterContext(context);
+   }
+
+   private static void configure(Context context)
+   {
+      context.setLanguageVersion(Context.VERSION_1_8);
+      context.setOptimizationLevel(9);
+   }
+
+   /**
+    * Return the scope containing the LESS compiler, evaluating the base scripts on first use.
+    */
+   private static ScriptableObject getSharedScope(Context context)
+   {
+      ScriptableObject result = sharedScope;
+      if (result == null) {
+         synchronized (LessEngine.class) {
+            result = sharedScope;
+            if (result == null) {
+               result = createSharedScope(context);
+               sharedScope = result;
+            }
+         }
+      }
+      return result;
+   }
+
+   private static ScriptableObject createSharedScope(Context context)
+   {
+      int languageVersion = context.getLanguageVersion();
+      int optimizationLevel = context.getOptimizationLevel();
+      try {
+         context.setLanguageVersion(Context.VERSION_1_8);
+
+         ScriptableObject scope = context.initStandardObjects();
+         evaluate(context, scope, "print", "function print(s) {}"); // required by env.rhino
+         for (String resource : BASE_SCRIPTS) {
+            evaluate(context, scope, resource, getClasspathResourceAsString(resource));
+         }
+
+         scope.sealObject();
+         return scope;
+      }
+      finally {
+         context.setLanguageVersion(languageVersion);
+         context.setOptimizationLevel(optimizationLevel);
+      }
+   }
+
+   /**
+    * Compile a script to bytecode and run it. Scripts too large to be compiled, like env.rhino, are interpreted.
+    */
+   private static void evaluate(Context context, Scriptable scope, String name, String source)
+   {
+      Script script;
+      try {
+         context.setOptimizationLevel(9);
+         script = context.compileString(source, name, 1, null);
+      }
+      catch (EvaluatorException e) {
+         context.setOptimizationLevel(-1);
+         script = context.compileString(source, name, 1, null);
+      }
+      script.exec(context, scope);
+   }
+
    private static String getClasspathResourceAsString(String resource)
    {
       try {
-         InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(resource);
+         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+         InputStream inputStream = classLoader == null ? null : classLoader.getResourceAsStream(resource);
+         if (inputStream == null) {
+            inputStream = LessEngine.class.getClassLoader().getResourceAsStream(resource);
+         }
          if (inputStream == null) {
             throw new IllegalStateException("Could not find resource on the classpath: " + resource);
          }
@@ -84,9 +220,19 @@ public class LessEngine
       }
    }
 
-   private String escape(String s)
+   /**
+    * Creates contexts that resolve global variables in the scope of the outermost call rather than the scope a function
+    * was defined in
+    */
+   private static class DynamicScopeContextFactory extends ContextFactory
    {
-      return s.replace("\r", "").replace("\n", "\\n");
+      @Override
+      protected boolean hasFeature(Context context, int featureIndex)
+      {
+         if (featureIndex == Context.FEATURE_DYNAMIC_SCOPE)
+            return true;
+         return super.hasFeature(context, featureIndex);
+      }
    }
 
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.less;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletContext;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ocpsoft.rewrite.less.LessCache.CompiledCss;
+
+public class LessCacheTest
+{
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private CountingLessEngine engine;
+   private LessCache cache;
+   private File file;
+   private URL url;
+
+   @Before
+   public void before() throws Exception
+   {
+      engine = new CountingLessEngine();
+      cache = new LessCache(engine);
+      file = folder.newFile("style.less");
+      url = file.toURI().toURL();
+   }
+
+   @Test
+   public void testCompilesOnlyOnce() throws Exception
+   {
+      write(".class { width: 1 + 1 }", 10000);
+
+      CompiledCss first = cache.get("/style.less", url);
+      CompiledCss second = cache.get("/style.less", url);
+      assertSame(first, second);
+      assertEquals(0, engine.invocations);
+
+      assertEquals(".class {\n  width: 2;\n}\n", new String(first.getCss(), "UTF-8"));
+      assertEquals(".class {\n  width: 2;\n}\n", new String(second.getCss(), "UTF-8"));
+      assertEquals(1, engine.invocations);
+   }
+
+   @Test
+   public void testRecompilesChangedSource() throws Exception
+   {
+      write(".class { width: 1 + 1 }", 10000);
+      CompiledCss first = cache.get("/style.less", url);
+      first.getCss();
+
+      write(".class { width: 1 + 2 }", 20000);
+      CompiledCss second = cache.get("/style.less", url);
+      assertFalse(first.getETag(false).equals(second.getETag(false)));
+      assertEquals(".class {\n  width: 3;\n}\n", new String(second.getCss(), "UTF-8"));
+      assertEquals(2, engine.invocations);
+   }
+
+   @Test
+   public void testKeepsSourceWithNewModificationTime() throws Exception
+   {
+      write(".class { width: 1 + 1 }", 10000);
+      CompiledCss first = cache.get("/style.less", url);
+      first.getCss();
+
+      write(".class { width: 1 + 1 }", 20000);
+      CompiledCss second = cache.get("/style.less", url);
+      assertSame(first, second);
+      assertEquals(20000, second.getLastModified());
+      second.getCss();
+      assertEquals(1, engine.invocations);
+   }
+
+   @Test
+   public void testGzippedCss() throws Exception
+   {
+      write(".class { width: 1 + 1 }", 10000);
+      CompiledCss css = cache.get("/style.less", url);
+
+      byte[] gzipped = css.getGzippedCss();
+      assertEquals(new String(css.getCss(), "UTF-8"),
+               IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(gzipped)), "UTF-8"));
+      assertSame(gzipped, css.getGzippedCss());
+      assertFalse(css.getETag(true).equals(css.getETag(false)));
+   }
+
+   @Test
+   public void testPrecompile() throws Exception
+   {
+      write(".class { width: 1 + 1 }", 10000);
+      File broken = folder.newFile("broken.less");
+      FileUtils.writeStringToFile(broken, ".class { width: ");
+
+      ServletContext context = mock(ServletContext.class);
+      when(context.getResourcePaths("/")).thenReturn(
+               new HashSet<String>(Arrays.asList("/css/", "/WEB-INF/", "/index.html")));
+      when(context.getResourcePaths("/css/")).thenReturn(
+               new HashSet<String>(Arrays.asList("/css/style.less", "/css/broken.less")));
+      when(context.getResource("/css/style.less")).thenReturn(url);
+      when(context.getResource("/css/broken.less")).thenReturn(broken.toURI().toURL());
+
+      List<Future<?>> tasks = cache.precompile(context, ".less");
+      assertEquals(2, tasks.size());
+      for (Future<?> task : tasks) {
+         // failures are only logged
+         task.get();
+      }
+      verify(context, never()).getResourcePaths("/WEB-INF/");
+
+      // served from the cache
+      int invocations = engine.invocations;
+      assertEquals(".class {\n  width: 2;\n}\n", new String(cache.get("/css/style.less", url).getCss(), "UTF-8"));
+      assertEquals(invocations, engine.invocations);
+
+      // only once per suffix
+      assertTrue(cache.precompile(context, ".less").isEmpty());
+   }
+
+   @Test
+   public void testConcurrentCallersShareCache() throws Exception
+   {
+      final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+      final ServletContext context = mock(ServletContext.class);
+      when(context.getAttribute(anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      doAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation)
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(context).setAttribute(anyString(), any());
+
+      final CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+         List<Future<LessCache>> results = new ArrayList<Future<LessCache>>();
+         for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(new Callable<LessCache>() {
+               @Override
+               public LessCache call() throws Exception
+               {
+                  start.await();
+                  return LessCache.getFor(context);
+               }
+            }));
+         }
+         start.countDown();
+
+         LessCache first = results.get(0).get();
+         for (Future<LessCache> result : results) {
+            assertSame(first, result.get());
+         }
+         assertSame(first, attributes.get(LessCache.class.getName()));
+      }
+      finally {
+         executor.shutdown();
+      }
+   }
+
+   private void write(String less, long lastModified) throws Exception
+   {
+      FileUtils.writeStringToFile(file, less);
+      file.setLastModified(lastModified);
+   }
+
+   private static class CountingLessEngine extends LessEngine
+   {
+      private volatile int invocations;
+
+      @Override
+      public String process(String less)
+      {
+         invocations++;
+         return super.process(less);
+      }
+   }
+
+}
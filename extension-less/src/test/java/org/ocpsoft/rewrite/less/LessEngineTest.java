@@ -16,8 +16,17 @@
 package org.ocpsoft.rewrite.less;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
+import org.mozilla.javascript.Context;
 
 public class LessEngineTest
 {
@@ -46,6 +55,52 @@ public class LessEngineTest
       assertSameCSS(".bordered{ border: 1px solid red; }\n.navigation{ border: 1px solid red; }\n", output);
    }
 
+   @Test
+   public void testConcurrentProcessing() throws Exception
+   {
+      final LessEngine engine = new LessEngine(2);
+      ExecutorService executor = Executors.newFixedThreadPool(6);
+      try {
+         List<Future<String>> results = new ArrayList<Future<String>>();
+         for (int i = 0; i < 12; i++) {
+            final int width = i;
+            results.add(executor.submit(new Callable<String>() {
+               @Override
+               public String call() throws Exception
+               {
+                  return engine.process("@w: " + width + "px;\n.c { width: @w + 1; }");
+               }
+            }));
+         }
+         for (int i = 0; i < results.size(); i++) {
+            assertSameCSS(".c { width: " + (i + 1) + "px; }", results.get(i).get());
+         }
+      }
+      finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testProcessingInsideExistingContext()
+   {
+      Context.enter();
+      try {
+         assertSameCSS(".class { width: 2; }", new LessEngine().process(".class { width: 1 + 1 }"));
+         assertSame(Context.getCurrentContext(), Context.enter());
+         Context.exit();
+      }
+      finally {
+         Context.exit();
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidPoolSize()
+   {
+      new LessEngine(0);
+   }
+
    private static void assertSameCSS(String expected, String actual)
    {
 
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.less;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+public class LessTest
+{
+
+   private static final String ETAG = "\"abc\"";
+
+   @Test
+   public void testIfNoneMatch()
+   {
+      assertTrue(Less.isNotModified(request("If-None-Match", ETAG), ETAG, 0));
+      assertTrue(Less.isNotModified(request("If-None-Match", "\"xyz\", W/\"abc\""), ETAG, 0));
+      assertTrue(Less.isNotModified(request("If-None-Match", "*"), ETAG, 0));
+      assertFalse(Less.isNotModified(request("If-None-Match", "\"xyz\""), ETAG, 0));
+   }
+
+   @Test
+   public void testIfModifiedSince()
+   {
+      HttpServletRequest request = mock(HttpServletRequest.class);
+      when(request.getDateHeader("If-Modified-Since")).thenReturn(10000L);
+      assertTrue(Less.isNotModified(request, ETAG, 10500));
+      assertFalse(Less.isNotModified(request, ETAG, 11000));
+
+      // unknown modification time
+      assertFalse(Less.isNotModified(request, ETAG, 0));
+
+      // the entity tag takes precedence
+      when(request.getHeader("If-None-Match")).thenReturn("\"xyz\"");
+      assertFalse(Less.isNotModified(request, ETAG, 10500));
+   }
+
+   @Test
+   public void testUnconditionalRequest()
+   {
+      HttpServletRequest request = mock(HttpServletRequest.class);
+      when(request.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+      assertFalse(Less.isNotModified(request, ETAG, 10000));
+   }
+
+   @Test
+   public void testAcceptsGzip()
+   {
+      assertTrue(Less.acceptsGzip(request("Accept-Encoding", "gzip, deflate")));
+      assertTrue(Less.acceptsGzip(request("Accept-Encoding", "deflate, GZIP;q=0.5")));
+      assertFalse(Less.acceptsGzip(request("Accept-Encoding", "deflate, gzip;q=0")));
+      assertFalse(Less.acceptsGzip(request("Accept-Encoding", "identity")));
+      assertFalse(Less.acceptsGzip(mock(HttpServletRequest.class)));
+   }
+
+   private static HttpServletRequest request(String header, String value)
+   {
+      HttpServletRequest request = mock(HttpServletRequest.class);
+      when(request.getHeader(header)).thenReturn(value);
+      return request;
+   }
+
+}
@@ -50,6 +50,8 @@ import org.ocpsoft.rewrite.servlet.spi.RewriteLifecycleListener;
 import org.ocpsoft.rewrite.spi.InvocationResultHandler;
 import org.ocpsoft.rewrite.spi.RewriteProvider;
 import org.ocpsoft.rewrite.util.ServiceLogger;
+import org.ocpsoft.rewrite.util.Services;
+import org.ocpsoft.rewrite.util.ValueHolderUtil;
 
 /**
  * {@link Filter} responsible for handling all inbound {@link org.ocpsoft.rewrite.event.Rewrite} events.
@@ -102,15 +104,16 @@ public class RewriteFilter implements Filter
       ServiceLogger.logLoadedServices(log, RequestParameterProvider.class,
                Iterators.asUniqueList(ServiceLoader.load(RequestParameterProvider.class)));
 
-      ServiceLogger.logLoadedServices(log, ExpressionLanguageProvider.class,
-               Iterators.asUniqueList(ServiceLoader.load(ExpressionLanguageProvider.class)));
-
-      ServiceLogger.logLoadedServices(log, InvocationResultHandler.class,
-               Iterators.asUniqueList(ServiceLoader.load(InvocationResultHandler.class)));
-
       ServiceLogger.logLoadedServices(log, ServiceEnricher.class,
                Iterators.asUniqueList(ServiceLoader.load(ServiceEnricher.class)));
 
+      /*
+       * Populate the shared service registry with services used on the request path, so that they are logged and
+       * loaded once at boot time rather than on first use.
+       */
+      Services.load(ExpressionLanguageProvider.class);
+      Services.load(InvocationResultHandler.class);
+
       /*
        * Load ConfigurationProviders and ConfigurationCacheProviders here solely so that we
        * can see registered implementations at boot time.
@@ -275,6 +278,14 @@ public class RewriteFilter implements Filter
    public void destroy()
    {
       log.info("RewriteFilter shutting down...");
+
+      /*
+       * The shared service registry and value holder caches may be loaded by a parent class-loader, so release the
+       * instances of this application to allow its class-loader to be collected after an undeploy.
+       */
+      ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      Services.reset(loader);
+      ValueHolderUtil.reset(loader);
       log.info("RewriteFilter deactivated.");
    }
 
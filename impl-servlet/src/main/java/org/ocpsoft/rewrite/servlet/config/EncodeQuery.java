@@ -27,20 +27,35 @@ import org.ocpsoft.rewrite.servlet.config.encodequery.Base64EncodingStrategy;
 import org.ocpsoft.rewrite.servlet.config.encodequery.ChecksumStrategy;
 import org.ocpsoft.rewrite.servlet.config.encodequery.EncodingStrategy;
 import org.ocpsoft.rewrite.servlet.config.encodequery.HashCodeChecksumStrategy;
+import org.ocpsoft.rewrite.servlet.config.encodequery.HmacChecksumStrategy;
+import org.ocpsoft.rewrite.servlet.config.encodequery.UrlSafeBase64EncodingStrategy;
 import org.ocpsoft.rewrite.servlet.http.event.HttpInboundServletRewrite;
 import org.ocpsoft.rewrite.servlet.http.event.HttpOutboundServletRewrite;
 import org.ocpsoft.rewrite.servlet.util.QueryStringBuilder;
 import org.ocpsoft.rewrite.servlet.util.URLBuilder;
+import org.ocpsoft.rewrite.util.BoundedCache;
 
 /**
  * Encodes any or many query-parameters into a single parameter using the given {@link ChecksumStrategy} and
- * {@link EncodingStrategy}.
+ * {@link EncodingStrategy}. By default, checksums are computed with the {@link HashCodeChecksumStrategy} and tokens
+ * are encoded with the {@link Base64EncodingStrategy}. Tokens that must not be forged should use an
+ * {@link HmacChecksumStrategy} with an application specific key, and may use the
+ * {@link UrlSafeBase64EncodingStrategy} to produce shorter tokens.
+ * <p>
+ * Encoded outbound URLs and decoded inbound tokens are held in bounded caches, since the same links are typically
+ * rendered many times. Strategies that do not always produce the same output for the same input should be used with
+ * {@link #withCacheSize(int)} set to 0.
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  * 
  */
 public class EncodeQuery implements Operation
 {
+   /**
+    * The default number of entries held in each of the encode and decode caches.
+    */
+   public static final int DEFAULT_CACHE_SIZE = 1024;
+
    private String tokenName;
    private ChecksumStrategy checksumStrategy = new HashCodeChecksumStrategy();
    private EncodingStrategy encodingStrategy = new Base64EncodingStrategy();
@@ -48,6 +63,8 @@ public class EncodeQuery implements Operation
    private final List<String> excludedParams = new ArrayList<String>();
    private boolean inboundCorrection = true;
    private Operation onfailure;
+   private BoundedCache<String, String> encodeCache = new BoundedCache<String, String>(DEFAULT_CACHE_SIZE);
+   private BoundedCache<String, String> decodeCache = new BoundedCache<String, String>(DEFAULT_CACHE_SIZE);
 
    private EncodeQuery(final String[] params)
    {
@@ -80,6 +97,7 @@ public class EncodeQuery implements Operation
    public EncodeQuery withEncodingStrategy(final EncodingStrategy strategy)
    {
       this.encodingStrategy = strategy;
+      clearCaches();
       return this;
    }
 
@@ -89,6 +107,7 @@ public class EncodeQuery implements Operation
    public EncodeQuery withChecksumStrategy(final ChecksumStrategy strategy)
    {
       this.checksumStrategy = strategy;
+      clearCaches();
       return this;
    }
 
@@ -123,9 +142,49 @@ public class EncodeQuery implements Operation
    public EncodeQuery to(final String param)
    {
       this.tokenName = param;
+      clearCaches();
+      return this;
+   }
+
+   /**
+    * Hold at most the given number of entries in each of the encode and decode caches. A size of 0 disables caching.
+    */
+   public EncodeQuery withCacheSize(final int size)
+   {
+      if (size < 0)
+         throw new IllegalArgumentException("Cache size must not be negative.");
+
+      encodeCache = size == 0 ? null : new BoundedCache<String, String>(size);
+      decodeCache = size == 0 ? null : new BoundedCache<String, String>(size);
       return this;
    }
 
+   /**
+    * Return the cache of outbound URLs to their encoded form, for example to inspect its hit rate; <code>null</code>
+    * if caching is disabled.
+    */
+   public BoundedCache<String, String> getEncodeCache()
+   {
+      return encodeCache;
+   }
+
+   /**
+    * Return the cache of inbound tokens to their decoded and verified query-strings, for example to inspect its hit
+    * rate; <code>null</code> if caching is disabled.
+    */
+   public BoundedCache<String, String> getDecodeCache()
+   {
+      return decodeCache;
+   }
+
+   private void clearCaches()
+   {
+      if (encodeCache != null)
+         encodeCache.clear();
+      if (decodeCache != null)
+         decodeCache.clear();
+   }
+
    @Override
    public void perform(final Rewrite event, final EvaluationContext context)
    {
@@ -139,13 +198,12 @@ public class EncodeQuery implements Operation
          String token = query.decode().getParameter(tokenName);
          if (token != null)
          {
-            String decoded = encodingStrategy.decode(token);
+            String decoded = decodeVerified(token);
 
-            if (checksumStrategy.checksumValid(decoded))
+            if (decoded != null)
             {
-               decoded = checksumStrategy.removeChecksum(decoded);
                query.removeParameter(tokenName);
-               String newUrl = in.getRequestPath() + "?" + decoded;
+               String newUrl = in.getRequestPath() + (decoded.startsWith("?") ? "" : "?") + decoded;
                in.forward(newUrl);
             }
             else if (onfailure != null)
@@ -166,24 +224,76 @@ public class EncodeQuery implements Operation
          HttpOutboundServletRewrite out = (HttpOutboundServletRewrite) event;
 
          String outboundURL = out.getOutboundURL();
-         URLBuilder url = URLBuilder.createFrom(outboundURL);
-
-         url.getQueryStringBuilder().removeParameter(tokenName);
 
          if (outboundURL.contains("?") && (outboundURL.startsWith(out.getContextPath()) || outboundURL.startsWith("/")))
          {
-            if (!url.getQueryStringBuilder().isEmpty())
+            BoundedCache<String, String> cache = encodeCache;
+            String encodedURL = cache == null ? null : cache.get(outboundURL);
+            if (encodedURL == null)
             {
-               String encoded = checksumStrategy.embedChecksum(url.getQueryStringBuilder().toQueryString());
-               encoded = encodingStrategy.encode(encoded);
-
-               out.setOutboundURL(url.toPath() + "?" + tokenName + "=" + encoded);
+               encodedURL = encodeURL(outboundURL);
+               if (cache != null)
+                  cache.put(outboundURL, encodedURL);
             }
+
+            if (!encodedURL.equals(outboundURL))
+               out.setOutboundURL(encodedURL);
          }
 
       }
    }
 
+   /**
+    * Return the given URL with its query-string replaced by the encoded token, or the given URL unchanged if it has no
+    * query-parameters to encode.
+    */
+   private String encodeURL(final String outboundURL)
+   {
+      URLBuilder url = URLBuilder.createFrom(outboundURL);
+      url.getQueryStringBuilder().removeParameter(tokenName);
+
+      if (url.getQueryStringBuilder().isEmpty())
+         return outboundURL;
+
+      String encoded = checksumStrategy.embedChecksum(url.getQueryStringBuilder().toQueryString());
+      encoded = encodingStrategy.encode(encoded);
+      return url.toPath() + "?" + tokenName + "=" + encoded;
+   }
+
+   /**
+    * Return the query-string held by the given token, or <code>null</code> if the token cannot be decoded or fails its
+    * checksum. Only successfully verified tokens are cached.
+    */
+   private String decodeVerified(final String token)
+   {
+      BoundedCache<String, String> cache = decodeCache;
+      String result = cache == null ? null : cache.get(token);
+      if (result == null)
+      {
+         String decoded = decode(token);
+         if ((decoded != null) && checksumStrategy.checksumValid(decoded))
+         {
+            result = checksumStrategy.removeChecksum(decoded);
+            if (cache != null)
+               cache.put(token, result);
+         }
+      }
+      return result;
+   }
+
+   private String decode(final String token)
+   {
+      try {
+         return encodingStrategy.decode(token);
+      }
+      catch (RuntimeException e) {
+         /*
+          * A token that cannot be decoded has been tampered with, and is handled as a checksum failure.
+          */
+         return null;
+      }
+   }
+
    @Override
    public String toString()
    {
@@ -75,6 +75,7 @@ public abstract class QueryString extends HttpCondition implements Bindable<Quer
    public static QueryString matches(final String pattern)
    {
       Assert.notNull(pattern, "URL pattern must not be null.");
+      final Pattern compiled = Pattern.compile(pattern);
 
       return new QueryString() {
          @Override
@@ -84,9 +85,9 @@ public abstract class QueryString extends HttpCondition implements Bindable<Quer
             if (event instanceof InboundRewrite)
                queryString = event.getRequestQueryString();
             else if (event instanceof HttpOutboundServletRewrite)
-               queryString = QueryStringBuilder.createFrom(event.getURL()).toQueryString();
+               queryString = RequestQueryString.getFor(event).toQueryString();
 
-            if (Pattern.compile(pattern).matcher(queryString == null ? "" : queryString).matches())
+            if (compiled.matcher(queryString == null ? "" : queryString).matches())
             {
                List<String> values = new ArrayList<String>();
                values.add(queryString);
@@ -110,29 +111,29 @@ public abstract class QueryString extends HttpCondition implements Bindable<Quer
    public static QueryString parameterExists(final String nameRegex)
    {
       Assert.notNull(nameRegex, "Parameter name pattern must not be null.");
+      final String literal = isLiteral(nameRegex) ? nameRegex : null;
+      final Pattern pattern = literal == null ? Pattern.compile(nameRegex) : null;
 
       return new QueryString() {
          @Override
          @SuppressWarnings({ "rawtypes" })
          public boolean evaluateHttp(final HttpServletRewrite event, final EvaluationContext context)
          {
-            Pattern pattern = Pattern.compile(nameRegex);
-
-            QueryStringBuilder queryString = null;
-
-            queryString = QueryStringBuilder.createFrom(event.getURL());
+            QueryStringBuilder queryString = RequestQueryString.getFor(event);
 
             List<String> values = new ArrayList<String>();
             Map<DefaultBindable, String[]> map = new LinkedHashMap<DefaultBindable, String[]>();
-            for (String name : queryString.getParameterNames()) {
-               if (pattern.matcher(name).matches())
-               {
-                  String[] temp = queryString.getParameterValues(name);
-                  DefaultBindable tempBindable = new DefaultBindable();
-                  tempBindable.bindsTo(Evaluation.property(name));
-                  map.put(tempBindable, temp);
-
-                  values.addAll(Arrays.asList(temp));
+            if (literal != null)
+            {
+               String[] parameterValues = queryString.getParameterValues(literal);
+               if (parameterValues != null)
+                  addParameter(map, values, literal, parameterValues);
+            }
+            else
+            {
+               for (String name : queryString.getParameterNames()) {
+                  if (pattern.matcher(name).matches())
+                     addParameter(map, values, name, queryString.getParameterValues(name));
                }
             }
 
@@ -158,14 +159,14 @@ public abstract class QueryString extends HttpCondition implements Bindable<Quer
    public static QueryString valueExists(final String valueRegex)
    {
       Assert.notNull(valueRegex, "Parameter value pattern must not be null.");
+      final Pattern pattern = Pattern.compile(valueRegex);
 
       return new QueryString() {
          @Override
          @SuppressWarnings({ "rawtypes" })
          public boolean evaluateHttp(final HttpServletRewrite event, final EvaluationContext context)
          {
-            Pattern pattern = Pattern.compile(valueRegex);
-            QueryStringBuilder queryString = QueryStringBuilder.createFrom(event.getRequestQueryString());
+            QueryStringBuilder queryString = RequestQueryString.getFor(event);
 
             List<String> values = new ArrayList<String>();
             Map<DefaultBindable, String[]> map = new LinkedHashMap<DefaultBindable, String[]>();
@@ -176,7 +177,7 @@ public abstract class QueryString extends HttpCondition implements Bindable<Quer
                tempBindable.bindsTo(Evaluation.property(name));
                for (String value : paramValues) {
 
-                  if (pattern.matcher(value).matches())
+                  if ((value != null) && pattern.matcher(value).matches())
                   {
                      Maps.addArrayValue(map, tempBindable, value);
                      values.add(value);
@@ -194,4 +195,27 @@ public abstract class QueryString extends HttpCondition implements Bindable<Quer
       };
    }
 
-}
\ No newline at end of file
+   @SuppressWarnings({ "rawtypes" })
+   private static void addParameter(final Map<DefaultBindable, String[]> map, final List<String> values,
+            final String name, final String[] parameterValues)
+   {
+      DefaultBindable tempBindable = new DefaultBindable();
+      tempBindable.bindsTo(Evaluation.property(name));
+      map.put(tempBindable, parameterValues);
+
+      values.addAll(Arrays.asList(parameterValues));
+   }
+
+   /**
+    * Return true if the given pattern contains no regular expression metacharacters, and therefore matches only itself.
+    */
+   private static boolean isLiteral(final String pattern)
+   {
+      for (int i = 0; i < pattern.length(); i++) {
+         if ("\\[](){}.*+?^$|".indexOf(pattern.charAt(i)) >= 0)
+            return false;
+      }
+      return true;
+   }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.ocpsoft.rewrite.event.InboundRewrite;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+import org.ocpsoft.rewrite.servlet.util.QueryStringBuilder;
+
+/**
+ * Per-request memo of the parsed query-string, shared by all {@link QueryString} conditions evaluated during the same
+ * request. Inbound events parse the decoded request query-string; outbound events parse the query-string of the
+ * outbound URL. Each is parsed again only if its source changes, such as when the request is forwarded with a new
+ * query-string or a different URL is rewritten.
+ * <p>
+ * The returned {@link QueryStringBuilder} is shared, and must not be modified.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+final class RequestQueryString
+{
+   private static final String KEY = RequestQueryString.class.getName();
+
+   private String inboundSource;
+   private QueryStringBuilder inbound;
+   private String outboundSource;
+   private QueryStringBuilder outbound;
+
+   private RequestQueryString()
+   {}
+
+   /**
+    * Return the parsed query-string of the given event.
+    */
+   public static QueryStringBuilder getFor(final HttpServletRewrite event)
+   {
+      HttpServletRequest request = event.getRequest();
+      Object stored = request.getAttribute(KEY);
+
+      RequestQueryString memo;
+      if (stored instanceof RequestQueryString)
+      {
+         memo = (RequestQueryString) stored;
+      }
+      else
+      {
+         memo = new RequestQueryString();
+         request.setAttribute(KEY, memo);
+      }
+
+      if (event instanceof InboundRewrite)
+         return memo.getInbound(event);
+      return memo.getOutbound(event);
+   }
+
+   private QueryStringBuilder getInbound(final HttpServletRewrite event)
+   {
+      String source = event.getRequest().getQueryString();
+      if ((inbound == null) || !equal(source, inboundSource))
+      {
+         inbound = QueryStringBuilder.createFrom("?" + event.getRequestQueryString());
+         inboundSource = source;
+      }
+      return inbound;
+   }
+
+   private QueryStringBuilder getOutbound(final HttpServletRewrite event)
+   {
+      String source = event.getURL();
+      if ((outbound == null) || !equal(source, outboundSource))
+      {
+         outbound = (source == null) || (source.indexOf('?') < 0) ? QueryStringBuilder.createNew()
+                  : QueryStringBuilder.createFrom(source);
+         outboundSource = source;
+      }
+      return outbound;
+   }
+
+   private static boolean equal(final String left, final String right)
+   {
+      return left == null ? right == null : left.equals(right);
+   }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * Per-request memo of the User-Agent and Accept headers and their classification. Stored as a request attribute so
+ * that every {@link UserAgent} condition evaluated during the same request shares a single instance.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+final class RequestUserAgent
+{
+   private static final String KEY = RequestUserAgent.class.getName();
+   private static final int UNCLASSIFIED = -1;
+
+   private final String userAgent;
+   private final String httpAccept;
+   private int flags = UNCLASSIFIED;
+
+   private RequestUserAgent(final String userAgent, final String httpAccept)
+   {
+      this.userAgent = userAgent;
+      this.httpAccept = httpAccept;
+   }
+
+   /**
+    * Get the {@link RequestUserAgent} for the request of the given event, creating and storing it if this is the first
+    * {@link UserAgent} condition evaluated for the request.
+    */
+   public static RequestUserAgent getFor(final HttpServletRewrite event)
+   {
+      HttpServletRequest request = event.getRequest();
+      Object stored = request.getAttribute(KEY);
+      if (stored instanceof RequestUserAgent)
+         return (RequestUserAgent) stored;
+
+      RequestUserAgent result = new RequestUserAgent(request.getHeader("user-agent"), request.getHeader("Accept"));
+      request.setAttribute(KEY, result);
+      return result;
+   }
+
+   /**
+    * Return the User-Agent header of the request, or <code>null</code> if none was sent.
+    */
+   public String getUserAgent()
+   {
+      return userAgent;
+   }
+
+   /**
+    * Return the {@link UserAgentClassifier} flags of the request, classifying it on first access.
+    */
+   public int getFlags()
+   {
+      if (flags == UNCLASSIFIED)
+         flags = UserAgentClassifier.classify(userAgent, httpAccept);
+      return flags;
+   }
+}
@@ -18,6 +18,8 @@ package org.ocpsoft.rewrite.servlet.config;
 import java.net.MalformedURLException;
 import java.util.Map;
 
+import javax.servlet.ServletContext;
+
 import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.bind.Binding;
 import org.ocpsoft.rewrite.bind.Bindings;
@@ -31,6 +33,10 @@ import org.ocpsoft.rewrite.servlet.util.ParameterStore;
 /**
  * A {@link org.ocpsoft.rewrite.config.Condition} responsible for determining existence of resources within the web root
  * of the servlet container.
+ * <p>
+ * Results are cached per {@link javax.servlet.ServletContext}. Cached results of packaged deployments never expire,
+ * and those of exploded deployments expire after one second, unless configured otherwise using
+ * {@link #withCacheTTL(long)}.
  * 
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
@@ -40,6 +46,7 @@ public class Resource extends HttpCondition implements IResource
 
    private final ParameterizedPattern resource;
    private final ParameterStore<ResourceParameter> parameters = new ParameterStore<ResourceParameter>();
+   private long cacheTTL = ResourceCache.DEFAULT_TTL;
 
    private Resource(final String resource)
    {
@@ -57,7 +64,8 @@ public class Resource extends HttpCondition implements IResource
       {
          String file = resource.build(event, context, parameters.getParameters());
          try {
-            if (event.getRequest().getServletContext().getResource(file) != null)
+            ServletContext servletContext = event.getRequest().getServletContext();
+            if (ResourceCache.getFor(servletContext).exists(servletContext, file, cacheTTL))
             {
                Map<RegexCapture, String[]> parameters = resource.parse(event, context, file);
                for (RegexCapture capture : parameters.keySet()) {
@@ -83,6 +91,16 @@ public class Resource extends HttpCondition implements IResource
       return new Resource(resource);
    }
 
+   /**
+    * Cache the existence of resources for the given number of milliseconds. A negative value caches results until the
+    * application is undeployed, and 0 disables caching.
+    */
+   public Resource withCacheTTL(final long millis)
+   {
+      this.cacheTTL = millis < 0 ? ResourceCache.NO_EXPIRY : millis;
+      return this;
+   }
+
    @Override
    public ResourceParameter where(String param)
    {
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.net.MalformedURLException;
+
+import javax.servlet.ServletContext;
+
+import org.ocpsoft.rewrite.util.BoundedCache;
+
+/**
+ * Bounded cache of {@link ServletContext#getResource(String)} existence checks, shared by all {@link Resource} and
+ * {@link ServletMapping} conditions of a {@link ServletContext}, and stored as one of its attributes.
+ * <p>
+ * Entries of packaged deployments never expire, since their contents cannot change. Entries of exploded deployments,
+ * whose files may be added or removed at runtime, expire after {@link #DEFAULT_EXPLODED_TTL} milliseconds unless a
+ * different TTL is requested.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+final class ResourceCache
+{
+   /**
+    * Request the default TTL for the deployment type.
+    */
+   public static final long DEFAULT_TTL = -2;
+
+   /**
+    * Never expire cached entries.
+    */
+   public static final long NO_EXPIRY = -1;
+
+   /**
+    * Milliseconds after which entries of exploded deployments expire by default.
+    */
+   public static final long DEFAULT_EXPLODED_TTL = 1000;
+
+   private static final String KEY = ResourceCache.class.getName();
+   private static final int CACHE_SIZE = 4096;
+
+   private final BoundedCache<String, Entry> cache = new BoundedCache<String, Entry>(CACHE_SIZE);
+   private final long defaultTTL;
+
+   private static final class Entry
+   {
+      private final boolean exists;
+      private final long checked;
+
+      private Entry(final boolean exists, final long checked)
+      {
+         this.exists = exists;
+         this.checked = checked;
+      }
+   }
+
+   private ResourceCache(final ServletContext context)
+   {
+      this.defaultTTL = context.getRealPath("/") == null ? NO_EXPIRY : DEFAULT_EXPLODED_TTL;
+   }
+
+   /**
+    * Get the {@link ResourceCache} for the given {@link ServletContext}, creating it if necessary. Concurrent callers
+    * always get the same instance.
+    */
+   public static ResourceCache getFor(final ServletContext context)
+   {
+      Object stored = context.getAttribute(KEY);
+      if (stored instanceof ResourceCache)
+         return (ResourceCache) stored;
+
+      synchronized (ResourceCache.class)
+      {
+         stored = context.getAttribute(KEY);
+         if (stored instanceof ResourceCache)
+            return (ResourceCache) stored;
+
+         ResourceCache result = new ResourceCache(context);
+         context.setAttribute(KEY, result);
+         return result;
+      }
+   }
+
+   /**
+    * Return true if the given resource exists in the given {@link ServletContext}. Cached results are used until they
+    * are older than the given TTL in milliseconds, which may also be {@link #DEFAULT_TTL} or {@link #NO_EXPIRY}. A TTL
+    * of 0 bypasses the cache.
+    */
+   public boolean exists(final ServletContext context, final String path, final long ttl)
+            throws MalformedURLException
+   {
+      long maxAge = ttl == DEFAULT_TTL ? defaultTTL : ttl;
+      if (maxAge == 0)
+         return context.getResource(path) != null;
+
+      long now = maxAge == NO_EXPIRY ? 0 : System.currentTimeMillis();
+      Entry entry = cache.get(path);
+      if ((entry != null) && ((maxAge == NO_EXPIRY) || (now - entry.checked < maxAge)))
+         return entry.exists;
+
+      boolean exists = context.getResource(path) != null;
+      cache.put(path, new Entry(exists, now == 0 ? System.currentTimeMillis() : now));
+      return exists;
+   }
+
+   /**
+    * Return the underlying cache, for example to inspect its hit rate.
+    */
+   public BoundedCache<String, ?> getCache()
+   {
+      return cache;
+   }
+}
@@ -16,11 +16,9 @@
 package org.ocpsoft.rewrite.servlet.config;
 
 import java.net.MalformedURLException;
-import java.util.Collection;
-import java.util.Map.Entry;
 
 import javax.servlet.Servlet;
-import javax.servlet.ServletRegistration;
+import javax.servlet.ServletContext;
 
 import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.bind.Binding;
@@ -59,32 +57,11 @@ public class ServletMapping extends HttpCondition implements IServletMapping
       {
          String path = resource.build(event, context, parameters.getParameters());
          try {
+            ServletContext servletContext = event.getRequest().getServletContext();
+            if (ServletMappingMatcher.getFor(servletContext).matches(path))
+               return true;
 
-            for (Entry<String, ? extends ServletRegistration> entry : event.getRequest().getServletContext()
-                     .getServletRegistrations().entrySet())
-            {
-               ServletRegistration servlet = entry.getValue();
-               Collection<String> mappings = servlet.getMappings();
-
-               for (String mapping : mappings) {
-                  if (path.startsWith("/") && !mapping.startsWith("/"))
-                  {
-                     mapping = "/" + mapping;
-                  }
-
-                  if (mapping.contains("*"))
-                  {
-                     mapping = mapping.replaceAll("\\*", ".*");
-                  }
-
-                  if (path.matches(mapping))
-                  {
-                     return true;
-                  }
-               }
-            }
-
-            return event.getRequest().getServletContext().getResource(path) != null;
+            return ResourceCache.getFor(servletContext).exists(servletContext, path, ResourceCache.DEFAULT_TTL);
          }
          catch (MalformedURLException e) {
             log.debug("Invalid file format [{}]", path);
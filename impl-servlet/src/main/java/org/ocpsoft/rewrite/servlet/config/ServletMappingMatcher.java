@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRegistration;
+
+/**
+ * Matches paths against every {@link ServletRegistration} mapping of a {@link ServletContext} using a single
+ * precompiled expression. Registrations cannot change once the {@link ServletContext} has been initialized, so one
+ * instance is built per {@link ServletContext}, and stored as one of its attributes.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+final class ServletMappingMatcher
+{
+   private static final String KEY = ServletMappingMatcher.class.getName();
+
+   /**
+    * Matches paths that begin with '/'; mappings are prefixed with '/' where they are missing one.
+    */
+   private final Pattern absolute;
+
+   /**
+    * Matches all other paths, using mappings as registered.
+    */
+   private final Pattern relative;
+
+   private ServletMappingMatcher(final ServletContext context)
+   {
+      StringBuilder absolute = new StringBuilder();
+      StringBuilder relative = new StringBuilder();
+
+      for (ServletRegistration servlet : context.getServletRegistrations().values()) {
+         Collection<String> mappings = servlet.getMappings();
+         if (mappings == null)
+            continue;
+
+         for (String mapping : mappings) {
+            append(relative, mapping);
+            append(absolute, mapping.startsWith("/") ? mapping : "/" + mapping);
+         }
+      }
+
+      this.absolute = absolute.length() == 0 ? null : Pattern.compile(absolute.toString());
+      this.relative = relative.length() == 0 ? null : Pattern.compile(relative.toString());
+   }
+
+   /**
+    * Get the {@link ServletMappingMatcher} for the given {@link ServletContext}, building it if necessary. Concurrent
+    * callers always get the same instance.
+    */
+   public static ServletMappingMatcher getFor(final ServletContext context)
+   {
+      Object stored = context.getAttribute(KEY);
+      if (stored instanceof ServletMappingMatcher)
+         return (ServletMappingMatcher) stored;
+
+      synchronized (ServletMappingMatcher.class)
+      {
+         stored = context.getAttribute(KEY);
+         if (stored instanceof ServletMappingMatcher)
+            return (ServletMappingMatcher) stored;
+
+         ServletMappingMatcher result = new ServletMappingMatcher(context);
+         context.setAttribute(KEY, result);
+         return result;
+      }
+   }
+
+   /**
+    * Return true if the given path is handled by any mapping. A '*' in a mapping matches any sequence of characters;
+    * all other characters match only themselves.
+    */
+   public boolean matches(final String path)
+   {
+      Pattern pattern = path.startsWith("/") ? absolute : relative;
+      return (pattern != null) && pattern.matcher(path).matches();
+   }
+
+   private static void append(final StringBuilder builder, final String mapping)
+   {
+      if (builder.length() > 0)
+         builder.append('|');
+
+      builder.append("(?:");
+      int start = 0;
+      int star;
+      while ((star = mapping.indexOf('*', start)) >= 0)
+      {
+         if (star > start)
+            builder.append(Pattern.quote(mapping.substring(start, star)));
+         builder.append(".*");
+         start = star + 1;
+      }
+      if (start < mapping.length())
+         builder.append(Pattern.quote(mapping.substring(start)));
+      builder.append(')');
+   }
+}
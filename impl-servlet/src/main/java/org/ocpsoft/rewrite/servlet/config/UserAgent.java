@@ -28,6 +28,7 @@ import org.ocpsoft.rewrite.bind.RegexCapture;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 import org.ocpsoft.rewrite.servlet.util.ParameterStore;
+import org.ocpsoft.rewrite.util.BoundedCache;
 
 /**
  * A {@link org.ocpsoft.rewrite.config.Condition} that inspects the value of {@link HttpServletRequest#getScheme()}
@@ -70,6 +71,15 @@ public abstract class UserAgent extends HttpCondition
       return new ClassificationUserAgent(Classification.DESKTOP);
    }
 
+   /**
+    * Return the shared cache of User-Agent classifications used by {@link #isMobile()}, {@link #isTablet()} and
+    * {@link #isDesktop()}, for example to inspect its hit rate.
+    */
+   public static BoundedCache<String, Integer> getClassificationCache()
+   {
+      return UserAgentClassifier.getCache();
+   }
+
    private static enum Classification
    {
       MOBILE, TABLET, DESKTOP
@@ -88,18 +98,16 @@ public abstract class UserAgent extends HttpCondition
       @Override
       public boolean evaluateHttp(HttpServletRewrite event, EvaluationContext context)
       {
-         String userAgentStr = event.getRequest().getHeader("user-agent");
-         String httpAccept = event.getRequest().getHeader("Accept");
-         UserAgentUtil util = new UserAgentUtil(userAgentStr, httpAccept);
+         int flags = RequestUserAgent.getFor(event).getFlags();
 
          switch (type)
          {
          case DESKTOP:
-            return !util.isMobile();
+            return !UserAgentClassifier.is(flags, UserAgentClassifier.MOBILE);
          case MOBILE:
-            return util.isMobile();
+            return UserAgentClassifier.is(flags, UserAgentClassifier.MOBILE);
          case TABLET:
-            return util.isTablet();
+            return UserAgentClassifier.is(flags, UserAgentClassifier.TABLET);
          }
 
          return false;
@@ -124,19 +132,20 @@ public abstract class UserAgent extends HttpCondition
       @Override
       public boolean evaluateHttp(final HttpServletRewrite event, final EvaluationContext context)
       {
-         String agent = event.getRequest().getHeader("user-agent");;
-
-         if (agent != null && expression.matches(event, context, agent))
-         {
-            Map<RegexCapture, String[]> parameters = expression.parse(event, context, agent);
-
-            for (RegexCapture capture : parameters.keySet()) {
-               if (!Bindings.enqueueSubmission(event, context, where(capture.getName()), parameters.get(capture)))
-                  return false;
-            }
-            return true;
+         /*
+          * Only the header is memoized per request, the match depends on the constraints and transforms of the
+          * parameters, which may depend on the event and context.
+          */
+         String agent = RequestUserAgent.getFor(event).getUserAgent();
+         if (agent == null || !expression.matches(event, context, agent))
+            return false;
+
+         Map<RegexCapture, String[]> parameters = expression.parse(event, context, agent);
+         for (RegexCapture capture : parameters.keySet()) {
+            if (!Bindings.enqueueSubmission(event, context, where(capture.getName()), parameters.get(capture)))
+               return false;
          }
-         return false;
+         return true;
       }
 
       @Override
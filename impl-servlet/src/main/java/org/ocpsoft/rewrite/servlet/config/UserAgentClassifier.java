@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import org.ocpsoft.rewrite.util.BoundedCache;
+
+/**
+ * Classifies User-Agent and Accept header pairs into a compact bit set of device flags. Results are held in a shared,
+ * size-bounded cache, since real traffic contains relatively few distinct User-Agent strings.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+final class UserAgentClassifier
+{
+   public static final int MOBILE = 1;
+   public static final int TABLET = 1 << 1;
+   public static final int IPHONE = 1 << 2;
+   public static final int TIER_TABLET = 1 << 3;
+   public static final int TIER_IPHONE = 1 << 4;
+   public static final int TIER_RICH_CSS = 1 << 5;
+   public static final int TIER_GENERIC_MOBILE = 1 << 6;
+
+   private static final int CACHE_SIZE = 1024;
+
+   /**
+    * Header pairs longer than this are classified without being cached, so that arbitrarily large headers cannot
+    * occupy the cache.
+    */
+   private static final int MAX_CACHED_KEY_LENGTH = 1024;
+
+   private static final BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(CACHE_SIZE);
+
+   private UserAgentClassifier()
+   {}
+
+   /**
+    * Return the classification flags for the given User-Agent and Accept header values, either of which may be
+    * <code>null</code>.
+    */
+   public static int classify(final String userAgent, final String httpAccept)
+   {
+      String key = (userAgent == null ? "" : userAgent) + '\n' + (httpAccept == null ? "" : httpAccept);
+      if (key.length() > MAX_CACHED_KEY_LENGTH)
+         return UserAgentScanner.classify(userAgent, httpAccept);
+
+      Integer result = cache.get(key);
+      if (result == null)
+      {
+         result = cache.put(key, UserAgentScanner.classify(userAgent, httpAccept));
+      }
+      return result;
+   }
+
+   /**
+    * Return true if the given flags contain all of the given classification bits.
+    */
+   public static boolean is(final int flags, final int classification)
+   {
+      return (flags & classification) == classification;
+   }
+
+   /**
+    * Return the shared classification cache.
+    */
+   public static BoundedCache<String, Integer> getCache()
+   {
+      return cache;
+   }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Single-pass equivalent of {@link UserAgentUtil}. All device tokens used by the {@link UserAgentClassifier} flags are
+ * compiled into one Aho-Corasick automaton, so that each header is scanned exactly once regardless of the number of
+ * tokens. The detection rules of {@link UserAgentUtil} are then evaluated against the resulting set of token hits.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+final class UserAgentScanner
+{
+   private static final List<String> tokens = new ArrayList<String>();
+
+   private static final int WEBKIT = token(UserAgentUtil.engineWebKit);
+   private static final int IPHONE = token(UserAgentUtil.deviceIphone);
+   private static final int IPOD = token(UserAgentUtil.deviceIpod);
+   private static final int IPAD = token(UserAgentUtil.deviceIpad);
+   private static final int MAC_PPC = token(UserAgentUtil.deviceMacPpc);
+   private static final int ANDROID = token(UserAgentUtil.deviceAndroid);
+   private static final int XOOM = token(UserAgentUtil.deviceXoom);
+   private static final int SYMBIAN = token(UserAgentUtil.deviceSymbian);
+   private static final int S60 = token(UserAgentUtil.deviceS60);
+   private static final int S70 = token(UserAgentUtil.deviceS70);
+   private static final int S80 = token(UserAgentUtil.deviceS80);
+   private static final int S90 = token(UserAgentUtil.deviceS90);
+   private static final int WIN_PHONE7 = token(UserAgentUtil.deviceWinPhone7);
+   private static final int WIN_MOB = token(UserAgentUtil.deviceWinMob);
+   private static final int WINDOWS = token(UserAgentUtil.deviceWindows);
+   private static final int IE_MOB = token(UserAgentUtil.deviceIeMob);
+   private static final int PPC = token(UserAgentUtil.devicePpc);
+   private static final int PIE = token(UserAgentUtil.enginePie);
+   private static final int BB = token(UserAgentUtil.deviceBB);
+   private static final int VND_RIM = token(UserAgentUtil.vndRIM);
+   private static final int BB_STORM = token(UserAgentUtil.deviceBBStorm);
+   private static final int BB_BOLD = token(UserAgentUtil.deviceBBBold);
+   private static final int BB_TOUR = token(UserAgentUtil.deviceBBTour);
+   private static final int BB_CURVE = token(UserAgentUtil.deviceBBCurve);
+   private static final int BB_TORCH = token(UserAgentUtil.deviceBBTorch);
+   private static final int BB_PLAYBOOK = token(UserAgentUtil.deviceBBPlaybook);
+   private static final int PALM = token(UserAgentUtil.devicePalm);
+   private static final int WEBOS = token(UserAgentUtil.deviceWebOS);
+   private static final int BLAZER = token(UserAgentUtil.engineBlazer);
+   private static final int XIINO = token(UserAgentUtil.engineXiino);
+   private static final int NUVIFONE = token(UserAgentUtil.deviceNuvifone);
+   private static final int VND_WAP = token(UserAgentUtil.vndwap);
+   private static final int WML = token(UserAgentUtil.wml);
+   private static final int BREW = token(UserAgentUtil.deviceBrew);
+   private static final int DANGER = token(UserAgentUtil.deviceDanger);
+   private static final int HIPTOP = token(UserAgentUtil.deviceHiptop);
+   private static final int ARCHOS = token(UserAgentUtil.deviceArchos);
+   private static final int OPERA = token(UserAgentUtil.engineOpera);
+   private static final int NETFRONT = token(UserAgentUtil.engineNetfront);
+   private static final int UP_BROWSER = token(UserAgentUtil.engineUpBrowser);
+   private static final int OPEN_WEB = token(UserAgentUtil.engineOpenWeb);
+   private static final int MIDP = token(UserAgentUtil.deviceMidp);
+   private static final int TELECA_Q = token(UserAgentUtil.engineTelecaQ);
+   private static final int PDA = token(UserAgentUtil.devicePda);
+   private static final int MINI = token(UserAgentUtil.mini);
+   private static final int MOBILE = token(UserAgentUtil.mobile);
+   private static final int MOBI = token(UserAgentUtil.mobi);
+   private static final int MAEMO = token(UserAgentUtil.maemo);
+   private static final int MAEMO_TABLET = token(UserAgentUtil.maemoTablet);
+   private static final int LINUX = token(UserAgentUtil.linux);
+   private static final int HTC = token(UserAgentUtil.manuHtc);
+   private static final int UPDATE = token(UserAgentUtil.disUpdate);
+
+   /*
+    * Must be initialized after all tokens have been registered.
+    */
+   private static final Automaton automaton = new Automaton(tokens);
+
+   private UserAgentScanner()
+   {}
+
+   private static int token(final String token)
+   {
+      tokens.add(token);
+      return tokens.size() - 1;
+   }
+
+   /**
+    * Return the {@link UserAgentClassifier} flags for the given User-Agent and Accept header values, either of which
+    * may be <code>null</code>. The result is identical to that derived from {@link UserAgentUtil}.
+    */
+   public static int classify(final String userAgent, final String httpAccept)
+   {
+      Hits hits = new Hits(automaton.scan(userAgent), automaton.scan(httpAccept));
+
+      int result = 0;
+      boolean tablet = hits.isTablet();
+      boolean handset = hits.isHandset();
+      if (handset || tablet)
+         result |= UserAgentClassifier.MOBILE;
+      if (tablet)
+         result |= UserAgentClassifier.TABLET | UserAgentClassifier.TIER_TABLET;
+      if (hits.detectIphoneOrIpod())
+         result |= UserAgentClassifier.IPHONE;
+      if (handset)
+         result |= UserAgentClassifier.TIER_IPHONE;
+
+      if (hits.detectMobileQuick())
+      {
+         if (hits.detectTierRichCss())
+            result |= UserAgentClassifier.TIER_RICH_CSS;
+         else if (!handset)
+            result |= UserAgentClassifier.TIER_GENERIC_MOBILE;
+      }
+      return result;
+   }
+
+   /**
+    * The detection rules of {@link UserAgentUtil}, evaluated against pre-computed token hits.
+    */
+   private static class Hits
+   {
+      private final boolean[] ua;
+      private final boolean[] accept;
+
+      public Hits(final boolean[] ua, final boolean[] accept)
+      {
+         this.ua = ua;
+         this.accept = accept;
+      }
+
+      boolean detectIpod()
+      {
+         return ua[IPOD];
+      }
+
+      boolean detectIpad()
+      {
+         return ua[IPAD] && detectWebkit();
+      }
+
+      boolean detectIphoneOrIpod()
+      {
+         return ua[IPHONE] || ua[IPOD];
+      }
+
+      boolean detectAndroid()
+      {
+         return !detectAndroidTablet() && ua[ANDROID];
+      }
+
+      boolean detectAndroidTablet()
+      {
+         return ua[XOOM];
+      }
+
+      boolean detectAndroidWebKit()
+      {
+         return detectAndroid() && detectWebkit();
+      }
+
+      boolean detectWebkit()
+      {
+         return ua[WEBKIT];
+      }
+
+      boolean detectS60OssBrowser()
+      {
+         return detectWebkit() && (ua[SYMBIAN] || ua[S60]);
+      }
+
+      boolean detectSymbianOS()
+      {
+         return ua[SYMBIAN] || ua[S60] || ua[S70] || ua[S80] || ua[S90];
+      }
+
+      boolean detectWindowsPhone7()
+      {
+         return ua[WIN_PHONE7];
+      }
+
+      boolean detectWindowsMobile()
+      {
+         if (detectWindowsPhone7())
+            return false;
+
+         if (ua[WIN_MOB] || ua[IE_MOB] || ua[PIE]
+                  || (ua[HTC] && ua[WINDOWS])
+                  || (detectWapWml() && ua[WINDOWS]))
+            return true;
+
+         return ua[PPC] && !ua[MAC_PPC];
+      }
+
+      boolean detectBlackBerry()
+      {
+         return ua[BB] || accept[VND_RIM];
+      }
+
+      boolean detectBlackBerryTablet()
+      {
+         return ua[BB_PLAYBOOK];
+      }
+
+      boolean detectBlackBerryWebKit()
+      {
+         return ua[BB] && ua[WEBKIT];
+      }
+
+      boolean detectBlackBerryTouch()
+      {
+         return ua[BB_STORM] || ua[BB_TORCH];
+      }
+
+      boolean detectBlackBerryHigh()
+      {
+         if (detectBlackBerryWebKit())
+            return false;
+
+         return detectBlackBerry() && (detectBlackBerryTouch() || ua[BB_BOLD] || ua[BB_TOUR] || ua[BB_CURVE]);
+      }
+
+      boolean detectPalmOS()
+      {
+         return (ua[PALM] || ua[BLAZER] || ua[XIINO]) && !detectPalmWebOS();
+      }
+
+      boolean detectPalmWebOS()
+      {
+         return ua[WEBOS];
+      }
+
+      boolean detectGarminNuvifone()
+      {
+         return ua[NUVIFONE];
+      }
+
+      boolean detectSmartphone()
+      {
+         return detectIphoneOrIpod()
+                  || detectS60OssBrowser()
+                  || detectSymbianOS()
+                  || detectAndroid()
+                  || detectWindowsMobile()
+                  || detectWindowsPhone7()
+                  || detectBlackBerry()
+                  || detectPalmWebOS()
+                  || detectPalmOS()
+                  || detectGarminNuvifone();
+      }
+
+      boolean detectDangerHiptop()
+      {
+         return ua[DANGER] || ua[HIPTOP];
+      }
+
+      boolean detectOperaMobile()
+      {
+         return ua[OPERA] && (ua[MINI] || ua[MOBI]);
+      }
+
+      boolean detectWapWml()
+      {
+         return accept[VND_WAP] || accept[WML];
+      }
+
+      boolean detectMidpCapable()
+      {
+         return ua[MIDP] || accept[MIDP];
+      }
+
+      boolean detectMaemoTablet()
+      {
+         return ua[MAEMO] || (ua[MAEMO_TABLET] && ua[LINUX]);
+      }
+
+      boolean detectMobileQuick()
+      {
+         if (detectIpad())
+            return false;
+
+         return detectSmartphone()
+                  || detectWapWml()
+                  || ua[BREW]
+                  || detectOperaMobile()
+                  || ua[NETFRONT]
+                  || ua[UP_BROWSER]
+                  || ua[OPEN_WEB]
+                  || detectDangerHiptop()
+                  || detectMidpCapable()
+                  || detectMaemoTablet()
+                  || ua[ARCHOS]
+                  || (ua[PDA] && !ua[UPDATE])
+                  || ua[MOBILE];
+      }
+
+      boolean isTablet()
+      {
+         return detectIpad() || detectAndroidTablet() || detectBlackBerryTablet();
+      }
+
+      boolean isHandset()
+      {
+         return detectIphoneOrIpod()
+                  || detectAndroid()
+                  || detectAndroidWebKit()
+                  || detectBlackBerryWebKit()
+                  || detectPalmWebOS()
+                  || detectGarminNuvifone()
+                  || detectMaemoTablet();
+      }
+
+      boolean detectTierRichCss()
+      {
+         return detectMobileQuick()
+                  && (detectWebkit()
+                           || detectS60OssBrowser()
+                           || detectBlackBerryHigh()
+                           || detectWindowsPhone7()
+                           || detectWindowsMobile()
+                           || ua[TELECA_Q]);
+      }
+   }
+
+   /**
+    * Aho-Corasick automaton over lower-case ASCII tokens, compiled to a dense transition table over the set of
+    * characters that occur in any token. All other characters lead back to the root state.
+    */
+   private static class Automaton
+   {
+      private final int tokenCount;
+      private final int[] classes = new int[128];
+      private final int width;
+      private final int[] transitions;
+      private final int[][] outputs;
+
+      public Automaton(final List<String> tokens)
+      {
+         this.tokenCount = tokens.size();
+
+         int width = 1;
+         int states = 1;
+         for (String token : tokens) {
+            states += token.length();
+            for (int i = 0; i < token.length(); i++) {
+               char c = token.charAt(i);
+               if (c >= 128 || Character.toLowerCase(c) != c)
+                  throw new IllegalArgumentException("Token [" + token + "] must consist of lower-case ASCII");
+               if (classes[c] == 0)
+                  classes[c] = width++;
+            }
+         }
+         this.width = width;
+
+         /*
+          * Build the trie.
+          */
+         int[] trie = new int[states * width];
+         Arrays.fill(trie, -1);
+         List<List<Integer>> matches = new ArrayList<List<Integer>>();
+         matches.add(new ArrayList<Integer>());
+
+         int count = 1;
+         for (int t = 0; t < tokens.size(); t++) {
+            String token = tokens.get(t);
+            int state = 0;
+            for (int i = 0; i < token.length(); i++) {
+               int index = state * width + classes[token.charAt(i)];
+               if (trie[index] == -1)
+               {
+                  trie[index] = count++;
+                  matches.add(new ArrayList<Integer>());
+               }
+               state = trie[index];
+            }
+            matches.get(state).add(t);
+         }
+
+         /*
+          * Resolve failure links breadth-first, completing the transition table and merging outputs along the way.
+          */
+         int[] failure = new int[count];
+         Queue<Integer> queue = new LinkedList<Integer>();
+         for (int c = 0; c < width; c++) {
+            int next = trie[c];
+            if (next == -1)
+               trie[c] = 0;
+            else
+            {
+               failure[next] = 0;
+               queue.add(next);
+            }
+         }
+
+         while (!queue.isEmpty())
+         {
+            int state = queue.remove();
+            matches.get(state).addAll(matches.get(failure[state]));
+            for (int c = 0; c < width; c++) {
+               int index = state * width + c;
+               int next = trie[index];
+               if (next == -1)
+                  trie[index] = trie[failure[state] * width + c];
+               else
+               {
+                  failure[next] = trie[failure[state] * width + c];
+                  queue.add(next);
+               }
+            }
+         }
+
+         this.transitions = Arrays.copyOf(trie, count * width);
+         this.outputs = new int[count][];
+         for (int s = 0; s < count; s++) {
+            List<Integer> list = matches.get(s);
+            outputs[s] = new int[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+               outputs[s][i] = list.get(i);
+            }
+         }
+      }
+
+      /**
+       * Scan the given value once, ignoring case, and return which tokens it contains.
+       */
+      public boolean[] scan(final String value)
+      {
+         boolean[] hits = new boolean[tokenCount];
+         if (value != null)
+         {
+            int state = 0;
+            for (int i = 0; i < value.length(); i++) {
+               char c = Character.toLowerCase(value.charAt(i));
+               state = transitions[state * width + (c < 128 ? classes[c] : 0)];
+               for (int token : outputs[state]) {
+                  hits[token] = true;
+               }
+            }
+         }
+         return hits;
+      }
+   }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config.encodequery;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.ocpsoft.common.util.Assert;
+
+/**
+ * Checksum strategy based on a keyed-hash message authentication code (HMAC). Tokens are prefixed with the URL-safe
+ * Base64 encoding of the first {@value #MAC_LENGTH} bytes of the HMAC of their UTF-8 bytes, so that a token cannot be
+ * altered without knowledge of the key.
+ * <p>
+ * The key must be supplied by the application and be the same on every node, so that encoded links remain valid
+ * after a restart and on all members of a cluster.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class HmacChecksumStrategy implements ChecksumStrategy
+{
+   /**
+    * The HMAC algorithm used when none is specified.
+    */
+   public static final String DEFAULT_ALGORITHM = "HmacSHA256";
+
+   /**
+    * The number of leading HMAC bytes embedded in each token.
+    */
+   public static final int MAC_LENGTH = 16;
+
+   private static final char CHECKSUM_DELIM = '#';
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+   private static final int ENCODED_MAC_LENGTH = (MAC_LENGTH * 4 + 2) / 3;
+
+   private final SecretKeySpec key;
+   private final ThreadLocal<Mac> mac = new ThreadLocal<Mac>() {
+      @Override
+      protected Mac initialValue()
+      {
+         return createMac();
+      }
+   };
+
+   /**
+    * Create a new {@link HmacChecksumStrategy} using the {@link #DEFAULT_ALGORITHM} and the given key.
+    */
+   public HmacChecksumStrategy(final byte[] key)
+   {
+      this(DEFAULT_ALGORITHM, key);
+   }
+
+   /**
+    * Create a new {@link HmacChecksumStrategy} using the given HMAC algorithm (for example "HmacSHA1") and key.
+    */
+   public HmacChecksumStrategy(final String algorithm, final byte[] key)
+   {
+      Assert.notNull(algorithm, "Algorithm must not be null.");
+      Assert.notNull(key, "Key must not be null.");
+      Assert.assertTrue(key.length > 0, "Key must not be empty.");
+      this.key = new SecretKeySpec(key.clone(), algorithm);
+
+      Mac initial = createMac();
+      Assert.assertTrue(initial.getMacLength() >= MAC_LENGTH, "Algorithm [" + algorithm + "] produces a MAC of only "
+               + initial.getMacLength() + " bytes.");
+      mac.set(initial);
+   }
+
+   private Mac createMac()
+   {
+      try {
+         Mac result = Mac.getInstance(key.getAlgorithm());
+         result.init(key);
+         return result;
+      }
+      catch (GeneralSecurityException e) {
+         throw new IllegalArgumentException("Could not initialize HMAC algorithm [" + key.getAlgorithm() + "]", e);
+      }
+   }
+
+   private String checksum(final String token)
+   {
+      byte[] digest = mac.get().doFinal(token.getBytes(UTF8));
+      return UrlSafeBase64EncodingStrategy.encodeBytes(digest, 0, MAC_LENGTH);
+   }
+
+   @Override
+   public boolean checksumValid(final String token)
+   {
+      if (token == null || token.length() <= ENCODED_MAC_LENGTH || token.charAt(ENCODED_MAC_LENGTH) != CHECKSUM_DELIM)
+         return false;
+
+      String expected = checksum(token.substring(ENCODED_MAC_LENGTH + 1));
+
+      /*
+       * Compare every character so that the time taken does not reveal how much of the checksum was correct.
+       */
+      int difference = 0;
+      for (int i = 0; i < ENCODED_MAC_LENGTH; i++) {
+         difference |= expected.charAt(i) ^ token.charAt(i);
+      }
+      return difference == 0;
+   }
+
+   @Override
+   public String embedChecksum(final String token)
+   {
+      String checksum = checksum(token);
+      return new StringBuilder(checksum.length() + 1 + token.length()).append(checksum).append(CHECKSUM_DELIM)
+               .append(token).toString();
+   }
+
+   @Override
+   public String removeChecksum(final String token)
+   {
+      return token.substring(token.indexOf(CHECKSUM_DELIM) + 1);
+   }
+
+   @Override
+   public String toString()
+   {
+      return "HmacChecksumStrategy [algorithm=" + key.getAlgorithm() + "]";
+   }
+}
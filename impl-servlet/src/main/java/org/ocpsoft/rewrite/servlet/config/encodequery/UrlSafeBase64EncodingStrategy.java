@@ -0,0 +1,154 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config.encodequery;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Encoding strategy using the URL and filename safe Base64 alphabet (RFC 4648, section 5) without padding, so that
+ * encoded values may be placed in a query-string without further escaping. Values are converted using UTF-8.
+ * <p>
+ * Decoding also accepts the standard Base64 alphabet and trailing padding, so tokens produced by
+ * {@link Base64EncodingStrategy} remain readable.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class UrlSafeBase64EncodingStrategy implements EncodingStrategy
+{
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .toCharArray();
+
+   private static final byte[] DECODABET = new byte[128];
+
+   static {
+      Arrays.fill(DECODABET, (byte) -1);
+      for (int i = 0; i < ALPHABET.length; i++) {
+         DECODABET[ALPHABET[i]] = (byte) i;
+      }
+      DECODABET['+'] = 62;
+      DECODABET['/'] = 63;
+   }
+
+   @Override
+   public String encode(final String value)
+   {
+      return encodeBytes(value.getBytes(UTF8));
+   }
+
+   @Override
+   public String decode(final String value)
+   {
+      return new String(decodeBytes(value), UTF8);
+   }
+
+   /**
+    * Encode the given bytes as unpadded URL-safe Base64.
+    */
+   public static String encodeBytes(final byte[] source)
+   {
+      return encodeBytes(source, 0, source.length);
+   }
+
+   /**
+    * Encode the given range of bytes as unpadded URL-safe Base64.
+    */
+   public static String encodeBytes(final byte[] source, final int off, final int len)
+   {
+      char[] out = new char[(len * 4 + 2) / 3];
+      int end = off + len;
+      int i = off;
+      int o = 0;
+
+      while (end - i >= 3)
+      {
+         int bits = ((source[i++] & 0xff) << 16) | ((source[i++] & 0xff) << 8) | (source[i++] & 0xff);
+         out[o++] = ALPHABET[(bits >>> 18) & 0x3f];
+         out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+         out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+         out[o++] = ALPHABET[bits & 0x3f];
+      }
+
+      int remaining = end - i;
+      if (remaining > 0)
+      {
+         int bits = (source[i++] & 0xff) << 16;
+         if (remaining == 2)
+            bits |= (source[i] & 0xff) << 8;
+
+         out[o++] = ALPHABET[(bits >>> 18) & 0x3f];
+         out[o++] = ALPHABET[(bits >>> 12) & 0x3f];
+         if (remaining == 2)
+            out[o++] = ALPHABET[(bits >>> 6) & 0x3f];
+      }
+
+      return new String(out);
+   }
+
+   /**
+    * Decode the given URL-safe or standard Base64 value, with or without padding.
+    *
+    * @throws IllegalArgumentException if the value is not valid Base64.
+    */
+   public static byte[] decodeBytes(final String value)
+   {
+      int len = value.length();
+      while (len > 0 && value.charAt(len - 1) == '=')
+         len--;
+
+      if (len % 4 == 1)
+         throw new IllegalArgumentException("Bad Base64 input length: " + value.length());
+
+      byte[] out = new byte[len * 3 / 4];
+      int i = 0;
+      int o = 0;
+      int bits = 0;
+      int count = 0;
+
+      while (i < len)
+      {
+         char c = value.charAt(i);
+         int digit = c < 128 ? DECODABET[c] : -1;
+         if (digit < 0)
+            throw new IllegalArgumentException("Bad Base64 input character at " + i + ": " + (int) c + "(decimal)");
+
+         bits = (bits << 6) | digit;
+         i++;
+         if (++count == 4)
+         {
+            out[o++] = (byte) (bits >>> 16);
+            out[o++] = (byte) (bits >>> 8);
+            out[o++] = (byte) bits;
+            bits = 0;
+            count = 0;
+         }
+      }
+
+      if (count == 3)
+      {
+         out[o++] = (byte) (bits >>> 10);
+         out[o++] = (byte) (bits >>> 2);
+      }
+      else if (count == 2)
+      {
+         out[o++] = (byte) (bits >>> 4);
+      }
+
+      return out;
+   }
+}
@@ -16,7 +16,6 @@
 package org.ocpsoft.rewrite.servlet.config.rule;
 
 import org.ocpsoft.rewrite.config.Condition;
-import org.ocpsoft.rewrite.config.Direction;
 import org.ocpsoft.rewrite.config.Operation;
 import org.ocpsoft.rewrite.config.Rule;
 import org.ocpsoft.rewrite.context.EvaluationContext;
@@ -26,6 +25,7 @@ import org.ocpsoft.rewrite.event.Rewrite;
 import org.ocpsoft.rewrite.servlet.config.Path;
 import org.ocpsoft.rewrite.servlet.config.Redirect;
 import org.ocpsoft.rewrite.servlet.config.Substitute;
+import org.ocpsoft.rewrite.servlet.http.event.HttpOutboundServletRewrite;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 
 /**
@@ -41,6 +41,18 @@ public abstract class TrailingSlash implements Rule
    protected Operation operation;
    protected Condition condition;
 
+   private final boolean matchTrailingSlash;
+   private final String target;
+   private final Condition path;
+   private volatile TargetOperations targetOperations;
+
+   private TrailingSlash(final boolean matchTrailingSlash, final Condition path, final String target)
+   {
+      this.matchTrailingSlash = matchTrailingSlash;
+      this.path = path;
+      this.target = target;
+   }
+
    /**
     * Return a new {@link TrailingSlash} instance that will remove trailing slashes from all matching request and
     * rendered output URLs, if necessary.
@@ -61,88 +73,107 @@ public abstract class TrailingSlash implements Rule
 
    private static class AppendTrailingSlash extends TrailingSlash
    {
-      @Override
-      public boolean evaluate(final Rewrite event, final EvaluationContext context)
+      private AppendTrailingSlash()
       {
-         if ((condition == null) || condition.evaluate(event, context))
-         {
-            if (Direction.isInbound().and(Path.matches("/{path}").where("path").matches(".*[^/]"))
-                     .evaluate(event, context))
-            {
-               if (operation != null)
-                  context.addPreOperation(operation);
-
-               return true;
-            }
-            else if (Direction.isOutbound().and(Path.matches("/{path}").where("path").matches(".*[^/]"))
-                     .evaluate(event, context))
-            {
-               if (operation != null)
-                  context.addPreOperation(operation);
-
-               return true;
-            }
-         }
+         super(false, Path.matches("/{path}").where("path").matches(".*[^/]"), "/{path}/");
+      }
+   }
 
-         return false;
+   private static class RemoveTrailingSlash extends TrailingSlash
+   {
+      private RemoveTrailingSlash()
+      {
+         super(true, Path.matches("/{path}/").where("path").matches(".*"), "/{path}");
       }
+   }
+
+   /**
+    * The {@link Redirect} and {@link Substitute} for the most recently seen context path. These are rebuilt only if the
+    * context path changes.
+    */
+   private static final class TargetOperations
+   {
+      private final String contextPath;
+      private final Operation inbound;
+      private final Operation outbound;
 
-      @Override
-      public void perform(final Rewrite event, final EvaluationContext context)
+      private TargetOperations(final String contextPath, final String target)
       {
-         if (event instanceof InboundRewrite)
-         {
-            Redirect.permanent(((HttpServletRewrite) event).getContextPath() + "/{path}/").perform(event, context);
-         }
+         this.contextPath = contextPath;
+         this.inbound = Redirect.permanent(contextPath + target);
+         this.outbound = Substitute.with(contextPath + target);
+      }
+   }
+
+   @Override
+   public boolean evaluate(final Rewrite event, final EvaluationContext context)
+   {
+      /*
+       * This rule typically sees every request, so reject those whose path already ends as desired before evaluating
+       * any patterns.
+       */
+      if (!(event instanceof HttpServletRewrite) || (endsWithSlash((HttpServletRewrite) event) != matchTrailingSlash))
+         return false;
 
-         else if (event instanceof OutboundRewrite)
+      if ((condition == null) || condition.evaluate(event, context))
+      {
+         if (((event instanceof InboundRewrite) || (event instanceof OutboundRewrite)) && path.evaluate(event, context))
          {
-            Substitute.with(((HttpServletRewrite) event).getContextPath() + "/{path}/").perform(event, context);
+            if (operation != null)
+               context.addPreOperation(operation);
+
+            return true;
          }
       }
+
+      return false;
    }
 
-   private static class RemoveTrailingSlash extends TrailingSlash
+   @Override
+   public void perform(final Rewrite event, final EvaluationContext context)
    {
-      @Override
-      public boolean evaluate(final Rewrite event, final EvaluationContext context)
+      if (event instanceof InboundRewrite)
       {
-         if ((condition == null) || condition.evaluate(event, context))
-         {
-            if (Direction.isInbound().and(Path.matches("/{path}/").where("path").matches(".*"))
-                     .evaluate(event, context))
-            {
-               if (operation != null)
-                  context.addPreOperation(operation);
-
-               return true;
-            }
-            else if (Direction.isOutbound().and(Path.matches("/{path}/").where("path").matches(".*"))
-                     .evaluate(event, context))
-            {
-               if (operation != null)
-                  context.addPreOperation(operation);
-
-               return true;
-            }
-         }
+         getTargetOperations((HttpServletRewrite) event).inbound.perform(event, context);
+      }
 
-         return false;
+      else if (event instanceof OutboundRewrite)
+      {
+         getTargetOperations((HttpServletRewrite) event).outbound.perform(event, context);
       }
+   }
 
-      @Override
-      public void perform(final Rewrite event, final EvaluationContext context)
+   private TargetOperations getTargetOperations(final HttpServletRewrite event)
+   {
+      String contextPath = event.getContextPath();
+      TargetOperations result = targetOperations;
+      if ((result == null) || !result.contextPath.equals(contextPath))
       {
-         if (event instanceof InboundRewrite)
-         {
-            Redirect.permanent(((HttpServletRewrite) event).getContextPath() + "/{path}").perform(event, context);
-         }
+         result = new TargetOperations(contextPath, target);
+         targetOperations = result;
+      }
+      return result;
+   }
 
-         else if (event instanceof OutboundRewrite)
-         {
-            Substitute.with(((HttpServletRewrite) event).getContextPath() + "/{path}").perform(event, context);
-         }
+   /**
+    * Return true if the path evaluated by {@link Path} for the given event ends with '/'. Inbound request URIs are
+    * checked before decoding, so an encoded trailing "%2F" also counts as a slash.
+    */
+   static boolean endsWithSlash(final HttpServletRewrite event)
+   {
+      if (event instanceof HttpOutboundServletRewrite)
+      {
+         String url = ((HttpOutboundServletRewrite) event).getOutboundURL();
+         int end = url.indexOf('?');
+         if (end < 0)
+            end = url.length();
+         return (end > 0) && (url.charAt(end - 1) == '/');
       }
+
+      String uri = event.getRequest().getRequestURI();
+      int length = uri == null ? 0 : uri.length();
+      return ((length > 0) && (uri.charAt(length - 1) == '/'))
+               || ((length > 2) && uri.regionMatches(true, length - 3, "%2F", 0, 3));
    }
 
    @Override
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.ocpsoft.rewrite.config.Operation;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.mock.MockEvaluationContext;
+import org.ocpsoft.rewrite.servlet.config.encodequery.HmacChecksumStrategy;
+import org.ocpsoft.rewrite.servlet.impl.HttpInboundRewriteImpl;
+import org.ocpsoft.rewrite.servlet.impl.HttpOutboundRewriteImpl;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class EncodeQueryTest
+{
+   private final EncodeQuery operation = EncodeQuery.params().to("c")
+            .withChecksumStrategy(new HmacChecksumStrategy("secret".getBytes()));
+
+   private HttpServletRequest request(final String queryString)
+   {
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getContextPath()).thenReturn("/ctx");
+      Mockito.when(request.getRequestURI()).thenReturn("/ctx/page");
+      Mockito.when(request.getQueryString()).thenReturn(queryString);
+      Mockito.when(request.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+      return request;
+   }
+
+   private String encode(final String url)
+   {
+      HttpOutboundRewriteImpl event = new HttpOutboundRewriteImpl(request(null), null, url);
+      operation.perform(event, new MockEvaluationContext());
+      return event.getOutboundURL();
+   }
+
+   private HttpInboundRewriteImpl decode(final String queryString)
+   {
+      HttpInboundRewriteImpl event = new HttpInboundRewriteImpl(request(queryString), null);
+      operation.perform(event, new MockEvaluationContext());
+      return event;
+   }
+
+   @Test
+   public void testEncodeAndDecode()
+   {
+      String encoded = encode("/ctx/page?foo=bar&baz=qux");
+      Assert.assertTrue(encoded.startsWith("/ctx/page?c="));
+      Assert.assertFalse(encoded.contains("foo"));
+
+      HttpInboundRewriteImpl event = decode(encoded.substring(encoded.indexOf('?') + 1));
+      Assert.assertEquals("/page?foo=bar&baz=qux", event.getDispatchResource());
+   }
+
+   @Test
+   public void testOutboundURLsAreCached()
+   {
+      String first = encode("/ctx/page?foo=bar");
+      long hits = operation.getEncodeCache().getHits();
+      Assert.assertEquals(first, encode("/ctx/page?foo=bar"));
+      Assert.assertEquals(hits + 1, operation.getEncodeCache().getHits());
+   }
+
+   @Test
+   public void testURLsWithoutQueryAreUnchanged()
+   {
+      Assert.assertEquals("/ctx/page", encode("/ctx/page"));
+      Assert.assertEquals("/ctx/page?c=token", encode("/ctx/page?c=token"));
+      Assert.assertEquals("/ctx/page?c=token", encode("/ctx/page?c=token"));
+   }
+
+   @Test
+   public void testInboundTokensAreCached()
+   {
+      String encoded = encode("/ctx/page?foo=bar");
+      String query = encoded.substring(encoded.indexOf('?') + 1);
+      decode(query);
+      long hits = operation.getDecodeCache().getHits();
+      Assert.assertEquals("/page?foo=bar", decode(query).getDispatchResource());
+      Assert.assertEquals(hits + 1, operation.getDecodeCache().getHits());
+   }
+
+   @Test
+   public void testInvalidTokensAreNotCached()
+   {
+      final boolean[] failed = new boolean[1];
+      operation.onChecksumFailure(new Operation() {
+         @Override
+         public void perform(Rewrite event, EvaluationContext context)
+         {
+            failed[0] = true;
+         }
+      });
+
+      Assert.assertNull(decode("c=AAAA$").getDispatchResource());
+      Assert.assertNull(decode("c=QUFBQUFBQUFBQUFBQUFBQUFBQUFBQSNmb289YmFy").getDispatchResource());
+      Assert.assertTrue(failed[0]);
+      Assert.assertEquals(0, operation.getDecodeCache().size());
+   }
+
+   @Test
+   public void testCachingCanBeDisabled()
+   {
+      operation.withCacheSize(0);
+      Assert.assertNull(operation.getEncodeCache());
+      Assert.assertNull(operation.getDecodeCache());
+
+      String encoded = encode("/ctx/page?foo=bar");
+      Assert.assertEquals("/page?foo=bar", decode(encoded.substring(encoded.indexOf('?') + 1)).getDispatchResource());
+   }
+}
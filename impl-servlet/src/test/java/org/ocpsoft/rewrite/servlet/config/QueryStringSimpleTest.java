@@ -15,16 +15,23 @@
  */
 package org.ocpsoft.rewrite.servlet.config;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.servlet.http.HttpServletRequest;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import org.ocpsoft.rewrite.event.Rewrite;
 import org.ocpsoft.rewrite.mock.MockEvaluationContext;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 import org.ocpsoft.rewrite.servlet.impl.HttpInboundRewriteImpl;
+import org.ocpsoft.rewrite.servlet.impl.HttpOutboundRewriteImpl;
 
 /**
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
@@ -94,6 +101,64 @@ public class QueryStringSimpleTest
       Assert.assertTrue(QueryString.matches(".*bar=baz").evaluate(rewrite, new MockEvaluationContext()));
    }
 
+   @Test
+   public void testQueryStringLiteralParameterExists()
+   {
+      Assert.assertTrue(QueryString.parameterExists("foo").evaluate(rewrite, new MockEvaluationContext()));
+      Assert.assertFalse(QueryString.parameterExists("fo").evaluate(rewrite, new MockEvaluationContext()));
+   }
+
+   @Test
+   public void testQueryStringValueExistsIgnoresParametersWithoutValue()
+   {
+      Mockito.when(request.getQueryString()).thenReturn("flag&foo=bar");
+      Assert.assertTrue(QueryString.valueExists("bar").evaluate(rewrite, new MockEvaluationContext()));
+      Assert.assertTrue(QueryString.parameterExists("flag").evaluate(rewrite, new MockEvaluationContext()));
+   }
+
+   @Test
+   public void testQueryStringParsedOncePerRequest()
+   {
+      final Map<String, Object> attributes = new HashMap<String, Object>();
+      Mockito.when(request.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation) throws Throwable
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation) throws Throwable
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(request).setAttribute(Mockito.anyString(), Mockito.any());
+
+      Assert.assertTrue(QueryString.parameterExists("foo").evaluate(rewrite, new MockEvaluationContext()));
+      Assert.assertTrue(QueryString.parameterExists("b.*").evaluate(rewrite, new MockEvaluationContext()));
+      Assert.assertTrue(QueryString.valueExists("baz").evaluate(rewrite, new MockEvaluationContext()));
+      HttpServletRewrite event = (HttpServletRewrite) rewrite;
+      Assert.assertSame(RequestQueryString.getFor(event), RequestQueryString.getFor(event));
+
+      Mockito.when(request.getQueryString()).thenReturn("other=value");
+      Assert.assertTrue(QueryString.parameterExists("other").evaluate(rewrite, new MockEvaluationContext()));
+      Assert.assertFalse(QueryString.parameterExists("foo").evaluate(rewrite, new MockEvaluationContext()));
+   }
+
+   @Test
+   public void testOutboundQueryString()
+   {
+      Rewrite outbound = new HttpOutboundRewriteImpl(request, null, "/context/other?out=value");
+      Assert.assertTrue(QueryString.parameterExists("out").evaluate(outbound, new MockEvaluationContext()));
+      Assert.assertTrue(QueryString.valueExists("value").evaluate(outbound, new MockEvaluationContext()));
+      Assert.assertFalse(QueryString.parameterExists("foo").evaluate(outbound, new MockEvaluationContext()));
+
+      Rewrite withoutQuery = new HttpOutboundRewriteImpl(request, null, "/context/other");
+      Assert.assertFalse(QueryString.parameterExists(".*").evaluate(withoutQuery, new MockEvaluationContext()));
+   }
+
    @Test(expected = IllegalArgumentException.class)
    public void testNullCausesException()
    {
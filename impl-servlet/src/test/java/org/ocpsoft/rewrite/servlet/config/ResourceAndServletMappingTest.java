@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRegistration;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.mock.MockEvaluationContext;
+import org.ocpsoft.rewrite.servlet.impl.HttpInboundRewriteImpl;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class ResourceAndServletMappingTest
+{
+   private ServletContext servletContext;
+   private Rewrite rewrite;
+
+   @Before
+   @SuppressWarnings({ "unchecked", "rawtypes" })
+   public void before() throws Exception
+   {
+      final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+      servletContext = Mockito.mock(ServletContext.class);
+      Mockito.when(servletContext.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation) throws Throwable
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation) throws Throwable
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(servletContext).setAttribute(Mockito.anyString(), Mockito.any());
+
+      Map<String, ServletRegistration> registrations = new LinkedHashMap<String, ServletRegistration>();
+      registrations.put("faces", registration("*.jsf", "/faces/*"));
+      registrations.put("exact", registration("exact"));
+      Mockito.when(servletContext.getServletRegistrations()).thenReturn((Map) registrations);
+
+      Mockito.when(servletContext.getResource("/exists.txt")).thenReturn(new URL("file:/exists.txt"));
+
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getServletContext()).thenReturn(servletContext);
+      rewrite = new HttpInboundRewriteImpl(request, null);
+   }
+
+   private ServletRegistration registration(final String... mappings)
+   {
+      ServletRegistration registration = Mockito.mock(ServletRegistration.class);
+      Mockito.when(registration.getMappings()).thenReturn(Arrays.asList(mappings));
+      return registration;
+   }
+
+   private boolean evaluate(final Condition condition)
+   {
+      return condition.evaluate(rewrite, new MockEvaluationContext());
+   }
+
+   @Test
+   public void testServletMappingIncludes()
+   {
+      Assert.assertTrue(evaluate(ServletMapping.includes("/page.jsf")));
+      Assert.assertTrue(evaluate(ServletMapping.includes("/faces/page")));
+      Assert.assertTrue(evaluate(ServletMapping.includes("/exact")));
+      Assert.assertTrue(evaluate(ServletMapping.includes("/exists.txt")));
+      Assert.assertFalse(evaluate(ServletMapping.includes("/page.jsp")));
+      Assert.assertFalse(evaluate(ServletMapping.includes("/pagexjsf")));
+   }
+
+   @Test
+   public void testServletMappingMatcherIsBuiltOnce()
+   {
+      evaluate(ServletMapping.includes("/page.jsf"));
+      evaluate(ServletMapping.includes("/other.jsf"));
+      Mockito.verify(servletContext, Mockito.times(1)).getServletRegistrations();
+   }
+
+   @Test
+   public void testResourceExistsIsCached() throws Exception
+   {
+      Assert.assertTrue(evaluate(Resource.exists("/exists.txt")));
+      Assert.assertTrue(evaluate(Resource.exists("/exists.txt")));
+      Assert.assertFalse(evaluate(Resource.exists("/missing.txt")));
+      Assert.assertFalse(evaluate(Resource.exists("/missing.txt")));
+      Mockito.verify(servletContext, Mockito.times(1)).getResource("/exists.txt");
+      Mockito.verify(servletContext, Mockito.times(1)).getResource("/missing.txt");
+   }
+
+   @Test
+   public void testExplodedDeploymentEntriesExpire() throws Exception
+   {
+      Mockito.when(servletContext.getRealPath("/")).thenReturn("/tmp/exploded");
+      Condition condition = Resource.exists("/exists.txt").withCacheTTL(1);
+
+      Assert.assertTrue(evaluate(condition));
+      Thread.sleep(5);
+      Assert.assertTrue(evaluate(condition));
+      Mockito.verify(servletContext, Mockito.times(2)).getResource("/exists.txt");
+   }
+
+   @Test
+   public void testResourceCacheCanBeDisabled() throws Exception
+   {
+      Condition condition = Resource.exists("/exists.txt").withCacheTTL(0);
+      Assert.assertTrue(evaluate(condition));
+      Assert.assertTrue(evaluate(condition));
+      Mockito.verify(servletContext, Mockito.times(2)).getResource("/exists.txt");
+   }
+
+   @Test
+   public void testConcurrentCallersShareInstances() throws Exception
+   {
+      final CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+         List<Future<Object[]>> results = new ArrayList<Future<Object[]>>();
+         for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(new Callable<Object[]>() {
+               @Override
+               public Object[] call() throws Exception
+               {
+                  start.await();
+                  return new Object[] { ResourceCache.getFor(servletContext),
+                           ServletMappingMatcher.getFor(servletContext) };
+               }
+            }));
+         }
+         start.countDown();
+
+         Object[] first = results.get(0).get();
+         for (Future<Object[]> result : results) {
+            Assert.assertSame(first[0], result.get()[0]);
+            Assert.assertSame(first[1], result.get()[1]);
+         }
+         Assert.assertSame(first[0], ResourceCache.getFor(servletContext));
+         Assert.assertSame(first[1], ServletMappingMatcher.getFor(servletContext));
+      }
+      finally {
+         executor.shutdown();
+      }
+   }
+}
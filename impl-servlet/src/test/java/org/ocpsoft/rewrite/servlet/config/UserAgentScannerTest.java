@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link UserAgentScanner} classifies a corpus of real User-Agent strings exactly as {@link UserAgentUtil}
+ * does.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class UserAgentScannerTest
+{
+   private static final String[] ACCEPT = new String[] {
+            null,
+            "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8",
+            "text/vnd.wap.wml, application/vnd.wap.xhtml+xml",
+            "application/vnd.rim.html, text/html",
+            "text/x-midp-descriptor"
+   };
+
+   private static List<String> loadCorpus() throws Exception
+   {
+      List<String> result = new ArrayList<String>();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(UserAgentScannerTest.class.getClassLoader()
+               .getResourceAsStream("user-agents.txt"), "UTF-8"));
+      try {
+         String line;
+         while ((line = reader.readLine()) != null)
+         {
+            if (line.length() > 0 && !line.startsWith("#"))
+               result.add(line);
+         }
+      }
+      finally {
+         reader.close();
+      }
+      return result;
+   }
+
+   private static int expected(final String userAgent, final String httpAccept)
+   {
+      UserAgentUtil util = new UserAgentUtil(userAgent, httpAccept);
+
+      int result = 0;
+      if (util.isMobile())
+         result |= UserAgentClassifier.MOBILE;
+      if (util.isTablet())
+         result |= UserAgentClassifier.TABLET;
+      if (util.getIsIphone())
+         result |= UserAgentClassifier.IPHONE;
+      if (util.getIsTierTablet())
+         result |= UserAgentClassifier.TIER_TABLET;
+      if (util.getIsTierIphone())
+         result |= UserAgentClassifier.TIER_IPHONE;
+      if (util.getIsTierRichCss())
+         result |= UserAgentClassifier.TIER_RICH_CSS;
+      if (util.getIsTierGenericMobile())
+         result |= UserAgentClassifier.TIER_GENERIC_MOBILE;
+      return result;
+   }
+
+   @Test
+   public void testCorpusMatchesUserAgentUtil() throws Exception
+   {
+      List<String> corpus = loadCorpus();
+      Assert.assertFalse(corpus.isEmpty());
+
+      for (String userAgent : corpus) {
+         for (String accept : ACCEPT) {
+            Assert.assertEquals("[" + userAgent + "] with Accept [" + accept + "]",
+                     expected(userAgent, accept), UserAgentScanner.classify(userAgent, accept));
+         }
+      }
+   }
+
+   @Test
+   public void testCorpusCoversAllClassifications() throws Exception
+   {
+      int seen = 0;
+      for (String userAgent : loadCorpus()) {
+         seen |= UserAgentScanner.classify(userAgent, null);
+      }
+      Assert.assertEquals(UserAgentClassifier.MOBILE | UserAgentClassifier.TABLET | UserAgentClassifier.IPHONE
+               | UserAgentClassifier.TIER_TABLET | UserAgentClassifier.TIER_IPHONE
+               | UserAgentClassifier.TIER_RICH_CSS | UserAgentClassifier.TIER_GENERIC_MOBILE, seen);
+   }
+
+   @Test
+   public void testNullHeaders()
+   {
+      Assert.assertEquals(expected(null, null), UserAgentScanner.classify(null, null));
+   }
+
+   @Test
+   public void testOverlappingTokens()
+   {
+      String userAgent = "BlackBerry9530/4.7.0.148";
+      Assert.assertEquals(expected(userAgent, null), UserAgentScanner.classify(userAgent, null));
+      Assert.assertTrue(UserAgentClassifier.is(UserAgentScanner.classify(userAgent, null),
+               UserAgentClassifier.TIER_RICH_CSS));
+   }
+}
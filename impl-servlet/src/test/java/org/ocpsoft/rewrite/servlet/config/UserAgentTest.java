@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.mock.MockEvaluationContext;
+import org.ocpsoft.rewrite.param.Constraint;
+import org.ocpsoft.rewrite.servlet.impl.HttpInboundRewriteImpl;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class UserAgentTest
+{
+   private static final String IPHONE = "Mozilla/5.0 (iPhone; U; CPU iPhone OS 4_3_3 like Mac OS X; en-us) "
+            + "AppleWebKit/533.17.9 (KHTML, like Gecko) Version/5.0.2 Mobile/8J2 Safari/6533.18.5";
+   private static final String IPAD = "Mozilla/5.0 (iPad; U; CPU OS 4_3_3 like Mac OS X; en-us) "
+            + "AppleWebKit/533.17.9 (KHTML, like Gecko) Version/5.0.2 Mobile/8J2 Safari/6533.18.5";
+   private static final String FIREFOX = "Mozilla/5.0 (Windows NT 6.1; WOW64; rv:12.0) Gecko/20100101 Firefox/12.0";
+
+   private Rewrite rewrite(final String userAgent)
+   {
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getHeader("user-agent")).thenReturn(userAgent);
+      Mockito.when(request.getHeader("Accept")).thenReturn("text/html");
+      return new HttpInboundRewriteImpl(request, null);
+   }
+
+   private boolean evaluate(final Condition condition, final String userAgent)
+   {
+      return condition.evaluate(rewrite(userAgent), new MockEvaluationContext());
+   }
+
+   private HttpServletRequest requestWithAttributes(final String userAgent)
+   {
+      final Map<String, Object> attributes = new HashMap<String, Object>();
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getHeader("user-agent")).thenReturn(userAgent);
+      Mockito.when(request.getHeader("Accept")).thenReturn("text/html");
+      Mockito.when(request.getAttribute(Mockito.anyString())).thenAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation) throws Throwable
+         {
+            return attributes.get(invocation.getArguments()[0]);
+         }
+      });
+      Mockito.doAnswer(new Answer<Object>() {
+         @Override
+         public Object answer(InvocationOnMock invocation) throws Throwable
+         {
+            attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+            return null;
+         }
+      }).when(request).setAttribute(Mockito.anyString(), Mockito.any());
+      return request;
+   }
+
+   @Test
+   public void testIsMobile()
+   {
+      Assert.assertTrue(evaluate(UserAgent.isMobile(), IPHONE));
+      Assert.assertFalse(evaluate(UserAgent.isTablet(), IPHONE));
+      Assert.assertFalse(evaluate(UserAgent.isDesktop(), IPHONE));
+   }
+
+   @Test
+   public void testIsTablet()
+   {
+      Assert.assertTrue(evaluate(UserAgent.isTablet(), IPAD));
+      Assert.assertTrue(evaluate(UserAgent.isMobile(), IPAD));
+   }
+
+   @Test
+   public void testIsDesktop()
+   {
+      Assert.assertTrue(evaluate(UserAgent.isDesktop(), FIREFOX));
+      Assert.assertFalse(evaluate(UserAgent.isMobile(), FIREFOX));
+   }
+
+   @Test
+   public void testMissingUserAgentIsDesktop()
+   {
+      Assert.assertTrue(evaluate(UserAgent.isDesktop(), null));
+   }
+
+   @Test
+   public void testClassificationsAreCached()
+   {
+      long hits = UserAgent.getClassificationCache().getHits();
+      evaluate(UserAgent.isMobile(), IPHONE);
+      evaluate(UserAgent.isMobile(), IPHONE);
+      Assert.assertTrue(UserAgent.getClassificationCache().getHits() > hits);
+   }
+
+   @Test
+   public void testMatches()
+   {
+      Assert.assertTrue(evaluate(UserAgent.matches("{prefix}iPhone{suffix}"), IPHONE));
+      Assert.assertFalse(evaluate(UserAgent.matches("{prefix}iPhone{suffix}"), FIREFOX));
+   }
+
+   @Test
+   public void testClassificationIsMemoizedPerRequest()
+   {
+      HttpServletRequest request = requestWithAttributes(IPHONE);
+      Rewrite event = new HttpInboundRewriteImpl(request, null);
+
+      Condition mobile = UserAgent.isMobile();
+      Condition tablet = UserAgent.isTablet();
+      Condition desktop = UserAgent.isDesktop();
+      Assert.assertTrue(mobile.evaluate(event, new MockEvaluationContext()));
+      Assert.assertFalse(tablet.evaluate(event, new MockEvaluationContext()));
+      Assert.assertFalse(desktop.evaluate(event, new MockEvaluationContext()));
+      Assert.assertTrue(mobile.evaluate(event, new MockEvaluationContext()));
+
+      Mockito.verify(request, Mockito.times(1)).getHeader("user-agent");
+      Mockito.verify(request, Mockito.times(1)).getHeader("Accept");
+   }
+
+   @Test
+   public void testPatternMatchReadsHeaderOncePerRequest()
+   {
+      HttpServletRequest request = requestWithAttributes(IPHONE);
+      Rewrite event = new HttpInboundRewriteImpl(request, null);
+
+      Condition iphone = UserAgent.matches("{prefix}iPhone{suffix}");
+      Condition android = UserAgent.matches("{prefix}Android{suffix}");
+      Assert.assertTrue(iphone.evaluate(event, new MockEvaluationContext()));
+      Assert.assertTrue(iphone.evaluate(event, new MockEvaluationContext()));
+      Assert.assertFalse(android.evaluate(event, new MockEvaluationContext()));
+      Assert.assertFalse(android.evaluate(event, new MockEvaluationContext()));
+      Condition mobile = UserAgent.isMobile();
+      Assert.assertTrue(mobile.evaluate(event, new MockEvaluationContext()));
+
+      Mockito.verify(request, Mockito.times(1)).getHeader("user-agent");
+   }
+
+   @Test
+   public void testPatternConstraintsAreEvaluatedEveryTime()
+   {
+      HttpServletRequest request = requestWithAttributes(IPHONE);
+      Rewrite event = new HttpInboundRewriteImpl(request, null);
+
+      final EvaluationContext accepted = new MockEvaluationContext();
+      IUserAgent iphone = (IUserAgent) UserAgent.matches("{prefix}iPhone{suffix}");
+      iphone.where("prefix").constrainedBy(new Constraint<String>() {
+         @Override
+         public boolean isSatisfiedBy(Rewrite event, EvaluationContext context, String value)
+         {
+            return context == accepted;
+         }
+      });
+
+      Assert.assertTrue(iphone.evaluate(event, accepted));
+      Assert.assertFalse(iphone.evaluate(event, new MockEvaluationContext()));
+      Assert.assertTrue(iphone.evaluate(event, accepted));
+   }
+}
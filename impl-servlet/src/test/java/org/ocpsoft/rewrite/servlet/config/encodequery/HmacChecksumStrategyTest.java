@@ -0,0 +1,67 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config.encodequery;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class HmacChecksumStrategyTest
+{
+   private static final byte[] KEY = "secret".getBytes();
+
+   @Test
+   public void testEmbedAndRemoveChecksum()
+   {
+      ChecksumStrategy strategy = new HmacChecksumStrategy(KEY);
+      String token = strategy.embedChecksum("foo=bar#baz");
+      Assert.assertTrue(strategy.checksumValid(token));
+      Assert.assertEquals("foo=bar#baz", strategy.removeChecksum(token));
+   }
+
+   @Test
+   public void testChecksumIsStableForKey()
+   {
+      Assert.assertEquals(new HmacChecksumStrategy(KEY).embedChecksum("foo=bar"),
+               new HmacChecksumStrategy(KEY).embedChecksum("foo=bar"));
+   }
+
+   @Test
+   public void testRejectsTamperedToken()
+   {
+      ChecksumStrategy strategy = new HmacChecksumStrategy(KEY);
+      String token = strategy.embedChecksum("foo=bar");
+      Assert.assertFalse(strategy.checksumValid(token.replace("foo=bar", "foo=baz")));
+      Assert.assertFalse(strategy.checksumValid("foo=bar"));
+      Assert.assertFalse(strategy.checksumValid("#foo=bar"));
+      Assert.assertFalse(strategy.checksumValid(new HashCodeChecksumStrategy().embedChecksum("foo=bar")));
+   }
+
+   @Test
+   public void testRejectsTokenSignedWithOtherKey()
+   {
+      String token = new HmacChecksumStrategy("other".getBytes()).embedChecksum("foo=bar");
+      Assert.assertFalse(new HmacChecksumStrategy(KEY).checksumValid(token));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsUnknownAlgorithm()
+   {
+      new HmacChecksumStrategy("HmacNothing", KEY);
+   }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config.encodequery;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class UrlSafeBase64EncodingStrategyTest
+{
+   private final EncodingStrategy strategy = new UrlSafeBase64EncodingStrategy();
+
+   @Test
+   public void testRoundTrip()
+   {
+      String value = "foo=bar&baz=caf\u00e9&q=a+b/c?d";
+      String encoded = strategy.encode(value);
+      Assert.assertEquals(value, strategy.decode(encoded));
+      Assert.assertTrue(encoded.matches("[A-Za-z0-9_-]*"));
+   }
+
+   @Test
+   public void testRoundTripAllLengths()
+   {
+      Random random = new Random(42);
+      for (int length = 0; length < 64; length++) {
+         byte[] bytes = new byte[length];
+         random.nextBytes(bytes);
+         String encoded = UrlSafeBase64EncodingStrategy.encodeBytes(bytes);
+         Assert.assertArrayEquals(bytes, UrlSafeBase64EncodingStrategy.decodeBytes(encoded));
+      }
+   }
+
+   @Test
+   public void testDecodesStandardBase64()
+   {
+      byte[] bytes = new byte[] { (byte) 0xfb, (byte) 0xff, (byte) 0xfe, 0x01 };
+      String standard = Base64.encodeBytes(bytes);
+      Assert.assertArrayEquals(bytes, UrlSafeBase64EncodingStrategy.decodeBytes(standard));
+      Assert.assertEquals("foo=bar", strategy.decode(new Base64EncodingStrategy().encode("foo=bar")));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsInvalidCharacters()
+   {
+      strategy.decode("abc$");
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsInvalidLength()
+   {
+      strategy.decode("abcde");
+   }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.servlet.config.rule;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.ocpsoft.rewrite.config.Condition;
+import org.ocpsoft.rewrite.config.Rule;
+import org.ocpsoft.rewrite.event.Rewrite;
+import org.ocpsoft.rewrite.mock.MockEvaluationContext;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+import org.ocpsoft.rewrite.servlet.impl.HttpInboundRewriteImpl;
+import org.ocpsoft.rewrite.servlet.impl.HttpOutboundRewriteImpl;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class TrailingSlashTest
+{
+   private HttpServletRequest request(final String uri)
+   {
+      HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+      Mockito.when(request.getContextPath()).thenReturn("/ctx");
+      Mockito.when(request.getRequestURI()).thenReturn(uri);
+      return request;
+   }
+
+   private Rewrite inbound(final String uri)
+   {
+      return new HttpInboundRewriteImpl(request(uri), null);
+   }
+
+   private Rewrite outbound(final String url)
+   {
+      return new HttpOutboundRewriteImpl(request("/ctx/"), null, url);
+   }
+
+   private boolean evaluate(final Rule rule, final Rewrite event)
+   {
+      return rule.evaluate(event, new MockEvaluationContext());
+   }
+
+   @Test
+   public void testAppendInbound()
+   {
+      Rule rule = TrailingSlash.append();
+      Assert.assertTrue(evaluate(rule, inbound("/ctx/foo")));
+      Assert.assertTrue(evaluate(rule, inbound("/ctx/foo/bar")));
+      Assert.assertFalse(evaluate(rule, inbound("/ctx/foo/")));
+      Assert.assertFalse(evaluate(rule, inbound("/ctx/foo%2F")));
+      Assert.assertFalse(evaluate(rule, inbound("/ctx")));
+   }
+
+   @Test
+   public void testRemoveInbound()
+   {
+      Rule rule = TrailingSlash.remove();
+      Assert.assertTrue(evaluate(rule, inbound("/ctx/foo/")));
+      Assert.assertTrue(evaluate(rule, inbound("/ctx/foo%2f")));
+      Assert.assertFalse(evaluate(rule, inbound("/ctx/foo")));
+   }
+
+   @Test
+   public void testAppendOutbound()
+   {
+      Rule rule = TrailingSlash.append();
+      Assert.assertTrue(evaluate(rule, outbound("/ctx/foo?a=b/")));
+      Assert.assertFalse(evaluate(rule, outbound("/ctx/foo/?a=b")));
+   }
+
+   @Test
+   public void testRemoveOutbound()
+   {
+      Rule rule = TrailingSlash.remove();
+      Assert.assertTrue(evaluate(rule, outbound("/ctx/foo/?a=b")));
+      Assert.assertFalse(evaluate(rule, outbound("/ctx/foo?a=b/")));
+   }
+
+   @Test
+   public void testConditionIsNotEvaluatedForRejectedPaths()
+   {
+      Condition condition = Mockito.mock(Condition.class);
+      Rule rule = TrailingSlash.append().when(condition);
+      Assert.assertFalse(evaluate(rule, inbound("/ctx/foo/")));
+      Mockito.verifyZeroInteractions(condition);
+   }
+
+   @Test
+   public void testEndsWithSlash()
+   {
+      Assert.assertTrue(TrailingSlash.endsWithSlash((HttpServletRewrite) inbound("/ctx/")));
+      Assert.assertFalse(TrailingSlash.endsWithSlash((HttpServletRewrite) inbound("/ctx/a")));
+      Assert.assertFalse(TrailingSlash.endsWithSlash((HttpServletRewrite) outbound("")));
+      Assert.assertTrue(TrailingSlash.endsWithSlash((HttpServletRewrite) outbound("/?")));
+   }
+}
@@ -23,15 +23,21 @@ import javax.inject.Inject;
 
 import org.ocpsoft.rewrite.cdi.expressions.Expressions;
 import org.ocpsoft.rewrite.el.spi.ExpressionLanguageProvider;
+import org.ocpsoft.rewrite.util.BoundedCache;
 
 /**
  * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
  */
 public class CdiExpressionLanguageProvider implements ExpressionLanguageProvider
 {
+   private static final int EXPRESSION_CACHE_SIZE = 512;
+
    @Inject
    private Expressions expressions;
 
+   private final BoundedCache<String, ValueExpression> valueExpressions = new BoundedCache<String, ValueExpression>(
+            EXPRESSION_CACHE_SIZE);
+
    @Override
    public Object retrieveValue(final String expression)
    {
@@ -42,8 +48,12 @@ public class CdiExpressionLanguageProvider implements ExpressionLanguageProvider
    @Override
    public void submitValue(final String expression, final Object value)
    {
-      String el = groomExpression(expression);
-      if (getExpectedType(expressions.getELContext(), expressions.getExpressionFactory(), el).isArray())
+      ELContext context = expressions.getELContext();
+      ExpressionFactory factory = expressions.getExpressionFactory();
+      ValueExpression ve = getValueExpression(context, factory, groomExpression(expression));
+
+      Class<?> expectedType = ve.getType(context);
+      if (expectedType.isArray())
       {
          Object[] toInject = null;
          if ((value != null) && !value.getClass().isArray())
@@ -53,7 +63,7 @@ public class CdiExpressionLanguageProvider implements ExpressionLanguageProvider
          else
             toInject = (Object[]) value;
 
-         setValue(expressions.getELContext(), expressions.getExpressionFactory(), el, toInject);
+         ve.setValue(context, factory.coerceToType(toInject, expectedType));
       }
       else
       {
@@ -70,7 +80,7 @@ public class CdiExpressionLanguageProvider implements ExpressionLanguageProvider
                toInject = "";
             }
          }
-         setValue(expressions.getELContext(), expressions.getExpressionFactory(), el, toInject);
+         ve.setValue(context, factory.coerceToType(toInject, expectedType));
       }
    }
 
@@ -100,26 +110,24 @@ public class CdiExpressionLanguageProvider implements ExpressionLanguageProvider
    /**
     * Helpers
     */
-   private Class<?> getExpectedType(final ELContext context, final ExpressionFactory factory, final String expression)
-            throws ELException
-   {
-      ValueExpression ve = factory.createValueExpression(context, expression, Object.class);
-      return ve.getType(context);
-   }
-
    private Object getValue(final ELContext context, final ExpressionFactory factory, final String expression)
             throws ELException
    {
-      ValueExpression ve = factory.createValueExpression(context, expression, Object.class);
-      return ve.getValue(context);
+      return getValueExpression(context, factory, expression).getValue(context);
    }
 
-   private void setValue(final ELContext context, final ExpressionFactory factory, final String expression,
-            final Object value) throws ELException
+   /**
+    * Return the cached {@link ValueExpression} for the given expression, parsing and caching it on first use.
+    */
+   private ValueExpression getValueExpression(final ELContext context, final ExpressionFactory factory,
+            final String expression) throws ELException
    {
-
-      ValueExpression ve = factory.createValueExpression(context, expression, Object.class);
-      ve.setValue(context, factory.coerceToType(value, ve.getType(context)));
+      ValueExpression ve = valueExpressions.get(expression);
+      if (ve == null)
+      {
+         ve = valueExpressions.put(expression, factory.createValueExpression(context, expression, Object.class));
+      }
+      return ve;
    }
 
 }
@@ -23,6 +23,7 @@ import javax.faces.context.FacesContext;
 
 import org.ocpsoft.rewrite.el.spi.ExpressionLanguageProvider;
 import org.ocpsoft.rewrite.exception.UnsupportedEvaluationException;
+import org.ocpsoft.rewrite.util.BoundedCache;
 
 /**
  * Implementation of {@link ExpressionLanguageProvider} that uses the {@link FacesContext} to obtain the
@@ -32,6 +33,19 @@ import org.ocpsoft.rewrite.exception.UnsupportedEvaluationException;
  */
 public class FacesExpressionLanguageProvider implements ExpressionLanguageProvider
 {
+   private static final int EXPRESSION_CACHE_SIZE = 512;
+
+   /**
+    * Parsed {@link ValueExpression} instances keyed by EL expression
+    */
+   private final BoundedCache<String, ValueExpression> valueExpressions = new BoundedCache<String, ValueExpression>(
+            EXPRESSION_CACHE_SIZE);
+
+   /**
+    * Parsed {@link MethodExpression} instances keyed by EL expression and number of parameters
+    */
+   private final BoundedCache<String, MethodExpression> methodExpressions = new BoundedCache<String, MethodExpression>(
+            EXPRESSION_CACHE_SIZE);
 
    @Override
    public Object retrieveValue(String expression) throws UnsupportedEvaluationException
@@ -102,23 +116,41 @@ public class FacesExpressionLanguageProvider implements ExpressionLanguageProvid
    @Override
    public Object evaluateMethodExpression(String expression, Object... values) throws UnsupportedEvaluationException
    {
-      String el = toELExpression(expression);
       FacesContext facesContext = getFacesContext();
       ELContext elContext = facesContext.getELContext();
-      ExpressionFactory expressionFactory = facesContext.getApplication().getExpressionFactory();
-      MethodExpression methodExpression = expressionFactory.createMethodExpression(elContext, el,
-               Object.class, new Class[values.length]);
-      return methodExpression.invoke(elContext, values);
+      return getMethodExpression(facesContext, expression, values.length).invoke(elContext, values);
    }
 
    /**
-    * Creates an {@link ValueExpression} for the supplied EL expression
+    * Returns the cached {@link ValueExpression} for the supplied EL expression, creating it if required
     */
    private ValueExpression getValueExpression(FacesContext facesContext, String expression)
    {
       String el = toELExpression(expression);
-      ExpressionFactory expressionFactory = facesContext.getApplication().getExpressionFactory();
-      return expressionFactory.createValueExpression(facesContext.getELContext(), el, Object.class);
+      ValueExpression valueExpression = valueExpressions.get(el);
+      if (valueExpression == null) {
+         ExpressionFactory expressionFactory = facesContext.getApplication().getExpressionFactory();
+         valueExpression = valueExpressions.put(el,
+                  expressionFactory.createValueExpression(facesContext.getELContext(), el, Object.class));
+      }
+      return valueExpression;
+   }
+
+   /**
+    * Returns the cached {@link MethodExpression} for the supplied EL expression and number of parameters, creating it
+    * if required
+    */
+   private MethodExpression getMethodExpression(FacesContext facesContext, String expression, int parameterCount)
+   {
+      String el = toELExpression(expression);
+      String key = parameterCount + ":" + el;
+      MethodExpression methodExpression = methodExpressions.get(key);
+      if (methodExpression == null) {
+         ExpressionFactory expressionFactory = facesContext.getApplication().getExpressionFactory();
+         methodExpression = methodExpressions.put(key, expressionFactory.createMethodExpression(
+                  facesContext.getELContext(), el, Object.class, new Class[parameterCount]));
+      }
+      return methodExpression;
    }
 
    /**
@@ -1,7 +1,5 @@
 package org.ocpsoft.rewrite.faces;
 
-import java.util.ArrayList;
-
 import javax.faces.application.NavigationHandler;
 import javax.faces.context.FacesContext;
 import javax.faces.event.PhaseEvent;
@@ -11,8 +9,9 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.faces.config.DeferredPhaseOperation;
 import org.ocpsoft.rewrite.faces.config.PhaseAction;
-import org.ocpsoft.rewrite.faces.config.PhaseOperation;
+import org.ocpsoft.rewrite.faces.config.PhaseOperationQueue;
 import org.ocpsoft.rewrite.servlet.event.BaseRewrite.Flow;
 import org.ocpsoft.rewrite.servlet.event.ServletRewrite;
 import org.ocpsoft.rewrite.servlet.event.SubflowTask;
@@ -64,34 +63,25 @@ public class RewritePhaseListener implements PhaseListener
       FacesContext facesContext = event.getFacesContext();
       HttpServletRequest request = ((HttpServletRequest) facesContext.getExternalContext().getRequest());
 
-      ArrayList<PhaseOperation<?>> operations = PhaseOperation.getSortedPhaseOperations(request);
-      if (operations != null)
-      {
-         for (final PhaseOperation<?> operation : operations) {
+      for (final DeferredPhaseOperation operation : PhaseOperationQueue.getFor(request).getBefore(event.getPhaseId())) {
+         Flow flow = SubflowTask.perform(operation.getEvent(), operation.getContext(), Flow.UN_HANDLED,
+                  new SubflowTask() {
 
-            if (operation.getBeforePhases().contains(event.getPhaseId())
-                     || operation.getBeforePhases().contains(PhaseId.ANY_PHASE))
-            {
-               Flow flow = SubflowTask.perform(operation.getEvent(), operation.getContext(), Flow.UN_HANDLED,
-                        new SubflowTask() {
-
-                           @Override
-                           public void performInSubflow(ServletRewrite<?, ?> rewriteEvent, EvaluationContext context)
-                           {
-                              operation.performOperation((HttpServletRewrite) rewriteEvent, context);
-                           }
-
-                        });
-
-               if (flow.is(Flow.ABORT_REQUEST))
-               {
-                  event.getFacesContext().responseComplete();
-               }
-               if (flow.is(Flow.HANDLED))
-               {
-                  break;
-               }
-            }
+                     @Override
+                     public void performInSubflow(ServletRewrite<?, ?> rewriteEvent, EvaluationContext context)
+                     {
+                        operation.perform((HttpServletRewrite) rewriteEvent, context);
+                     }
+
+                  });
+
+         if (flow.is(Flow.ABORT_REQUEST))
+         {
+            event.getFacesContext().responseComplete();
+         }
+         if (flow.is(Flow.HANDLED))
+         {
+            break;
          }
       }
    }
@@ -101,38 +91,30 @@ public class RewritePhaseListener implements PhaseListener
       FacesContext facesContext = event.getFacesContext();
       HttpServletRequest request = ((HttpServletRequest) facesContext.getExternalContext().getRequest());
 
-      ArrayList<PhaseOperation<?>> operations = PhaseOperation.getSortedPhaseOperations(request);
-      if (operations != null)
-      {
-         for (final PhaseOperation<?> operation : operations) {
-            if (operation.getAfterPhases().contains(event.getPhaseId())
-                     || operation.getAfterPhases().contains(PhaseId.ANY_PHASE))
+      for (final DeferredPhaseOperation operation : PhaseOperationQueue.getFor(request).getAfter(event.getPhaseId())) {
+         try {
+            Flow flow = SubflowTask.perform(operation.getEvent(), operation.getContext(), Flow.UN_HANDLED,
+                     new SubflowTask() {
+
+                        @Override
+                        public void performInSubflow(ServletRewrite<?, ?> rewriteEvent, EvaluationContext context)
+                        {
+                           operation.perform((HttpServletRewrite) rewriteEvent, context);
+                        }
+
+                     });
+
+            if (flow.is(Flow.ABORT_REQUEST))
             {
-               try {
-                  Flow flow = SubflowTask.perform(operation.getEvent(), operation.getContext(), Flow.UN_HANDLED,
-                           new SubflowTask() {
-
-                              @Override
-                              public void performInSubflow(ServletRewrite<?, ?> rewriteEvent, EvaluationContext context)
-                              {
-                                 operation.performOperation((HttpServletRewrite) rewriteEvent, context);
-                              }
-
-                           });
-
-                  if (flow.is(Flow.ABORT_REQUEST))
-                  {
-                     event.getFacesContext().responseComplete();
-                  }
-                  if (flow.is(Flow.HANDLED))
-                  {
-                     break;
-                  }
-               }
-               catch (Exception e) {
-                  e.printStackTrace();
-               }
+               event.getFacesContext().responseComplete();
             }
+            if (flow.is(Flow.HANDLED))
+            {
+               break;
+            }
+         }
+         catch (Exception e) {
+            e.printStackTrace();
          }
       }
    }
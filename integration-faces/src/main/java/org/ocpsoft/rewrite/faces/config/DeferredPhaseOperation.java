@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.faces.config;
+
+import org.ocpsoft.common.pattern.Weighted;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
+
+/**
+ * A {@link PhaseOperation} deferred by a single request, together with the {@link HttpServletRewrite} and
+ * {@link EvaluationContext} it was deferred with. {@link PhaseOperation} instances are part of the configuration and
+ * shared by all requests, so the per-request state is kept here instead.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class DeferredPhaseOperation implements Weighted
+{
+   private final PhaseOperation<?> operation;
+   private final HttpServletRewrite event;
+   private final EvaluationContext context;
+
+   DeferredPhaseOperation(final PhaseOperation<?> operation, final HttpServletRewrite event,
+            final EvaluationContext context)
+   {
+      this.operation = operation;
+      this.event = event;
+      this.context = context;
+   }
+
+   @Override
+   public int priority()
+   {
+      return operation.priority();
+   }
+
+   /**
+    * Get the deferred {@link PhaseOperation}.
+    */
+   public PhaseOperation<?> getOperation()
+   {
+      return operation;
+   }
+
+   /**
+    * Get the {@link HttpServletRewrite} with which the {@link PhaseOperation} was deferred.
+    */
+   public HttpServletRewrite getEvent()
+   {
+      return event;
+   }
+
+   /**
+    * Get the {@link EvaluationContext} with which the {@link PhaseOperation} was deferred.
+    */
+   public EvaluationContext getContext()
+   {
+      return context;
+   }
+
+   /**
+    * Perform the deferred {@link PhaseOperation} with the given event and context.
+    */
+   public void perform(final HttpServletRewrite event, final EvaluationContext context)
+   {
+      operation.performOperation(event, context);
+   }
+
+   @Override
+   public String toString()
+   {
+      return "DeferredPhaseOperation [" + operation + "]";
+   }
+}
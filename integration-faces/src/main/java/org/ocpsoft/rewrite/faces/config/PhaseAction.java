@@ -1,10 +1,11 @@
 package org.ocpsoft.rewrite.faces.config;
 
+import java.util.List;
+
 import javax.faces.context.FacesContext;
 import javax.faces.event.PhaseId;
 
 import org.ocpsoft.common.pattern.Weighted;
-import org.ocpsoft.common.services.ServiceLoader;
 import org.ocpsoft.logging.Logger;
 import org.ocpsoft.rewrite.bind.Retrieval;
 import org.ocpsoft.rewrite.bind.Submission;
@@ -16,6 +17,7 @@ import org.ocpsoft.rewrite.servlet.event.BaseRewrite.Flow;
 import org.ocpsoft.rewrite.servlet.http.event.HttpInboundServletRewrite;
 import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
 import org.ocpsoft.rewrite.spi.InvocationResultHandler;
+import org.ocpsoft.rewrite.util.Services;
 
 /**
  * Invoke an action before or after a given JavaServer Faces {@link PhaseId}. Has a {@link Weighted#priority()} of 0.
@@ -64,7 +66,6 @@ public class PhaseAction extends PhaseOperation<PhaseAction>
    }
 
    @Override
-   @SuppressWarnings("unchecked")
    public void performOperation(final HttpServletRewrite event, final EvaluationContext context)
    {
       Object result = null;
@@ -95,8 +96,8 @@ public class PhaseAction extends PhaseOperation<PhaseAction>
          }
          else if (result != null)
          {
-            ServiceLoader<InvocationResultHandler> providers = ServiceLoader.load(InvocationResultHandler.class);
-            if (!providers.iterator().hasNext())
+            List<InvocationResultHandler> providers = Services.load(InvocationResultHandler.class);
+            if (providers.isEmpty())
             {
                log.debug("No instances of [" + InvocationResultHandler.class.getName()
                         + "] were registered to handing binding invocation result [" + result + "]");
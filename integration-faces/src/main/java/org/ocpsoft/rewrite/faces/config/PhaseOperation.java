@@ -17,15 +17,14 @@ package org.ocpsoft.rewrite.faces.config;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.faces.event.PhaseId;
 import javax.servlet.http.HttpServletRequest;
 
 import org.ocpsoft.common.pattern.Weighted;
-import org.ocpsoft.common.pattern.WeightedComparator;
 import org.ocpsoft.rewrite.config.Operation;
 import org.ocpsoft.rewrite.context.EvaluationContext;
 import org.ocpsoft.rewrite.servlet.config.HttpOperation;
@@ -39,10 +38,6 @@ import org.ocpsoft.rewrite.servlet.http.event.HttpServletRewrite;
  */
 public abstract class PhaseOperation<T extends PhaseOperation<T>> extends HttpOperation implements Weighted
 {
-   private static final String REQUEST_KEY = PhaseOperation.class.getName() + "_DEFERRED";
-   private HttpServletRewrite event;
-   private EvaluationContext context;
-
    private final Set<PhaseId> beforePhases = new HashSet<PhaseId>();
    private final Set<PhaseId> afterPhases = new HashSet<PhaseId>();
 
@@ -92,45 +87,57 @@ public abstract class PhaseOperation<T extends PhaseOperation<T>> extends HttpOp
    }
 
    /**
-    * Invoked during the rewrite process, just add "this" to a queue of deferred bindings in the request
+    * Invoked during the rewrite process, just add "this" to the {@link PhaseOperationQueue} of the request, together
+    * with the given event and context
     */
    @Override
    public final void performHttp(HttpServletRewrite event, EvaluationContext context)
    {
-      this.event = event;
-      this.context = context;
-      getSortedPhaseOperations(event.getRequest()).add(this);
+      PhaseOperationQueue.getFor(event.getRequest()).add(new DeferredPhaseOperation(this, event, context));
    }
 
-   @SuppressWarnings("unchecked")
+   /**
+    * Get the {@link PhaseOperation} instances deferred during the given request, in priority order. Changes to the
+    * returned list do not affect the operations that will be performed.
+    *
+    * @deprecated Use {@link PhaseOperationQueue#getFor(HttpServletRequest)} instead, which also provides the event and
+    *             context each operation was deferred with.
+    */
+   @Deprecated
    public static ArrayList<PhaseOperation<?>> getSortedPhaseOperations(HttpServletRequest request)
    {
-      ArrayList<PhaseOperation<?>> operations = (ArrayList<PhaseOperation<?>>) request.getAttribute(REQUEST_KEY);
-      if (operations == null)
-      {
-         operations = new ArrayList<PhaseOperation<?>>();
-         request.setAttribute(REQUEST_KEY, operations);
+      List<DeferredPhaseOperation> deferred = PhaseOperationQueue.getFor(request).getAll();
+      ArrayList<PhaseOperation<?>> operations = new ArrayList<PhaseOperation<?>>(deferred.size());
+      for (DeferredPhaseOperation operation : deferred) {
+         operations.add(operation.getOperation());
       }
-
-      Collections.sort(operations, new WeightedComparator());
-
       return operations;
    }
 
    /**
-    * Get the {@link HttpServletRewrite} with which this {@link PhaseOperation} was deferred.
+    * This is no longer populated, as a {@link PhaseOperation} is shared by all requests. Always returns
+    * <code>null</code>.
+    *
+    * @deprecated Use {@link DeferredPhaseOperation#getEvent()} of the operations in the {@link PhaseOperationQueue}
+    *             instead.
     */
+   @Deprecated
    public HttpServletRewrite getEvent()
    {
-      return event;
+      return null;
    }
 
    /**
-    * Get the {@link EvaluationContext} with which this {@link PhaseOperation} was deferred.
+    * This is no longer populated, as a {@link PhaseOperation} is shared by all requests. Always returns
+    * <code>null</code>.
+    *
+    * @deprecated Use {@link DeferredPhaseOperation#getContext()} of the operations in the {@link PhaseOperationQueue}
+    *             instead.
     */
+   @Deprecated
    public EvaluationContext getContext()
    {
-      return context;
+      return null;
    }
 
    /**
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.faces.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import javax.faces.event.PhaseId;
+import javax.servlet.http.HttpServletRequest;
+
+import org.ocpsoft.common.pattern.Weighted;
+import org.ocpsoft.common.pattern.WeightedComparator;
+
+/**
+ * The {@link DeferredPhaseOperation} instances of a single request, stored as a request attribute. Operations are kept
+ * in one list per {@link PhaseId} for each direction, and each list is kept in {@link Weighted#priority()} order as
+ * operations are added, so that the phase callbacks only iterate over the operations of the current phase.
+ *
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class PhaseOperationQueue
+{
+   private static final String REQUEST_KEY = PhaseOperationQueue.class.getName();
+
+   private static final Comparator<Weighted> comparator = new WeightedComparator();
+
+   private final List<List<DeferredPhaseOperation>> before = createBuckets();
+   private final List<List<DeferredPhaseOperation>> after = createBuckets();
+   private final List<DeferredPhaseOperation> all = new ArrayList<DeferredPhaseOperation>();
+
+   PhaseOperationQueue()
+   {}
+
+   /**
+    * Get the {@link PhaseOperationQueue} of the given request, creating it if necessary.
+    */
+   public static PhaseOperationQueue getFor(final HttpServletRequest request)
+   {
+      PhaseOperationQueue queue = (PhaseOperationQueue) request.getAttribute(REQUEST_KEY);
+      if (queue == null)
+      {
+         queue = new PhaseOperationQueue();
+         request.setAttribute(REQUEST_KEY, queue);
+      }
+      return queue;
+   }
+
+   /**
+    * Add the given {@link DeferredPhaseOperation} to the phases of its {@link PhaseOperation}. Operations with the same
+    * priority are performed in the order they were added.
+    */
+   public void add(final DeferredPhaseOperation deferred)
+   {
+      insert(before, deferred.getOperation().getBeforePhases(), deferred);
+      insert(after, deferred.getOperation().getAfterPhases(), deferred);
+      insertSorted(all, deferred);
+   }
+
+   /**
+    * Get all operations of the request, regardless of their phases, in priority order.
+    */
+   public List<DeferredPhaseOperation> getAll()
+   {
+      return Collections.unmodifiableList(all);
+   }
+
+   /**
+    * Get the operations to be performed before the given phase, in priority order.
+    */
+   public List<DeferredPhaseOperation> getBefore(final PhaseId phase)
+   {
+      return Collections.unmodifiableList(before.get(phase.getOrdinal()));
+   }
+
+   /**
+    * Get the operations to be performed after the given phase, in priority order.
+    */
+   public List<DeferredPhaseOperation> getAfter(final PhaseId phase)
+   {
+      return Collections.unmodifiableList(after.get(phase.getOrdinal()));
+   }
+
+   private static List<List<DeferredPhaseOperation>> createBuckets()
+   {
+      List<List<DeferredPhaseOperation>> result = new ArrayList<List<DeferredPhaseOperation>>(PhaseId.VALUES.size());
+      for (int i = 0; i < PhaseId.VALUES.size(); i++) {
+         result.add(new ArrayList<DeferredPhaseOperation>(2));
+      }
+      return result;
+   }
+
+   private static void insert(final List<List<DeferredPhaseOperation>> buckets, final Set<PhaseId> phases,
+            final DeferredPhaseOperation deferred)
+   {
+      boolean anyPhase = phases.contains(PhaseId.ANY_PHASE);
+      for (PhaseId phase : PhaseId.VALUES) {
+         if (!PhaseId.ANY_PHASE.equals(phase) && (anyPhase || phases.contains(phase)))
+         {
+            insertSorted(buckets.get(phase.getOrdinal()), deferred);
+         }
+      }
+   }
+
+   /**
+    * Insert after all operations with a lower or equal priority.
+    */
+   private static void insertSorted(final List<DeferredPhaseOperation> bucket, final DeferredPhaseOperation deferred)
+   {
+      int low = 0;
+      int high = bucket.size();
+      while (low < high)
+      {
+         int middle = (low + high) >>> 1;
+         if (comparator.compare(bucket.get(middle), deferred) <= 0)
+            low = middle + 1;
+         else
+            high = middle;
+      }
+      bucket.add(low, deferred);
+   }
+}
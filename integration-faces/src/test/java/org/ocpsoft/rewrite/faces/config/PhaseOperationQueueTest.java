@@ -0,0 +1,100 @@
+/*
+ * Copyright 2011 <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ocpsoft.rewrite.faces.config;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.faces.event.PhaseId;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.ocpsoft.rewrite.config.Operation;
+import org.ocpsoft.rewrite.context.EvaluationContext;
+import org.ocpsoft.rewrite.event.Rewrite;
+
+/**
+ * @author <a href="mailto:lincolnbaxter@gmail.com">Lincoln Baxter, III</a>
+ */
+public class PhaseOperationQueueTest
+{
+   private static final Operation NOOP = new Operation() {
+      @Override
+      public void perform(Rewrite event, EvaluationContext context)
+      {}
+   };
+
+   private static DeferredPhaseOperation defer(PhaseOperation<?> operation)
+   {
+      return new DeferredPhaseOperation(operation, null, null);
+   }
+
+   @Test
+   public void testOperationsAreSortedByPriority()
+   {
+      PhaseOperationQueue queue = new PhaseOperationQueue();
+      DeferredPhaseOperation first = defer(PhaseOperation.enqueue(NOOP, 0).after(PhaseId.RESTORE_VIEW));
+      DeferredPhaseOperation second = defer(PhaseOperation.enqueue(NOOP, 10).after(PhaseId.RESTORE_VIEW));
+      DeferredPhaseOperation third = defer(PhaseOperation.enqueue(NOOP, -5).after(PhaseId.RESTORE_VIEW));
+      DeferredPhaseOperation fourth = defer(PhaseOperation.enqueue(NOOP, 0).after(PhaseId.RESTORE_VIEW));
+
+      queue.add(first);
+      queue.add(second);
+      queue.add(third);
+      queue.add(fourth);
+
+      List<DeferredPhaseOperation> expected = Arrays.asList(third, first, fourth, second);
+      Assert.assertEquals(expected, queue.getAfter(PhaseId.RESTORE_VIEW));
+      Assert.assertTrue(queue.getBefore(PhaseId.RESTORE_VIEW).isEmpty());
+   }
+
+   @Test
+   public void testOperationsAreBucketedByPhase()
+   {
+      PhaseOperationQueue queue = new PhaseOperationQueue();
+      DeferredPhaseOperation render = defer(PhaseOperation.enqueue(NOOP).before(PhaseId.RENDER_RESPONSE));
+      DeferredPhaseOperation any = defer(PhaseOperation.enqueue(NOOP, 1).before(PhaseId.ANY_PHASE,
+               PhaseId.RENDER_RESPONSE));
+
+      queue.add(render);
+      queue.add(any);
+
+      Assert.assertEquals(Arrays.asList(render, any), queue.getBefore(PhaseId.RENDER_RESPONSE));
+      Assert.assertEquals(Arrays.asList(any), queue.getBefore(PhaseId.INVOKE_APPLICATION));
+      Assert.assertTrue(queue.getAfter(PhaseId.INVOKE_APPLICATION).isEmpty());
+   }
+
+   @Test
+   public void testAllOperationsAreListedOnceInPriorityOrder()
+   {
+      PhaseOperationQueue queue = new PhaseOperationQueue();
+      DeferredPhaseOperation render = defer(PhaseOperation.enqueue(NOOP, 5).before(PhaseId.RENDER_RESPONSE));
+      DeferredPhaseOperation any = defer(PhaseOperation.enqueue(NOOP, 1).before(PhaseId.ANY_PHASE).after(
+               PhaseId.ANY_PHASE));
+
+      queue.add(render);
+      queue.add(any);
+
+      Assert.assertEquals(Arrays.asList(any, render), queue.getAll());
+   }
+
+   @Test(expected = UnsupportedOperationException.class)
+   public void testQueuedOperationsCannotBeModified()
+   {
+      new PhaseOperationQueue().getBefore(PhaseId.RENDER_RESPONSE).add(null);
+   }
+}
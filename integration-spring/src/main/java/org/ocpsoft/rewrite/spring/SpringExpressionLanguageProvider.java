@@ -17,6 +17,7 @@ package org.ocpsoft.rewrite.spring;
 
 import org.ocpsoft.rewrite.el.spi.ExpressionLanguageProvider;
 import org.ocpsoft.rewrite.exception.UnsupportedEvaluationException;
+import org.ocpsoft.rewrite.util.BoundedCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanExpressionContext;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
@@ -45,11 +46,19 @@ import org.springframework.web.context.WebApplicationContext;
 public class SpringExpressionLanguageProvider implements ExpressionLanguageProvider
 {
 
+   private static final int EXPRESSION_CACHE_SIZE = 512;
+
    /**
     * Used to parse the SpEL expressions
     */
    private final ExpressionParser parser = new SpelExpressionParser();
 
+   /**
+    * Parsed SpEL expressions keyed by expression string
+    */
+   private final BoundedCache<String, Expression> expressions = new BoundedCache<String, Expression>(
+            EXPRESSION_CACHE_SIZE);
+
    @Autowired
    private WebApplicationContext applicationContext;
 
@@ -59,7 +68,7 @@ public class SpringExpressionLanguageProvider implements ExpressionLanguageProvi
 
       try {
 
-         Expression exp = parser.parseExpression(expression);
+         Expression exp = parseExpression(expression);
          return exp.getValue(getEvaluationContext());
 
       }
@@ -75,7 +84,7 @@ public class SpringExpressionLanguageProvider implements ExpressionLanguageProvi
 
       try {
 
-         Expression exp = parser.parseExpression(expression);
+         Expression exp = parseExpression(expression);
          exp.setValue(getEvaluationContext(), value);
 
       }
@@ -98,7 +107,7 @@ public class SpringExpressionLanguageProvider implements ExpressionLanguageProvi
          }
 
          // evaluate the expression
-         Expression exp = parser.parseExpression(el);
+         Expression exp = parseExpression(el);
          return exp.getValue(getEvaluationContext());
 
       }
@@ -114,6 +123,18 @@ public class SpringExpressionLanguageProvider implements ExpressionLanguageProvi
       throw new UnsupportedEvaluationException();
    }
 
+   /**
+    * Returns the cached {@link Expression} for the supplied SpEL string, parsing it if required
+    */
+   private Expression parseExpression(String expression)
+   {
+      Expression result = expressions.get(expression);
+      if (result == null) {
+         result = expressions.put(expression, parser.parseExpression(expression));
+      }
+      return result;
+   }
+
    /**
     * Lazily initialized by {@link #getEvaluationContext()}
     */